@@ -0,0 +1,229 @@
+package md2k.mCerebrum;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Forward-only cursor over a file of "value timestamp" lines
+ * <p>
+ * The file is memory mapped in segments and each line is parsed directly from the mapped bytes without creating
+ * intermediate Strings.  Values are truncated to integers as they are read.  Blank lines are skipped.
+ * </p>
+ */
+class CSVFileCursor {
+
+    private static final long SEGMENT_SIZE = 1L << 30;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    public final int channel;
+    public long timestamp;
+    public double value;
+
+    private final String filename;
+    private RandomAccessFile file;
+    private long length;
+    private long segmentStart;
+    private int segmentLength;
+    private MappedByteBuffer buffer;
+    private int position;
+
+
+    /**
+     * @param filename File name and path
+     * @param channel  AutoSense channel of the file
+     * @throws IOException If the file can not be opened
+     */
+    CSVFileCursor(String filename, int channel) throws IOException {
+        this.filename = filename;
+        this.channel = channel;
+        this.file = new RandomAccessFile(filename, "r");
+        this.length = file.getChannel().size();
+        this.segmentStart = 0;
+        map(0);
+    }
+
+    /**
+     * Advance to the next line
+     *
+     * @return True if timestamp and value hold the next sample, false at the end of the file
+     * @throws IOException On read failure
+     */
+    boolean next() throws IOException {
+        while (file != null) {
+            int end = position;
+            while (end < segmentLength && buffer.get(end) != '\n') {
+                end++;
+            }
+            boolean last = segmentStart + segmentLength == length;
+            if (end == segmentLength && !last) {
+                if (position == 0) {
+                    throw new IOException("Line longer than the mapping segment in " + filename);
+                }
+                map(segmentStart + position);
+                continue;
+            }
+            if (end == segmentLength && position == segmentLength) {
+                close();
+                return false;
+            }
+            boolean parsed = parseLine(position, end);
+            position = Math.min(end + 1, segmentLength);
+            if (parsed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Release the file, the cursor is exhausted afterwards
+     */
+    void close() {
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            file = null;
+            buffer = null;
+        }
+    }
+
+
+    private void map(long start) throws IOException {
+        segmentStart = start;
+        segmentLength = (int) Math.min(length - start, SEGMENT_SIZE);
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, start, segmentLength);
+        position = 0;
+    }
+
+    /**
+     * Parse one "value timestamp" line
+     *
+     * @return False for a blank line
+     */
+    private boolean parseLine(int start, int end) {
+        if (end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        if (end == start) {
+            return false;
+        }
+
+        int split = start;
+        while (split < end && buffer.get(split) != ' ') {
+            split++;
+        }
+        if (split >= end) {
+            throw new NumberFormatException("Missing timestamp: " + text(start, end));
+        }
+        int tsEnd = split + 1;
+        while (tsEnd < end && buffer.get(tsEnd) != ' ') {
+            tsEnd++;
+        }
+
+        timestamp = parseLong(split + 1, tsEnd);
+        value = (int) parseDouble(start, split);
+        return true;
+    }
+
+    private long parseLong(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long result = 0;
+        if (i == end || end - i > 18) {
+            return Long.parseLong(text(start, end));
+        }
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.parseLong(text(start, end));
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * Decimal numbers with up to 15 significant digits and no exponent are converted exactly as Double.parseDouble
+     * would, everything else is handed to Double.parseDouble
+     */
+    private double parseDouble(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        boolean sawDigit = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                sawDigit = true;
+                if (mantissa != 0 || b != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                return Double.parseDouble(text(start, end));
+            }
+        }
+        if (!sawDigit || digits > 15 || fraction > 22) {
+            return Double.parseDouble(text(start, end));
+        }
+        double result = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+        return negative ? -result : result;
+    }
+
+    private String text(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            bytes[i - start] = buffer.get(i);
+        }
+        return new String(bytes);
+    }
+}
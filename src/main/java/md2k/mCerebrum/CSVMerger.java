@@ -0,0 +1,135 @@
+package md2k.mCerebrum;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Streaming k-way merge of time ordered channel files
+ * <p>
+ * Each iteration opens one cursor per file and yields CSVDataPoints in timestamp order through a priority queue of
+ * the cursors, so memory use is constant per channel regardless of the session length and the first sample is
+ * available as soon as every file has been opened.  Samples with equal timestamps are returned in the order the files
+ * were added, which matches CSVParser.sort().
+ * </p>
+ */
+public class CSVMerger implements Iterable<CSVDataPoint> {
+
+    private final List<String> filenames;
+    private final List<Integer> channels;
+
+
+    public CSVMerger() {
+        this.filenames = new ArrayList<String>();
+        this.channels = new ArrayList<Integer>();
+    }
+
+    /**
+     * Add a time ordered file of "value timestamp" lines to the merge
+     *
+     * @param filename File name and path
+     * @param channel  AutoSense channel of the file
+     */
+    public void addFile(String filename, int channel) {
+        filenames.add(filename);
+        channels.add(channel);
+    }
+
+    @Override
+    public Iterator<CSVDataPoint> iterator() {
+        final PriorityQueue<Entry> queue = new PriorityQueue<Entry>(Math.max(1, filenames.size()));
+        for (int i = 0; i < filenames.size(); i++) {
+            try {
+                Entry entry = new Entry(new CSVFileCursor(filenames.get(i), channels.get(i)), i);
+                if (entry.cursor.next()) {
+                    queue.add(entry);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return new Iterator<CSVDataPoint>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public CSVDataPoint next() {
+                Entry entry = queue.poll();
+                if (entry == null) {
+                    throw new NoSuchElementException();
+                }
+                CSVFileCursor cursor = entry.cursor;
+                CSVDataPoint result = new CSVDataPoint(cursor.channel, cursor.timestamp, cursor.value);
+                try {
+                    if (cursor.next()) {
+                        queue.add(entry);
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    cursor.close();
+                }
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+
+    /**
+     * Queue entry ordered by the cursor's current timestamp, then by file order
+     */
+    private static class Entry implements Comparable<Entry> {
+        final CSVFileCursor cursor;
+        final int order;
+
+        Entry(CSVFileCursor cursor, int order) {
+            this.cursor = cursor;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            if (cursor.timestamp != o.cursor.timestamp) {
+                return cursor.timestamp < o.cursor.timestamp ? -1 : 1;
+            }
+            return order < o.order ? -1 : (order == o.order ? 0 : 1);
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package md2k.mCerebrum;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.*;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /*
  * Copyright (c) 2015, The University of Memphis, MD2K Center
@@ -30,47 +30,166 @@ import java.util.*;
  * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
+
+/**
+ * In-memory import of channel files into primitive columns
+ *
+ * @deprecated Replay reads channel files through CSVMerger, which streams a k-way merge of the files instead of
+ * loading and sorting whole sessions.  Kept for callers that need random access to all samples at once.
+ */
+@Deprecated
 public class CSVParser implements Iterable<CSVDataPoint> {
 
-    private final List<CSVDataPoint> data;
+    private long[] timestamps;
+    private double[] values;
+    private int[] channels;
+    private int size;
 
 
     public CSVParser() {
-        this.data = new ArrayList<CSVDataPoint>();
+        this.timestamps = new long[1024];
+        this.values = new double[1024];
+        this.channels = new int[1024];
+        this.size = 0;
     }
 
+    /**
+     * Import a file of "value timestamp" lines.  The file is memory mapped and parsed directly into primitive columns;
+     * values are truncated to integers as they are read.
+     *
+     * @param filename File name and path
+     * @param channel  AutoSense channel of the file
+     */
     public void importData(String filename, int channel) {
+        try {
+            CSVFileCursor cursor = new CSVFileCursor(filename, channel);
+            try {
+                while (cursor.next()) {
+                    add(cursor.timestamp, cursor.value, channel);
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-        CSVDataPoint tempPacket;
+    /**
+     * Stable sort of all imported samples by timestamp.  Each imported file is already time ordered, so the ordered
+     * runs are merged pairwise.
+     */
+    public void sort() {
+        if (size < 2) {
+            return;
+        }
 
-        String[] tokens;
-        int data;
-        long timestamp;
+        long[] t = new long[size];
+        double[] v = new double[size];
+        int[] c = new int[size];
 
-        File file = new File(filename);
-        Scanner scanner;
-        try {
-            scanner = new Scanner(file);
-            while (scanner.hasNext()) {
-                tokens = scanner.nextLine().split(" ");
-                timestamp = Long.parseLong(tokens[1]);
-                data = (int) Double.parseDouble(tokens[0]);
-
-                tempPacket = new CSVDataPoint(channel, timestamp, data);
-                this.data.add(tempPacket);
+        int[] runs = new int[size + 1];
+        int count = 0;
+        runs[count++] = 0;
+        for (int i = 1; i < size; i++) {
+            if (timestamps[i] < timestamps[i - 1]) {
+                runs[count++] = i;
             }
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+        }
+        runs[count] = size;
+
+        while (count > 1) {
+            int merged = 0;
+            for (int r = 0; r < count; r += 2) {
+                int lo = runs[r];
+                int mid = runs[Math.min(r + 1, count)];
+                int hi = runs[Math.min(r + 2, count)];
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while (i < mid && j < hi) {
+                    int from = timestamps[j] < timestamps[i] ? j++ : i++;
+                    t[k] = timestamps[from];
+                    v[k] = values[from];
+                    c[k++] = channels[from];
+                }
+                while (i < mid) {
+                    t[k] = timestamps[i];
+                    v[k] = values[i];
+                    c[k++] = channels[i++];
+                }
+                while (j < hi) {
+                    t[k] = timestamps[j];
+                    v[k] = values[j];
+                    c[k++] = channels[j++];
+                }
+                runs[merged++] = lo;
+            }
+            runs[merged] = size;
+            count = merged;
+
+            long[] tt = timestamps;
+            timestamps = t;
+            t = tt;
+            double[] vv = values;
+            values = v;
+            v = vv;
+            int[] cc = channels;
+            channels = c;
+            c = cc;
         }
     }
 
+    /**
+     * @return Number of imported samples
+     */
+    public int size() {
+        return size;
+    }
 
-    public void sort() {
-        Collections.sort(this.data);
+    private void add(long timestamp, double value, int channel) {
+        if (size == timestamps.length) {
+            int capacity = size * 2;
+            long[] t = new long[capacity];
+            double[] v = new double[capacity];
+            int[] c = new int[capacity];
+            System.arraycopy(timestamps, 0, t, 0, size);
+            System.arraycopy(values, 0, v, 0, size);
+            System.arraycopy(channels, 0, c, 0, size);
+            timestamps = t;
+            values = v;
+            channels = c;
+        }
+        timestamps[size] = timestamp;
+        values[size] = value;
+        channels[size] = channel;
+        size++;
     }
 
     @Override
     public Iterator<CSVDataPoint> iterator() {
-        return this.data.iterator();
+        return new Iterator<CSVDataPoint>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public CSVDataPoint next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                CSVDataPoint result = new CSVDataPoint(channels[index], timestamps[index], values[index]);
+                index++;
+                return result;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 }
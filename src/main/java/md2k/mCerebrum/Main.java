@@ -1,7 +1,9 @@
 package md2k.mCerebrum;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*
  * Copyright (c) 2015, The University of Memphis, MD2K Center
@@ -31,25 +33,72 @@ import java.util.concurrent.Executors;
  */
 public class Main {
 
+    /**
+     * Heap budgeted for each participant in flight
+     */
+    private static final long PARTICIPANT_MEMORY = 256L * 1024 * 1024;
+
     /**
      * Main driver class for replaying AutoSense data through StreamProcessor
+     * <p>
+     * Participants are replayed in parallel on a work-stealing pool sized to the machine, or to the optional third
+     * argument.  The number of participants in flight is further bounded by the heap budget so that submitting blocks
+     * instead of exhausting memory.  An optional fourth argument sets the hop in milliseconds for overlapping windows,
+     * an optional fifth argument the probability error tolerance of the approximate cStress model, and an optional
+     * sixth argument of "true" persists data streams in the binary format instead of CSV.
+     * </p>
      *
-     * @param args Arguments to the program
+     * @param args Arguments to the program: data path, cStress model path and optionally the number of threads, the
+     *             window hop, the approximation tolerance and binary persistence
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws InterruptedException {
 
         String path = args[0];
 
-        ExecutorService executor = Executors.newFixedThreadPool(1);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long hop = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        double tolerance = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+        boolean binaryPersistence = args.length > 5 && Boolean.parseBoolean(args[5]);
+        int inFlight = (int) Math.max(1, Math.min(threads, Runtime.getRuntime().maxMemory() / PARTICIPANT_MEMORY));
+        final Semaphore budget = new Semaphore(inFlight);
+        final AtomicLong totalSamples = new AtomicLong();
 
+        ForkJoinPool executor = new ForkJoinPool(threads);
+        System.out.println("Replaying with " + threads + " threads, " + inFlight + " participants in flight");
+
+        long start = System.currentTimeMillis();
         for (int i = 1; i < 23; i++) {
             String person = "SI" + String.format("%02d", i);
-            Runnable worker = new WorkerThread(path + person,args[1]);
-            executor.execute(worker);
+            final WorkerThread worker = new WorkerThread(path + person, args[1]);
+            worker.setHop(hop);
+            worker.setTolerance(tolerance);
+            worker.setBinaryPersistence(binaryPersistence);
+            budget.acquire();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        worker.run();
+                        totalSamples.addAndGet(worker.getSamples());
+                        System.out.println("Finished " + worker.getPath() + ": " + worker.getSamples() + " samples in "
+                                + worker.getElapsed() / 1000.0 + " s (" + rate(worker.getSamples(), worker.getElapsed()) + " samples/s)");
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    } finally {
+                        budget.release();
+                    }
+                }
+            });
         }
         executor.shutdown();
-        while (!executor.isTerminated()) ;
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+        long elapsed = System.currentTimeMillis() - start;
+        System.out.println("Finished all threads: " + totalSamples.get() + " samples in " + elapsed / 1000.0 + " s ("
+                + rate(totalSamples.get(), elapsed) + " samples/s)");
+    }
 
-        System.out.println("Finished all threads");
+    private static long rate(long samples, long milliseconds) {
+        return milliseconds > 0 ? samples * 1000 / milliseconds : samples;
     }
 }
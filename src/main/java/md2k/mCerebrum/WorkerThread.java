@@ -38,6 +38,11 @@ public class WorkerThread implements Runnable {
 
     private String path;
     private String cStressModelPath;
+    private long samples;
+    private long elapsed;
+    private long hop;
+    private double tolerance;
+    private boolean binaryPersistence;
 
     public WorkerThread(String path) {
         this.path = path;
@@ -49,37 +54,92 @@ public class WorkerThread implements Runnable {
     }
 
 
+    /**
+     * Produce overlapping windows, see StreamProcessor.setHop
+     *
+     * @param hop Time in milliseconds between windows, 0 for disjoint windows
+     */
+    public void setHop(long hop) {
+        this.hop = hop;
+    }
+
+    /**
+     * Score feature vectors with the approximate cStress model, see StreamProcessor.loadModel(String, double)
+     *
+     * @param tolerance Largest acceptable probability error per feature vector, 0 for exact scoring
+     */
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Persist data streams in the binary format instead of CSV, see StreamProcessor.setBinaryPersistence
+     *
+     * @param binaryPersistence True to write binary data stream files
+     */
+    public void setBinaryPersistence(boolean binaryPersistence) {
+        this.binaryPersistence = binaryPersistence;
+    }
+
+    /**
+     * @return Participant data path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return Number of samples replayed by the last run
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return Wall clock duration of the last run in milliseconds
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
     @Override
     public void run() {
-
-        CSVParser tp = new CSVParser();
-        tp.importData(path + "/rip.txt", AUTOSENSE.CHEST_RIP);
-        tp.importData(path + "/ecg.txt", AUTOSENSE.CHEST_ECG);
-        tp.importData(path + "/accelx.txt", AUTOSENSE.CHEST_ACCEL_X);
-        tp.importData(path + "/accely.txt", AUTOSENSE.CHEST_ACCEL_Y);
-        tp.importData(path + "/accelz.txt", AUTOSENSE.CHEST_ACCEL_Z);
-
-        tp.importData(path + "/left-wrist-accelx.txt", PUFFMARKER.LEFTWRIST_ACCEL_X);
-        tp.importData(path + "/left-wrist-accely.txt", PUFFMARKER.LEFTWRIST_ACCEL_Y);
-        tp.importData(path + "/left-wrist-accelz.txt", PUFFMARKER.LEFTWRIST_ACCEL_Z);
-        tp.importData(path + "/left-wrist-gyrox.txt", PUFFMARKER.LEFTWRIST_GYRO_X);
-        tp.importData(path + "/left-wrist-gyroy.txt", PUFFMARKER.LEFTWRIST_GYRO_Y);
-        tp.importData(path + "/left-wrist-gyroz.txt", PUFFMARKER.LEFTWRIST_GYRO_Z);
-
-        tp.importData(path + "/right-wrist-accely.txt", PUFFMARKER.RIGHTWRIST_ACCEL_Y);
-        tp.importData(path + "/right-wrist-accelx.txt", PUFFMARKER.RIGHTWRIST_ACCEL_X);
-        tp.importData(path + "/right-wrist-accelz.txt", PUFFMARKER.RIGHTWRIST_ACCEL_Z);
-        tp.importData(path + "/right-wrist-gyrox.txt", PUFFMARKER.RIGHTWRIST_GYRO_X);
-        tp.importData(path + "/right-wrist-gyroy.txt", PUFFMARKER.RIGHTWRIST_GYRO_Y);
-        tp.importData(path + "/right-wrist-gyroz.txt", PUFFMARKER.RIGHTWRIST_GYRO_Z);
-
-        tp.sort();
+        long runStart = System.currentTimeMillis();
+        samples = 0;
+
+        CSVMerger tp = new CSVMerger();
+        tp.addFile(path + "/rip.txt", AUTOSENSE.CHEST_RIP);
+        tp.addFile(path + "/ecg.txt", AUTOSENSE.CHEST_ECG);
+        tp.addFile(path + "/accelx.txt", AUTOSENSE.CHEST_ACCEL_X);
+        tp.addFile(path + "/accely.txt", AUTOSENSE.CHEST_ACCEL_Y);
+        tp.addFile(path + "/accelz.txt", AUTOSENSE.CHEST_ACCEL_Z);
+
+        tp.addFile(path + "/left-wrist-accelx.txt", PUFFMARKER.LEFTWRIST_ACCEL_X);
+        tp.addFile(path + "/left-wrist-accely.txt", PUFFMARKER.LEFTWRIST_ACCEL_Y);
+        tp.addFile(path + "/left-wrist-accelz.txt", PUFFMARKER.LEFTWRIST_ACCEL_Z);
+        tp.addFile(path + "/left-wrist-gyrox.txt", PUFFMARKER.LEFTWRIST_GYRO_X);
+        tp.addFile(path + "/left-wrist-gyroy.txt", PUFFMARKER.LEFTWRIST_GYRO_Y);
+        tp.addFile(path + "/left-wrist-gyroz.txt", PUFFMARKER.LEFTWRIST_GYRO_Z);
+
+        tp.addFile(path + "/right-wrist-accely.txt", PUFFMARKER.RIGHTWRIST_ACCEL_Y);
+        tp.addFile(path + "/right-wrist-accelx.txt", PUFFMARKER.RIGHTWRIST_ACCEL_X);
+        tp.addFile(path + "/right-wrist-accelz.txt", PUFFMARKER.RIGHTWRIST_ACCEL_Z);
+        tp.addFile(path + "/right-wrist-gyrox.txt", PUFFMARKER.RIGHTWRIST_GYRO_X);
+        tp.addFile(path + "/right-wrist-gyroy.txt", PUFFMARKER.RIGHTWRIST_GYRO_Y);
+        tp.addFile(path + "/right-wrist-gyroz.txt", PUFFMARKER.RIGHTWRIST_GYRO_Z);
 
         int windowSize = 60000;
+        long step = hop > 0 ? hop : windowSize;
 
         StreamProcessor streamProcessor = new StreamProcessor(windowSize);
         streamProcessor.setPath(path);
-        streamProcessor.loadModel(cStressModelPath);
+        streamProcessor.setHop(step);
+        streamProcessor.setBinaryPersistence(binaryPersistence);
+        if (tolerance > 0) {
+            streamProcessor.loadModel(cStressModelPath, tolerance);
+        } else {
+            streamProcessor.loadModel(cStressModelPath);
+        }
 
         streamProcessor.dpInterface = new DataPointInterface() {
             @Override
@@ -97,32 +157,43 @@ public class WorkerThread implements Runnable {
 //        streamProcessor.registerCallbackDataStream("org.md2k.cstress.data.accel.activity");
         streamProcessor.registerCallbackDataStream("org.md2k.cstress.probability");
         streamProcessor.registerCallbackDataStream("org.md2k.cstress.stresslabel");
-
-        long windowStartTime = -1;
-        long st = -1;
-        for (CSVDataPoint ap : tp) {
-            DataPoint dp = new DataPoint(ap.timestamp, ap.value);
-
-            streamProcessor.add(ap.channel, dp);
-
-
-            if (windowStartTime < 0) {
-                windowStartTime = Time.nextEpochTimestamp(dp.timestamp, windowSize);
-                st = System.currentTimeMillis();
-            }
-
-            if ((dp.timestamp - windowStartTime) >= windowSize) { //Process the buffer every windowSize milliseconds
-                long et = System.currentTimeMillis();
-                System.out.println("Add Iteration: " + (et - st) / 1000.0);
-                long starttime = System.currentTimeMillis();
-                streamProcessor.go();
-                long endtime = System.currentTimeMillis();
-
-                System.out.println("Loop iteration in seconds: " + (endtime - starttime) / 1000.0);
-                windowStartTime = Time.nextEpochTimestamp(dp.timestamp, windowSize);
-                st = System.currentTimeMillis();
+        streamProcessor.setPipelined(true);
+
+        try {
+            long windowStartTime = -1;
+            long st = -1;
+            for (CSVDataPoint ap : tp) {
+                DataPoint dp = new DataPoint(ap.timestamp, ap.value);
+
+                streamProcessor.add(ap.channel, dp);
+                samples++;
+
+
+                if (windowStartTime < 0) {
+                    windowStartTime = Time.nextEpochTimestamp(dp.timestamp, windowSize);
+                    st = System.currentTimeMillis();
+                }
+
+                if ((dp.timestamp - windowStartTime) >= step) { //Process the buffer every step milliseconds
+                    long et = System.currentTimeMillis();
+                    System.out.println("Add Iteration: " + (et - st) / 1000.0);
+                    long starttime = System.currentTimeMillis();
+                    streamProcessor.go();
+                    long endtime = System.currentTimeMillis();
+
+                    System.out.println("Loop iteration in seconds: " + (endtime - starttime) / 1000.0);
+                    if (step < windowSize) { //Overlapping windows end on every hop boundary
+                        windowStartTime = Time.nextEpochTimestamp(dp.timestamp, step) - step;
+                    } else {
+                        windowStartTime = Time.nextEpochTimestamp(dp.timestamp, windowSize);
+                    }
+                    st = System.currentTimeMillis();
+                }
             }
+        } finally {
+            streamProcessor.close();
         }
+        elapsed = System.currentTimeMillis() - runStart;
     }
 
 
@@ -3,10 +3,16 @@ package md2k.mCerebrum.cStress;
 import md2k.mCerebrum.cStress.autosense.AUTOSENSE;
 import md2k.mCerebrum.cStress.autosense.PUFFMARKER;
 import md2k.mCerebrum.cStress.features.*;
+import md2k.mCerebrum.cStress.library.StageGraph;
 import md2k.mCerebrum.cStress.library.structs.SVCModel;
+import md2k.mCerebrum.cStress.library.structs.ApproximateSVCModel;
 import md2k.mCerebrum.cStress.library.structs.Model;
 import md2k.mCerebrum.cStress.library.datastream.DataArrayStream;
 import md2k.mCerebrum.cStress.library.datastream.DataStreams;
+import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
+import md2k.mCerebrum.cStress.library.datastream.StreamHandle;
+import md2k.mCerebrum.cStress.library.signalprocessing.ECGFilterChain;
+import md2k.mCerebrum.cStress.library.signalprocessing.StreamingRPeakDetector;
 import md2k.mCerebrum.cStress.library.structs.DataPoint;
 import md2k.mCerebrum.cStress.library.structs.DataPointArray;
 import org.apache.commons.math3.exception.NotANumberException;
@@ -20,7 +26,14 @@ import org.apache.commons.io.FileUtils;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 
 /*
@@ -57,11 +70,59 @@ import java.util.TreeMap;
  */
 public class StreamProcessor {
 
+    private static final StreamHandle<DataPointStream> DATA_ECG = StreamHandle.dataPoint("org.md2k.cstress.data.ecg");
+    private static final StreamHandle<DataPointStream> DATA_RIP = StreamHandle.dataPoint("org.md2k.cstress.data.rip");
+    private static final StreamHandle<DataPointStream> DATA_ACCELX = StreamHandle.dataPoint("org.md2k.cstress.data.accelx");
+    private static final StreamHandle<DataPointStream> DATA_ACCELY = StreamHandle.dataPoint("org.md2k.cstress.data.accely");
+    private static final StreamHandle<DataPointStream> DATA_ACCELZ = StreamHandle.dataPoint("org.md2k.cstress.data.accelz");
+    private static final StreamHandle<DataPointStream> PROBABILITY = StreamHandle.dataPoint("org.md2k.cstress.probability");
+    private static final StreamHandle<DataPointStream> STRESSLABEL = StreamHandle.dataPoint("org.md2k.cstress.stresslabel");
+    private static final StreamHandle<DataPointStream> SKIPPED = StreamHandle.dataPoint("org.md2k.cstress.skipped");
+    private static final StreamHandle<DataPointStream> DATA_ACCEL_ACTIVITY = StreamHandle.dataPoint("org.md2k.cstress.data.accel.activity");
+    private static final StreamHandle<DataPointStream> DATA_ECG_WINDOW_QUALITY = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.window.quality");
+    private static final StreamHandle<DataPointStream> DATA_RIP_WINDOW_QUALITY = StreamHandle.dataPoint("org.md2k.cstress.data.rip.window.quality");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y2_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y2-normalized");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y3_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y3-normalized");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y4_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y4-normalized");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y5_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y5-normalized");
+    private static final StreamHandle<DataPointStream> DATA_ACCELX_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.accelx.normalized");
+    private static final StreamHandle<DataPointStream> DATA_ACCELY_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.accely.normalized");
+    private static final StreamHandle<DataPointStream> DATA_ACCELZ_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.accelz.normalized");
+    private static final StreamHandle<DataArrayStream> FV = StreamHandle.dataArray("org.md2k.cstress.fv");
+    private static final StreamHandle<DataPointStream> DATA_ECG_PEAKS_RPEAKS_STREAMING = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.peaks.rpeaks.streaming");
+    private static final StreamHandle<DataPointStream> DATA_ECG_HEARTRATE_STREAMING = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.heartrate.streaming");
+    private static final StreamHandle<DataPointStream> LEFTWRIST_ACCEL_X = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_LEFTWRIST_ACCEL_X);
+    private static final StreamHandle<DataPointStream> LEFTWRIST_ACCEL_Y = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_LEFTWRIST_ACCEL_Y);
+    private static final StreamHandle<DataPointStream> LEFTWRIST_ACCEL_Z = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_LEFTWRIST_ACCEL_Z);
+    private static final StreamHandle<DataPointStream> LEFTWRIST_GYRO_X = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_LEFTWRIST_GYRO_X);
+    private static final StreamHandle<DataPointStream> LEFTWRIST_GYRO_Y = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_LEFTWRIST_GYRO_Y);
+    private static final StreamHandle<DataPointStream> LEFTWRIST_GYRO_Z = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_LEFTWRIST_GYRO_Z);
+    private static final StreamHandle<DataPointStream> RIGHTWRIST_ACCEL_X = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_RIGHTWRIST_ACCEL_X);
+    private static final StreamHandle<DataPointStream> RIGHTWRIST_ACCEL_Y = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_RIGHTWRIST_ACCEL_Y);
+    private static final StreamHandle<DataPointStream> RIGHTWRIST_ACCEL_Z = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_RIGHTWRIST_ACCEL_Z);
+    private static final StreamHandle<DataPointStream> RIGHTWRIST_GYRO_X = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_RIGHTWRIST_GYRO_X);
+    private static final StreamHandle<DataPointStream> RIGHTWRIST_GYRO_Y = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_RIGHTWRIST_GYRO_Y);
+    private static final StreamHandle<DataPointStream> RIGHTWRIST_GYRO_Z = StreamHandle.dataPoint(PUFFMARKER.KEY_DATA_RIGHTWRIST_GYRO_Z);
+
     public DataPointInterface dpInterface;
     private long windowSize;
+    private long hop;
+    private long latest = Long.MIN_VALUE;
     private String path;
     private DataStreams datastreams = new DataStreams();
     private TreeMap<String,Object> models = new TreeMap<String,Object>();
+    private StreamingRPeakDetector rpeakDetector;
+    private ECGFilterChain ecgFilters;
+    private ForkJoinPool scoringPool;
+    private ForkJoinPool processingPool;
+    private StageGraph stages = new StageGraph();
+    private boolean stageGating = true;
+    private boolean binaryPersistence;
+    private volatile int skipReasons;
+    private ExecutorService pipeline;
+    private WindowBuffer filling;
+    private WindowBuffer spare;
+    private Future<?> pending;
 
     /**
      * Main constructor for StreamProcessor
@@ -70,8 +131,11 @@ public class StreamProcessor {
      */
     public StreamProcessor(long windowSize) {
         this.windowSize = windowSize;
+        this.hop = windowSize;
 
         configureDataStreams();
+        ecgFilters = new ECGFilterChain((Double) datastreams.get(DATA_ECG).metadata.get("frequency"));
+        configureStages();
     }
 
 
@@ -96,29 +160,199 @@ public class StreamProcessor {
         //gson parse a JSON model file and create a SVMModel object, and add it to models
     }
 
+    /**
+     * load a model file and build an approximate scoring engine for it.  Feature vectors whose probability error
+     * bound exceeds the tolerance are still scored with the exact model.  The coverage and error measured when the
+     * engine is built are reported on standard output.
+     *
+     * @param path      Path to the model file (in JSON format)
+     * @param tolerance Largest acceptable probability error per feature vector
+     */
+    public void loadModel(String path, double tolerance) {
+        loadModel(path);
+        SVCModel model = (SVCModel) models.get("cStressModel");
+        if (model != null) {
+            ApproximateSVCModel approximate = model.approximate(tolerance);
+            if (approximate != null) {
+                models.put("cStressModelApproximate", approximate);
+                System.out.println("Approximate cStress model: tolerance " + tolerance + ", coverage "
+                        + approximate.getEmpiricalCoverage() + ", largest error " + approximate.getEmpiricalError()
+                        + ", " + approximate.getExactSupportVectorCount() + " support vectors scored exactly");
+            }
+        }
+    }
+
     private void configureDataStreams() {
         //Configure Data Streams
-        datastreams.getDataPointStream("org.md2k.cstress.data.ecg").metadata.put("frequency", 64.0);
-        datastreams.getDataPointStream("org.md2k.cstress.data.ecg").metadata.put("channelID", AUTOSENSE.CHEST_ECG);
+        datastreams.get(DATA_ECG).metadata.put("frequency", 64.0);
+        datastreams.get(DATA_ECG).metadata.put("channelID", AUTOSENSE.CHEST_ECG);
 
-        datastreams.getDataPointStream("org.md2k.cstress.data.rip").metadata.put("frequency", 64.0 / 3.0);
-        datastreams.getDataPointStream("org.md2k.cstress.data.rip").metadata.put("channelID", AUTOSENSE.CHEST_RIP);
+        datastreams.get(DATA_RIP).metadata.put("frequency", 64.0 / 3.0);
+        datastreams.get(DATA_RIP).metadata.put("channelID", AUTOSENSE.CHEST_RIP);
 
-        datastreams.getDataPointStream("org.md2k.cstress.data.accelx").metadata.put("frequency", 64.0 / 6.0);
-        datastreams.getDataPointStream("org.md2k.cstress.data.accelx").metadata.put("channelID", AUTOSENSE.CHEST_ACCEL_X);
+        datastreams.get(DATA_ACCELX).metadata.put("frequency", 64.0 / 6.0);
+        datastreams.get(DATA_ACCELX).metadata.put("channelID", AUTOSENSE.CHEST_ACCEL_X);
 
-        datastreams.getDataPointStream("org.md2k.cstress.data.accely").metadata.put("frequency", 64.0 / 6.0);
-        datastreams.getDataPointStream("org.md2k.cstress.data.accely").metadata.put("channelID", AUTOSENSE.CHEST_ACCEL_X);
+        datastreams.get(DATA_ACCELY).metadata.put("frequency", 64.0 / 6.0);
+        datastreams.get(DATA_ACCELY).metadata.put("channelID", AUTOSENSE.CHEST_ACCEL_X);
 
-        datastreams.getDataPointStream("org.md2k.cstress.data.accelz").metadata.put("frequency", 64.0 / 6.0);
-        datastreams.getDataPointStream("org.md2k.cstress.data.accelz").metadata.put("channelID", AUTOSENSE.CHEST_ACCEL_X);
+        datastreams.get(DATA_ACCELZ).metadata.put("frequency", 64.0 / 6.0);
+        datastreams.get(DATA_ACCELZ).metadata.put("channelID", AUTOSENSE.CHEST_ACCEL_X);
 
-        datastreams.getDataPointStream("org.md2k.cstress.probability").metadata.put("frequency", windowSize);
-        datastreams.getDataPointStream("org.md2k.cstress.stresslabel").metadata.put("frequency", windowSize);
+        datastreams.get(PROBABILITY).metadata.put("frequency", windowSize);
+        datastreams.get(STRESSLABEL).metadata.put("frequency", windowSize);
+
+        //Per-sample intermediate streams that are only read by value
+        datastreams.get(DATA_ECG_Y2_NORMALIZED).setStatisticsEnabled(false);
+        datastreams.get(DATA_ECG_Y3_NORMALIZED).setStatisticsEnabled(false);
+        datastreams.get(DATA_ECG_Y4_NORMALIZED).setStatisticsEnabled(false);
+        datastreams.get(DATA_ECG_Y5_NORMALIZED).setStatisticsEnabled(false);
+        datastreams.get(DATA_ACCELX_NORMALIZED).setStatisticsEnabled(false);
+        datastreams.get(DATA_ACCELY_NORMALIZED).setStatisticsEnabled(false);
+        datastreams.get(DATA_ACCELZ_NORMALIZED).setStatisticsEnabled(false);
+
+    }
+
+
+
+    /**
+     * Set the pool used to score large batches of feature vectors in parallel
+     *
+     * @param pool ForkJoinPool to use, or null to score on the calling thread
+     */
+    public void setScoringPool(ForkJoinPool pool) {
+        this.scoringPool = pool;
+    }
 
+    /**
+     * Set the pool used to run independent processing stages concurrently.  Data stream callbacks may then be invoked
+     * from several threads at once.
+     *
+     * @param pool ForkJoinPool to use, or null to run the stages one after another on the calling thread
+     */
+    public void setProcessingPool(ForkJoinPool pool) {
+        this.processingPool = pool;
     }
 
+    /**
+     * Enable or disable pipelined processing.  When enabled, add() only appends samples to an ingest buffer and go()
+     * hands the completed window to a processing thread while the next window fills a second buffer.  Windows are
+     * processed in order, one at a time; go() waits only if the previous window is still being processed.  Callbacks
+     * are invoked on the processing thread, which is a daemon thread so a processor that is never closed does not keep
+     * the JVM running.  Other settings should be configured before pipelining is enabled.
+     *
+     * @param enabled True to process windows on a separate thread
+     */
+    public void setPipelined(boolean enabled) {
+        if (enabled && pipeline == null) {
+            filling = new WindowBuffer();
+            spare = new WindowBuffer();
+            pipeline = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "cStress-pipeline");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } else if (!enabled && pipeline != null) {
+            try {
+                flush();
+            } finally {
+                pipeline.shutdown();
+                pipeline = null;
+            }
+            for (int i = 0; i < filling.size; i++) {
+                ingest(filling.channels[i], filling.timestamps[i], filling.values[i]);
+            }
+            filling = null;
+            spare = null;
+        }
+    }
 
+    /**
+     * Wait until all windows handed to the processing thread have been processed
+     */
+    public void flush() {
+        if (pending != null) {
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            } finally {
+                pending = null;
+            }
+        }
+    }
+
+    /**
+     * Set the interval between windows.  With a hop shorter than the window size, go() is expected every hop and each
+     * window overlaps the previous one by windowSize - hop.  The raw sensor samples and the R-peaks of the overlap are
+     * carried into the next window instead of being buffered and detected again; R-peaks are detected sample at a time
+     * (see setStreamingRPeakDetection) so the 64 Hz ECG filtering is done once per sample regardless of the overlap.
+     * RIP and accelerometer features are recomputed from the carried samples.
+     *
+     * @param hop Time in milliseconds between windows, equal to the window size for disjoint windows
+     */
+    public void setHop(long hop) {
+        if (hop <= 0 || hop > windowSize) {
+            throw new IllegalArgumentException("Hop must be in (0, " + windowSize + "]: " + hop);
+        }
+        this.hop = hop;
+        if (hop < windowSize) {
+            setStreamingRPeakDetection(true);
+        }
+    }
+
+    /**
+     * @return Time in milliseconds between windows
+     */
+    public long getHop() {
+        return hop;
+    }
+
+    /**
+     * Enable or disable quality and activity gating.  When enabled, a window in which the participant is active or
+     * the ECG or RIP window quality is bad skips the ECG and RIP feature stages and the feature vector; a marker with
+     * the AUTOSENSE.SKIPPED_* reasons is added to org.md2k.cstress.skipped instead.  Active windows never yielded a
+     * feature vector; bad quality windows are no longer scored.  A window whose quality or activity can not be
+     * determined is skipped with AUTOSENSE.SKIPPED_UNEVALUATED.
+     *
+     * @param enabled False to run every stage on every window
+     */
+    public void setStageGating(boolean enabled) {
+        stageGating = enabled;
+        stages = new StageGraph();
+        configureStages();
+    }
+
+    /**
+     * Select the format data streams are persisted in after each window.  By default every stream is appended to a
+     * "timestamp, value" text file, stream name + ".csv".  Binary persistence writes the chunked columnar format of
+     * BinaryStreamWriter to stream name + BinaryStreamWriter.EXTENSION instead, read back with BinaryStreamReader.
+     *
+     * @param enabled True to persist data streams in the binary format
+     */
+    public void setBinaryPersistence(boolean enabled) {
+        binaryPersistence = enabled;
+    }
+
+    /**
+     * Enable or disable sample-at-a-time R-peak detection.  When enabled, ECG samples are run through a
+     * StreamingRPeakDetector as they arrive and ECGFeatures uses the R-peaks it emitted instead of recomputing them
+     * for every window.
+     *
+     * @param enabled True to detect R-peaks as ECG samples arrive
+     */
+    public void setStreamingRPeakDetection(boolean enabled) {
+        if (enabled && rpeakDetector == null) {
+            rpeakDetector = new StreamingRPeakDetector((Double) datastreams.get(DATA_ECG).metadata.get("frequency"));
+        } else if (!enabled) {
+            rpeakDetector = null;
+        }
+    }
 
     /**
      * set the path for the feature files used by this stream processor
@@ -136,34 +370,137 @@ public class StreamProcessor {
      * Main computation loop that processes all buffered data through several different classes
      */
     public void process() {
+        //Stays set unless the gate runs to completion for this window
+        skipReasons = stageGating ? AUTOSENSE.SKIPPED_UNEVALUATED : 0;
 
         try {
-            //Data quality computations
-            ECGDataQuality ecgDQ = new ECGDataQuality(datastreams, AUTOSENSE.AUTOSENSE_ECG_QUALITY);
-            RIPDataQuality ripDQ = new RIPDataQuality(datastreams, AUTOSENSE.AUTOSENSE_RIP_QUALITY);
+            stages.run(processingPool);
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("Stress Exception Handler: IndexOutOfBoundsException");
+            e.printStackTrace();
+        } finally {
+            if (skipReasons == AUTOSENSE.SKIPPED_UNEVALUATED) {
+                skipWindow();
+            }
+        }
+
 
-            //AutoSense features
-            AccelerometerFeatures af = new AccelerometerFeatures(datastreams, AUTOSENSE.ACTIVITY_THRESHOLD, AUTOSENSE.ACCEL_WINDOW_SIZE);
-            ECGFeatures ef = new ECGFeatures(datastreams);
-            RIPFeatures rf = new RIPFeatures(datastreams);
+    }
 
-            //AutoSense wrist features
+    /**
+     * Declare the processing stages and their data dependencies.  ECG and RIP features use the accelerometer activity
+     * flag, and RIP features use the RR intervals from ECG features.  With stage gating both also wait for the gate,
+     * which decides from the window quality and activity whether they run at all.
+     */
+    private void configureStages() {
+        //Data quality computations
+        stages.add("ecg.quality", new Runnable() {
+            @Override
+            public void run() {
+                new ECGDataQuality(datastreams, AUTOSENSE.AUTOSENSE_ECG_QUALITY);
+            }
+        });
+        stages.add("rip.quality", new Runnable() {
+            @Override
+            public void run() {
+                new RIPDataQuality(datastreams, AUTOSENSE.AUTOSENSE_RIP_QUALITY);
+            }
+        });
+
+        //AutoSense features
+        stages.add("accel.features", new Runnable() {
+            @Override
+            public void run() {
+                new AccelerometerFeatures(datastreams, AUTOSENSE.ACTIVITY_THRESHOLD, AUTOSENSE.ACCEL_WINDOW_SIZE);
+            }
+        });
+        String[] gate = new String[0];
+        if (stageGating) {
+            stages.add("gate", new Runnable() {
+                @Override
+                public void run() {
+                    skipReasons = computeSkipReasons();
+                    if (skipReasons != 0) {
+                        skipWindow();
+                    }
+                }
+            }, "ecg.quality", "rip.quality", "accel.features");
+            gate = new String[]{"gate"};
+        }
+        stages.add("ecg.features", new Runnable() {
+            @Override
+            public void run() {
+                if (skipReasons == 0) {
+                    new ECGFeatures(datastreams, rpeakDetector != null, ecgFilters);
+                }
+            }
+        }, concat(gate, "accel.features"));
+        stages.add("rip.features", new Runnable() {
+            @Override
+            public void run() {
+                if (skipReasons == 0) {
+                    new RIPFeatures(datastreams);
+                }
+            }
+        }, concat(gate, "accel.features", "ecg.features"));
+
+        //AutoSense wrist features
 //            AccelGyroFeatures leftWrist = new AccelGyroFeatures(datastreams, PUFFMARKER.LEFT_WRIST);
 //            AccelGyroFeatures rightWrist = new AccelGyroFeatures(datastreams, PUFFMARKER.RIGHT_WRIST);
+    }
 
-
-        } catch (IndexOutOfBoundsException e) {
-            System.err.println("Stress Exception Handler: IndexOutOfBoundsException");
-            e.printStackTrace();
+    /**
+     * Decide whether the current window is worth the feature stages
+     *
+     * @return Bit flags of AUTOSENSE.SKIPPED_* reasons, 0 to process the window
+     */
+    private int computeSkipReasons() {
+        int reasons = 0;
+        DataPointStream activity = datastreams.get(DATA_ACCEL_ACTIVITY);
+        if (activity.data.size() == 0 || activity.data.getValue(0) != 0.0) {
+            reasons |= AUTOSENSE.SKIPPED_ACTIVITY;
         }
+        DataPointStream ecgQuality = datastreams.get(DATA_ECG_WINDOW_QUALITY);
+        if (ecgQuality.data.size() == 0 || ecgQuality.data.getValue(0) != AUTOSENSE.QUALITY_GOOD) {
+            reasons |= AUTOSENSE.SKIPPED_ECG_QUALITY;
+        }
+        DataPointStream ripQuality = datastreams.get(DATA_RIP_WINDOW_QUALITY);
+        if (ripQuality.data.size() == 0 || ripQuality.data.getValue(0) != AUTOSENSE.QUALITY_GOOD) {
+            reasons |= AUTOSENSE.SKIPPED_RIP_QUALITY;
+        }
+        return reasons;
+    }
 
+    /**
+     * Record the skipReasons of the current window and clear the ECG filter state so the next processed window does
+     * not continue from samples before the gap
+     */
+    private void skipWindow() {
+        ecgFilters.reset();
+        long timestamp = latest;
+        DataPointStream activity = datastreams.get(DATA_ACCEL_ACTIVITY);
+        DataPointStream ecg = datastreams.get(DATA_ECG);
+        if (activity.data.size() > 0) {
+            timestamp = activity.data.getTimestamp(0);
+        } else if (ecg.data.size() > 0) {
+            timestamp = ecg.data.getTimestamp(0);
+        }
+        datastreams.get(SKIPPED).add(timestamp, skipReasons);
+    }
 
+    private static String[] concat(String[] first, String... second) {
+        String[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
     }
 
     /**
      * Main processing method for computing results after basic datastream processing
      */
     public void generateResults() {
+        if (skipReasons != 0) {
+            return;
+        }
         try {
             cStressFeatureVector cs = new cStressFeatureVector(datastreams);
     //        PuffMarker pm = new PuffMarker(datastreams);
@@ -177,6 +514,28 @@ public class StreamProcessor {
      * Method for processing the base features, computing the model feature vectors, and deploying the model to get model outputs
      */
     public void go() {
+        if (pipeline == null) {
+            processWindow();
+            return;
+        }
+
+        flush();
+        final WindowBuffer window = filling;
+        filling = spare;
+        spare = window;
+        pending = pipeline.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < window.size; i++) {
+                    ingest(window.channels[i], window.timestamps[i], window.values[i]);
+                }
+                window.clear();
+                processWindow();
+            }
+        });
+    }
+
+    private void processWindow() {
         process();
         generateResults();
         runcStress();
@@ -189,11 +548,18 @@ public class StreamProcessor {
      */
     private void runcStress() {
         SVCModel model = (SVCModel)models.get("cStressModel");
-        DataArrayStream featurevector = datastreams.getDataArrayStream("org.md2k.cstress.fv");
-
-        for(DataPointArray ap: featurevector.data)
+        DataArrayStream featurevector = datastreams.get(FV);
+
+        ApproximateSVCModel approximate = (ApproximateSVCModel)models.get("cStressModelApproximate");
+        double[] probabilities;
+        if (approximate != null)
+            probabilities = approximate.computeProbabilities(featurevector.data, scoringPool);
+        else
+            probabilities = model.computeProbabilities(featurevector.data, scoringPool);
+        for(int i = 0; i < probabilities.length; i++)
         {
-            double prob = model.computeProbability(ap);
+            DataPointArray ap = featurevector.data.get(i);
+            double prob = probabilities[i];
             int label;
             if (prob > model.getBias())
                 label = AUTOSENSE.STRESSED;
@@ -201,8 +567,8 @@ public class StreamProcessor {
                 label = AUTOSENSE.NOT_STRESSED;
 
 
-            datastreams.getDataPointStream("org.md2k.cstress.probability").add(new DataPoint(ap.timestamp,prob));
-            datastreams.getDataPointStream("org.md2k.cstress.stresslabel").add(new DataPoint(ap.timestamp,label));
+            datastreams.get(PROBABILITY).add(ap.timestamp, prob);
+            datastreams.get(STRESSLABEL).add(ap.timestamp, label);
         }
 
     }
@@ -215,90 +581,136 @@ public class StreamProcessor {
      * @param dp      DataPoint containing a timestamp and value
      */
     public void add(int channel, DataPoint dp) {
+        add(channel, dp.timestamp, dp.value);
+    }
+
+    /**
+     * Add a new sample to the buffers without requiring a DataPoint
+     *
+     * @param channel   Identifies which sensor stream the sample is associated with
+     * @param timestamp Time in milliseconds since Jan 1st, 1970
+     * @param value     Sample value
+     */
+    public void add(int channel, long timestamp, double value) {
+        if (pipeline != null) {
+            filling.add(channel, timestamp, value);
+        } else {
+            ingest(channel, timestamp, value);
+        }
+    }
+
+    private void ingest(int channel, long timestamp, double value) {
+        if (timestamp > latest) {
+            latest = timestamp;
+        }
         switch (channel) {
             case AUTOSENSE.CHEST_ECG:
-                datastreams.getDataPointStream("org.md2k.cstress.data.ecg").add(dp);
+                datastreams.get(DATA_ECG).add(timestamp, value);
+                if (rpeakDetector != null) {
+                    rpeakDetector.add(timestamp, value, datastreams.get(DATA_ECG_PEAKS_RPEAKS_STREAMING),
+                            datastreams.get(DATA_ECG_HEARTRATE_STREAMING));
+                }
                 break;
 
             case AUTOSENSE.CHEST_RIP:
-                datastreams.getDataPointStream("org.md2k.cstress.data.rip").add(dp);
+                datastreams.get(DATA_RIP).add(timestamp, value);
                 break;
 
             case AUTOSENSE.CHEST_ACCEL_X:
-                datastreams.getDataPointStream("org.md2k.cstress.data.accelx").add(dp);
+                datastreams.get(DATA_ACCELX).add(timestamp, value);
                 break;
 
             case AUTOSENSE.CHEST_ACCEL_Y:
-                datastreams.getDataPointStream("org.md2k.cstress.data.accely").add(dp);
+                datastreams.get(DATA_ACCELY).add(timestamp, value);
                 break;
 
             case AUTOSENSE.CHEST_ACCEL_Z:
-                datastreams.getDataPointStream("org.md2k.cstress.data.accelz").add(dp);
+                datastreams.get(DATA_ACCELZ).add(timestamp, value);
                 break;
 
 
             case PUFFMARKER.LEFTWRIST_ACCEL_X:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_LEFTWRIST_ACCEL_X)).add(dp);
+                (datastreams.get(LEFTWRIST_ACCEL_X)).add(timestamp, value);
                 break;
 
             case PUFFMARKER.LEFTWRIST_ACCEL_Y:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_LEFTWRIST_ACCEL_Y)).add(dp);
+                (datastreams.get(LEFTWRIST_ACCEL_Y)).add(timestamp, value);
                 break;
 
             case PUFFMARKER.LEFTWRIST_ACCEL_Z:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_LEFTWRIST_ACCEL_Z)).add(dp);
+                (datastreams.get(LEFTWRIST_ACCEL_Z)).add(timestamp, value);
                 break;
 
             case PUFFMARKER.LEFTWRIST_GYRO_X:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_LEFTWRIST_GYRO_X)).add(dp);
+                (datastreams.get(LEFTWRIST_GYRO_X)).add(timestamp, value);
                 break;
 
             case PUFFMARKER.LEFTWRIST_GYRO_Y:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_LEFTWRIST_GYRO_Y)).add(dp);
+                (datastreams.get(LEFTWRIST_GYRO_Y)).add(timestamp, value);
                 break;
 
             case PUFFMARKER.LEFTWRIST_GYRO_Z:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_LEFTWRIST_GYRO_Z)).add(dp);
+                (datastreams.get(LEFTWRIST_GYRO_Z)).add(timestamp, value);
                 break;
 
 
             case PUFFMARKER.RIGHTWRIST_ACCEL_X:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_RIGHTWRIST_ACCEL_X)).add(dp);
+                (datastreams.get(RIGHTWRIST_ACCEL_X)).add(timestamp, value);
                 break;
 
             case PUFFMARKER.RIGHTWRIST_ACCEL_Y:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_RIGHTWRIST_ACCEL_Y)).add(dp);
+                (datastreams.get(RIGHTWRIST_ACCEL_Y)).add(timestamp, value);
                 break;
 
             case PUFFMARKER.RIGHTWRIST_ACCEL_Z:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_RIGHTWRIST_ACCEL_Z)).add(dp);
+                (datastreams.get(RIGHTWRIST_ACCEL_Z)).add(timestamp, value);
                 break;
 
             case PUFFMARKER.RIGHTWRIST_GYRO_X:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_RIGHTWRIST_GYRO_X)).add(dp);
+                (datastreams.get(RIGHTWRIST_GYRO_X)).add(timestamp, value);
                 break;
 
             case PUFFMARKER.RIGHTWRIST_GYRO_Y:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_RIGHTWRIST_GYRO_Y)).add(dp);
+                (datastreams.get(RIGHTWRIST_GYRO_Y)).add(timestamp, value);
                 break;
 
             case PUFFMARKER.RIGHTWRIST_GYRO_Z:
-                (datastreams.getDataPointStream(PUFFMARKER.KEY_DATA_RIGHTWRIST_GYRO_Z)).add(dp);
+                (datastreams.get(RIGHTWRIST_GYRO_Z)).add(timestamp, value);
                 break;
 
 
             default:
-                System.out.println("NOT INTERESTED: " + dp);
+                System.out.println("NOT INTERESTED: " + new DataPoint(timestamp, value));
                 break;
         }
     }
 
+    /**
+     * Finish any pipelined processing and close the files that data streams are persisted to
+     */
+    public void close() {
+        try {
+            setPipelined(false);
+        } finally {
+            datastreams.close();
+        }
+    }
+
     /**
      * Persist and reset all datastreams
      */
     private void resetDataStreams() {
-        datastreams.persist(path + "/");
-        datastreams.reset();
+        if (binaryPersistence) {
+            datastreams.persistBinary(path + "/");
+        } else {
+            datastreams.persist(path + "/");
+        }
+        if (hop < windowSize) {
+            datastreams.reset(latest - (windowSize - hop), DATA_ECG, DATA_RIP, DATA_ACCELX, DATA_ACCELY, DATA_ACCELZ,
+                    DATA_ECG_PEAKS_RPEAKS_STREAMING, DATA_ECG_HEARTRATE_STREAMING);
+        } else {
+            datastreams.reset();
+        }
     }
 
 
@@ -318,4 +730,30 @@ public class StreamProcessor {
     public void registerCallbackDataArrayStream(String s) {
         datastreams.registerDataArrayInterface(s, dpInterface);
     }
+
+    /**
+     * Samples of one window in arrival order, buffered by the ingest thread in pipelined mode
+     */
+    private static class WindowBuffer {
+        int[] channels = new int[1024];
+        long[] timestamps = new long[1024];
+        double[] values = new double[1024];
+        int size;
+
+        void add(int channel, long timestamp, double value) {
+            if (size == channels.length) {
+                channels = Arrays.copyOf(channels, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            channels[size] = channel;
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
 }
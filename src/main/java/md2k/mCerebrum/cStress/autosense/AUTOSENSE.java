@@ -52,6 +52,12 @@ public class AUTOSENSE {
     public static final int NOT_STRESSED = 0;
     public static final int STRESSED = 1;
 
+    //Reasons a window was skipped, combined as bit flags
+    public static final int SKIPPED_ACTIVITY = 1;
+    public static final int SKIPPED_ECG_QUALITY = 2;
+    public static final int SKIPPED_RIP_QUALITY = 4;
+    public static final int SKIPPED_UNEVALUATED = 8;
+
     //Library signal processing constants
     public static final double MED_CONSTANT = 4.5;
     public static final double MAD_CONSTANT = 2.8;
@@ -74,6 +80,7 @@ public class AUTOSENSE {
     public static final double STRESS_PROBABILTY_THRESHOLD = 0.339329059788;
 
     public static final double RPEAK_INTERPEAK_MULTIPLIER = 0.5;
+    public static final double RPEAK_REFRACTORY_SECS = 0.2;
 
     public static final int SAMPLE_LENGTH_SECS = 60;
 
@@ -92,7 +92,7 @@ public class AccelGyroFeatures {
         int[] indexList = new int[slowMovingAverage.data.size()];
         int curIndex = 0;
         for (int i = 0; i < slowMovingAverage.data.size(); i++) {
-            double diff = slowMovingAverage.data.get(i).value - fastMovingAverage.data.get(i).value;
+            double diff = slowMovingAverage.data.getValue(i) - fastMovingAverage.data.getValue(i);
             if (diff > THRESHOLD) {
                 if (curIndex == 0) {
                     indexList[curIndex++] = i;
@@ -150,10 +150,10 @@ public class AccelGyroFeatures {
      */
     private void calculateRollPitchSegment(DataPointStream roll, DataPointStream pitch, DataPointStream accelx, DataPointStream accely, DataPointStream accelz, int sign) {
         for (int i = 0; i < accelx.data.size(); i++) {
-            double rll = roll(accelx.data.get(i).value, sign * accely.data.get(i).value, accelz.data.get(i).value);
-            double ptch = pitch(accelx.data.get(i).value, sign * accely.data.get(i).value, accelz.data.get(i).value);
-            roll.data.add(new DataPoint(accelx.data.get(i).timestamp, rll));
-            pitch.data.add(new DataPoint(accelx.data.get(i).timestamp, ptch));
+            double rll = roll(accelx.data.getValue(i), sign * accely.data.getValue(i), accelz.data.getValue(i));
+            double ptch = pitch(accelx.data.getValue(i), sign * accely.data.getValue(i), accelz.data.getValue(i));
+            roll.data.add(new DataPoint(accelx.data.getTimestamp(i), rll));
+            pitch.data.add(new DataPoint(accelx.data.getTimestamp(i), ptch));
         }
     }
 
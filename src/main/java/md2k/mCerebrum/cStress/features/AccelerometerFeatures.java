@@ -5,6 +5,7 @@ import md2k.mCerebrum.cStress.library.Time;
 import md2k.mCerebrum.cStress.library.Vector;
 import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
 import md2k.mCerebrum.cStress.library.datastream.DataStreams;
+import md2k.mCerebrum.cStress.library.datastream.StreamHandle;
 import md2k.mCerebrum.cStress.library.signalprocessing.Smoothing;
 import md2k.mCerebrum.cStress.library.structs.DataPoint;
 
@@ -45,6 +46,15 @@ import java.util.List;
 public class AccelerometerFeatures {
 
     public static final String ORG_MD2K_CSTRESS_DATA_ACCELX = "org.md2k.cstress.data.accelx";
+    private static final StreamHandle<DataPointStream> DATA_ACCELX = StreamHandle.dataPoint(ORG_MD2K_CSTRESS_DATA_ACCELX);
+    private static final StreamHandle<DataPointStream> DATA_ACCELX_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.accelx.normalized");
+    private static final StreamHandle<DataPointStream> DATA_ACCELY = StreamHandle.dataPoint("org.md2k.cstress.data.accely");
+    private static final StreamHandle<DataPointStream> DATA_ACCELY_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.accely.normalized");
+    private static final StreamHandle<DataPointStream> DATA_ACCELZ = StreamHandle.dataPoint("org.md2k.cstress.data.accelz");
+    private static final StreamHandle<DataPointStream> DATA_ACCELZ_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.accelz.normalized");
+    private static final StreamHandle<DataPointStream> DATA_ACCEL_MAGNITUDE = StreamHandle.dataPoint("org.md2k.cstress.data.accel.magnitude");
+    private static final StreamHandle<DataPointStream> DATA_ACCEL_WINDOWED_MAGNITUDE_STDEV = StreamHandle.dataPoint("org.md2k.cstress.data.accel.windowed.magnitude.stdev");
+    private static final StreamHandle<DataPointStream> DATA_ACCEL_ACTIVITY = StreamHandle.dataPoint("org.md2k.cstress.data.accel.activity");
 
     /**
      * Accelerometer feature processor for StreamProcessor-Autosense.
@@ -55,23 +65,23 @@ public class AccelerometerFeatures {
      */
     public AccelerometerFeatures(DataStreams datastreams, double ACTIVITY_THRESHOLD, int windowSize) {
         //Compute normalized accelerometer values
-        DataPointStream accelx = datastreams.getDataPointStream(ORG_MD2K_CSTRESS_DATA_ACCELX);
-        DataPointStream accelxNormalized = datastreams.getDataPointStream("org.md2k.cstress.data.accelx.normalized");
+        DataPointStream accelx = datastreams.get(DATA_ACCELX);
+        DataPointStream accelxNormalized = datastreams.get(DATA_ACCELX_NORMALIZED);
         Smoothing.normalize(accelxNormalized, accelx);
 
-        DataPointStream accely = datastreams.getDataPointStream("org.md2k.cstress.data.accely");
-        DataPointStream accelyNormalized = datastreams.getDataPointStream("org.md2k.cstress.data.accely.normalized");
+        DataPointStream accely = datastreams.get(DATA_ACCELY);
+        DataPointStream accelyNormalized = datastreams.get(DATA_ACCELY_NORMALIZED);
         Smoothing.normalize(accelyNormalized, accely);
 
-        DataPointStream accelz = datastreams.getDataPointStream("org.md2k.cstress.data.accelz");
-        DataPointStream accelzNormalized = datastreams.getDataPointStream("org.md2k.cstress.data.accelz.normalized");
+        DataPointStream accelz = datastreams.get(DATA_ACCELZ);
+        DataPointStream accelzNormalized = datastreams.get(DATA_ACCELZ_NORMALIZED);
         Smoothing.normalize(accelzNormalized, accelz);
 
 
         //Window accel data streams
-        List<DataPoint[]> segxWindowed = Time.window(datastreams.getDataPointStream("org.md2k.cstress.data.accelx").data, windowSize);
-        List<DataPoint[]> segyWindowed = Time.window(datastreams.getDataPointStream("org.md2k.cstress.data.accely").data, windowSize);
-        List<DataPoint[]> segzWindowed = Time.window(datastreams.getDataPointStream("org.md2k.cstress.data.accelz").data, windowSize);
+        List<DataPoint[]> segxWindowed = Time.window(datastreams.get(DATA_ACCELX).data, windowSize);
+        List<DataPoint[]> segyWindowed = Time.window(datastreams.get(DATA_ACCELY).data, windowSize);
+        List<DataPoint[]> segzWindowed = Time.window(datastreams.get(DATA_ACCELZ).data, windowSize);
 
 
         //Compute magnitude and stdev from windowed datastreams
@@ -81,26 +91,26 @@ public class AccelerometerFeatures {
             DataPoint[] wz = segzWindowed.get(i);
             double[] magnitude = Vector.magnitude(wx, wy, wz);
             for (int j = 0; j < magnitude.length; j++) {
-                datastreams.getDataPointStream("org.md2k.cstress.data.accel.magnitude").add(new DataPoint(wx[j].timestamp, magnitude[j]));
+                datastreams.get(DATA_ACCEL_MAGNITUDE).add(wx[j].timestamp, magnitude[j]);
             }
             SummaryStatistics sd = new SummaryStatistics(magnitude);
 
             if (wx.length > 0) {
-                datastreams.getDataPointStream("org.md2k.cstress.data.accel.windowed.magnitude.stdev").add(new DataPoint(wx[0].timestamp, sd.getStandardDeviation()));
+                datastreams.get(DATA_ACCEL_WINDOWED_MAGNITUDE_STDEV).add(wx[0].timestamp, sd.getStandardDeviation());
             }
         }
 
 
         //Compute Activity from datastreams
-        double lowlimit = datastreams.getDataPointStream("org.md2k.cstress.data.accel.magnitude").getPercentile(1);
-        double highlimit = datastreams.getDataPointStream("org.md2k.cstress.data.accel.magnitude").getPercentile(99);
+        double lowlimit = datastreams.get(DATA_ACCEL_MAGNITUDE).getPercentile(1);
+        double highlimit = datastreams.get(DATA_ACCEL_MAGNITUDE).getPercentile(99);
         double range = highlimit - lowlimit;
 
-        DataPointStream stdmag = datastreams.getDataPointStream("org.md2k.cstress.data.accel.windowed.magnitude.stdev");
+        DataPointStream stdmag = datastreams.get(DATA_ACCEL_WINDOWED_MAGNITUDE_STDEV);
 
         boolean[] activityOrNot = new boolean[stdmag.data.size()];
         for (int i = 0; i < stdmag.data.size(); i++) {
-            activityOrNot[i] = stdmag.data.get(i).value > (lowlimit + ACTIVITY_THRESHOLD * range);
+            activityOrNot[i] = stdmag.data.getValue(i) > (lowlimit + ACTIVITY_THRESHOLD * range);
         }
 
         int minActive = 0;
@@ -114,7 +124,7 @@ public class AccelerometerFeatures {
             active = 1;
         }
 
-        datastreams.getDataPointStream("org.md2k.cstress.data.accel.activity").add(new DataPoint(datastreams.getDataPointStream("org.md2k.cstress.data.accelx").data.get(0).timestamp, active));
+        datastreams.get(DATA_ACCEL_ACTIVITY).add(new DataPoint(datastreams.get(DATA_ACCELX).data.getTimestamp(0), active));
 
     }
 
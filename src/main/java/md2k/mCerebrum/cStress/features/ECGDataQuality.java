@@ -30,6 +30,7 @@ package md2k.mCerebrum.cStress.features;
 import md2k.mCerebrum.cStress.autosense.AUTOSENSE;
 import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
 import md2k.mCerebrum.cStress.library.datastream.DataStreams;
+import md2k.mCerebrum.cStress.library.datastream.StreamHandle;
 import md2k.mCerebrum.cStress.library.dataquality.autosense.ECGQualityCalculation;
 import md2k.mCerebrum.cStress.library.structs.DataPoint;
 
@@ -40,14 +41,18 @@ import java.util.List;
  */
 public class ECGDataQuality {
 
+    private static final StreamHandle<DataPointStream> DATA_ECG = StreamHandle.dataPoint("org.md2k.cstress.data.ecg");
+    private static final StreamHandle<DataPointStream> DATA_ECG_QUALITY = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.quality");
+    private static final StreamHandle<DataPointStream> DATA_ECG_WINDOW_QUALITY = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.window.quality");
+
     /**
      * Constructor
      * @param datastreams Global datastream object
      * @param qualityThreshold Input quality threshold
      */
     public ECGDataQuality(DataStreams datastreams, double qualityThreshold) {
-        DataPointStream ecg = datastreams.getDataPointStream("org.md2k.cstress.data.ecg");
-        DataPointStream ecgQuality = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.quality");
+        DataPointStream ecg = datastreams.get(DATA_ECG);
+        DataPointStream ecgQuality = datastreams.get(DATA_ECG_QUALITY);
 
         ECGQualityCalculation ecgComputation = new ECGQualityCalculation(3, 50, 4500, 20, 2, 47);
         List<DataPoint> quality = ecgComputation.computeQuality(ecg.data, 5000); //0.67
@@ -60,7 +65,7 @@ public class ECGDataQuality {
             }
         }
 
-        DataPointStream ecgWindowQuality = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.window.quality");
+        DataPointStream ecgWindowQuality = datastreams.get(DATA_ECG_WINDOW_QUALITY);
 
         if ((count / quality.size()) > qualityThreshold)
             ecgWindowQuality.add(new DataPoint(quality.get(0).timestamp, AUTOSENSE.QUALITY_GOOD));
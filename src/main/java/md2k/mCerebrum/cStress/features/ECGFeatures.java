@@ -3,15 +3,17 @@ package md2k.mCerebrum.cStress.features;
 import md2k.mCerebrum.cStress.autosense.AUTOSENSE;
 import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
 import md2k.mCerebrum.cStress.library.datastream.DataStreams;
+import md2k.mCerebrum.cStress.library.datastream.StreamHandle;
 import md2k.mCerebrum.cStress.library.signalprocessing.AutoSense;
 import md2k.mCerebrum.cStress.library.signalprocessing.ECG;
-import md2k.mCerebrum.cStress.library.signalprocessing.Filter;
+import md2k.mCerebrum.cStress.library.signalprocessing.ECGFilterChain;
 import md2k.mCerebrum.cStress.library.signalprocessing.Smoothing;
 import md2k.mCerebrum.cStress.library.structs.DataPoint;
+import md2k.mCerebrum.cStress.library.structs.DataPointList;
 import md2k.mCerebrum.cStress.library.structs.Lomb;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 
 /*
@@ -47,87 +49,109 @@ import java.util.List;
  */
 public class ECGFeatures {
 
+    private static final StreamHandle<DataPointStream> DATA_ECG = StreamHandle.dataPoint("org.md2k.cstress.data.ecg");
+    private static final StreamHandle<DataPointStream> DATA_ECG_PEAKS_RPEAKS_STREAMING = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.peaks.rpeaks.streaming");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_VALUE = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr_value");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_VALUE_DIFF = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr_value_diff");
+    private static final StreamHandle<DataPointStream> DATA_ECG_VALIDFILTER_RR_VALUE = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.validfilter_rr_value");
+    private static final StreamHandle<DataPointStream> DATA_ECG_OUTLIER = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.outlier");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_VALUE_FILTERED = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr_value.filtered");
+    private static final StreamHandle<DataPointStream> DATA_ACCEL_ACTIVITY = StreamHandle.dataPoint("org.md2k.cstress.data.accel.activity");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_HEARTRATE = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr.heartrate");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_LOW_HIGH_FREQUENCY_ENERGY_RATIO = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr.LowHighFrequencyEnergyRatio");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_LOMB_LOW_FREQUENCY_ENERGY = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr.LombLowFrequencyEnergy");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_LOMB_MEDIUM_FREQUENCY_ENERGY = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr.LombMediumFrequencyEnergy");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_LOMB_HIGH_FREQUENCY_ENERGY = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr.LombHighFrequencyEnergy");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y2 = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y2");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y2_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y2-normalized");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y3 = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y3");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y3_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y3-normalized");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y4 = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y4");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y4_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y4-normalized");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y5 = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y5");
+    private static final StreamHandle<DataPointStream> DATA_ECG_Y5_NORMALIZED = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.y5-normalized");
+    private static final StreamHandle<DataPointStream> DATA_ECG_PEAKS = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.peaks");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_AVE = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr_ave");
+    private static final StreamHandle<DataPointStream> DATA_ECG_PEAKS_TEMP1 = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.peaks.temp1");
+    private static final StreamHandle<DataPointStream> DATA_ECG_PEAKS_TEMP2 = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.peaks.temp2");
+    private static final StreamHandle<DataPointStream> DATA_ECG_PEAKS_RPEAKS = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.peaks.rpeaks");
+
     /**
      * ECG Constructor which handles feature computation.
      *
      * @param datastreams Global data stream object
      */
     public ECGFeatures(DataStreams datastreams) {
+        this(datastreams, false);
+    }
 
-        //Compute RR Intervals
-        DataPointStream ECGstream = datastreams.getDataPointStream("org.md2k.cstress.data.ecg");
-        double frequency = (Double) ECGstream.metadata.get("frequency");
-
-        //Ohio State Algorithm
-        int window_l = (int) Math.ceil(frequency / 5.0);
-
-        //Specific to Autosense hardware @ 64Hz and 12-bit values //TODO: Fix this
-        double f = 2.0 / frequency;
-        double[] F = {0.0, 4.5 * f, 5.0 * f, 20.0 * f, 20.5 * f, 1};
-        double[] A = {0, 0, 1, 1, 0, 0};
-        double[] w = {500.0 / 0.02, 1.0 / 0.02, 500 / 0.02};
-        double fl = AUTOSENSE.FL_INIT;
-
-        DataPointStream y2 = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.y2");
-        DataPointStream y2normalized = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.y2-normalized");
-        AutoSense.applyFilterNormalize(ECGstream, y2, y2normalized, Filter.firls(fl, F, A, w), 90);
-
-        DataPointStream y3 = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.y3");
-        DataPointStream y3normalized = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.y3-normalized");
-        AutoSense.applyFilterNormalize(y2normalized, y3, y3normalized, new double[]{-1.0 / 8.0, -2.0 / 8.0, 0.0 / 8.0, 2.0 / 8.0, -1.0 / 8.0}, 90);
-
-        DataPointStream y4 = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.y4");
-        DataPointStream y4normalized = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.y4-normalized");
-        AutoSense.applySquareFilterNormalize(y3normalized, y4, y4normalized, 90);
-
-        DataPointStream y5 = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.y5");
-        DataPointStream y5normalized = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.y5-normalized");
-        AutoSense.applyFilterNormalize(y4normalized, y5, y5normalized, Filter.blackman(window_l), 90);
-
-
-        DataPointStream peaks = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.peaks");
-        findpeaks(peaks, y5normalized);
+    /**
+     * ECG Constructor which handles feature computation.
+     *
+     * @param datastreams     Global data stream object
+     * @param streamingRPeaks True to use the R-peaks already emitted by a StreamingRPeakDetector for this window
+     *                        instead of recomputing them from the buffered ECG signal
+     */
+    public ECGFeatures(DataStreams datastreams, boolean streamingRPeaks) {
+        this(datastreams, streamingRPeaks, null);
+    }
 
-        DataPointStream rr_ave = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_ave");
-        DataPointStream Rpeak_temp1 = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.peaks.temp1");
-        filterPeaks(rr_ave, Rpeak_temp1, peaks, ECGstream);
+    /**
+     * ECG Constructor which handles feature computation.
+     *
+     * @param datastreams     Global data stream object
+     * @param streamingRPeaks True to use the R-peaks already emitted by a StreamingRPeakDetector for this window
+     *                        instead of recomputing them from the buffered ECG signal
+     * @param filters         Filters carried over from the previous window, or null to filter this window on its own
+     */
+    public ECGFeatures(DataStreams datastreams, boolean streamingRPeaks, ECGFilterChain filters) {
 
-        DataPointStream Rpeak_temp2 = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.peaks.temp2");
-        filterPeaksTemp2(Rpeak_temp2, Rpeak_temp1, frequency);
+        //Compute RR Intervals
+        DataPointStream ECGstream = datastreams.get(DATA_ECG);
+        double frequency = (Double) ECGstream.metadata.get("frequency");
 
-        DataPointStream rpeaks = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.peaks.rpeaks");
-        filterRpeaks(rpeaks, Rpeak_temp2, peaks, frequency);
+        DataPointStream rpeaks;
+        if (streamingRPeaks) {
+            rpeaks = datastreams.get(DATA_ECG_PEAKS_RPEAKS_STREAMING);
+        } else {
+            if (filters == null) {
+                filters = new ECGFilterChain(frequency);
+            }
+            rpeaks = computeRPeaks(datastreams, ECGstream, filters, frequency);
+        }
 
-        DataPointStream rr_value = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value");
+        DataPointStream rr_value = datastreams.get(DATA_ECG_RR_VALUE);
         computeRRValue(rr_value, rpeaks);
 
-        DataPointStream rr_value_diff = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value_diff");
-        DataPointStream validfilter_rr_interval = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.validfilter_rr_value");
-        DataPointStream rr_outlier = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.outlier");
+        DataPointStream rr_value_diff = datastreams.get(DATA_ECG_RR_VALUE_DIFF);
+        DataPointStream validfilter_rr_interval = datastreams.get(DATA_ECG_VALIDFILTER_RR_VALUE);
+        DataPointStream rr_outlier = datastreams.get(DATA_ECG_OUTLIER);
         validRRinterval(rr_outlier, validfilter_rr_interval, rr_value_diff, rr_value);
 
-        DataPointStream rr_value_filtered = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value.filtered");
+        DataPointStream rr_value_filtered = datastreams.get(DATA_ECG_RR_VALUE_FILTERED);
         rpeakFilter(rr_value, rr_value_filtered, rr_outlier);
 
-        double activity = datastreams.getDataPointStream("org.md2k.cstress.data.accel.activity").data.get(0).value;
+        double activity = datastreams.get(DATA_ACCEL_ACTIVITY).data.getValue(0);
         //Decide if we should add the RR intervals from this minute to the running stats
         if (activity == 0.0) {
 
-            for (int i = 0; i < (datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value")).data.size(); i++) {
-                if (datastreams.getDataPointStream("org.md2k.cstress.data.ecg.outlier").data.get(i).value == AUTOSENSE.QUALITY_GOOD) {
-                    datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr").add((datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value")).data.get(i));
-                    DataPoint hr = new DataPoint((datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value")).data.get(i).timestamp, 60.0 / (datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value")).data.get(i).value);
-                    datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr.heartrate").add(hr);
+            for (int i = 0; i < (datastreams.get(DATA_ECG_RR_VALUE)).data.size(); i++) {
+                if (datastreams.get(DATA_ECG_OUTLIER).data.getValue(i) == AUTOSENSE.QUALITY_GOOD) {
+                    datastreams.get(DATA_ECG_RR).add((datastreams.get(DATA_ECG_RR_VALUE)).data.get(i));
+                    DataPoint hr = new DataPoint((datastreams.get(DATA_ECG_RR_VALUE)).data.getTimestamp(i), 60.0 / (datastreams.get(DATA_ECG_RR_VALUE)).data.getValue(i));
+                    datastreams.get(DATA_ECG_RR_HEARTRATE).add(hr);
                 }
             }
 
-            DataPoint[] rrDatapoints = new DataPoint[(int) datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr").data.size()];
-            for (int i = 0; i < rrDatapoints.length; i++) {
-                rrDatapoints[i] = new DataPoint(i, datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr").data.get(i).value);
+            double[] rrValues = datastreams.get(DATA_ECG_RR).data.getValues();
+            double[] rrTimes = new double[rrValues.length];
+            for (int i = 0; i < rrTimes.length; i++) {
+                rrTimes[i] = i;
             }
 
-            if (rrDatapoints.length > 0) {
-                Lomb HRLomb = ECG.lomb(rrDatapoints);
+            if (rrValues.length > 0) {
+                Lomb HRLomb = ECG.fastLomb(rrTimes, rrValues, rrValues.length);
 
                 double lfhf = ECG.heartRateLFHF(HRLomb.P, HRLomb.f, 0.09, 0.15);
                 double lf = ECG.heartRatePower(HRLomb.P, HRLomb.f, 0.1, 0.2);
@@ -135,21 +159,65 @@ public class ECGFeatures {
                 double hf = ECG.heartRatePower(HRLomb.P, HRLomb.f, 0.3, 0.4);
 
                 if (!Double.isInfinite(lfhf) && !Double.isNaN(lfhf)) {
-                    (datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr.LowHighFrequencyEnergyRatio")).add(new DataPoint((datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value")).data.get(0).timestamp, lfhf));
+                    (datastreams.get(DATA_ECG_RR_LOW_HIGH_FREQUENCY_ENERGY_RATIO)).add(new DataPoint((datastreams.get(DATA_ECG_RR_VALUE)).data.getTimestamp(0), lfhf));
                 }
                 if (!Double.isInfinite(lf) && !Double.isNaN(lf)) {
-                    (datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr.LombLowFrequencyEnergy")).add(new DataPoint((datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value")).data.get(0).timestamp, lf));
+                    (datastreams.get(DATA_ECG_RR_LOMB_LOW_FREQUENCY_ENERGY)).add(new DataPoint((datastreams.get(DATA_ECG_RR_VALUE)).data.getTimestamp(0), lf));
                 }
                 if (!Double.isInfinite(mf) && !Double.isNaN(mf)) {
-                    (datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr.LombMediumFrequencyEnergy")).add(new DataPoint((datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value")).data.get(0).timestamp, mf));
+                    (datastreams.get(DATA_ECG_RR_LOMB_MEDIUM_FREQUENCY_ENERGY)).add(new DataPoint((datastreams.get(DATA_ECG_RR_VALUE)).data.getTimestamp(0), mf));
                 }
                 if (!Double.isInfinite(hf) && !Double.isNaN(hf)) {
-                    (datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr.LombHighFrequencyEnergy")).add(new DataPoint((datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value")).data.get(0).timestamp, hf));
+                    (datastreams.get(DATA_ECG_RR_LOMB_HIGH_FREQUENCY_ENERGY)).add(new DataPoint((datastreams.get(DATA_ECG_RR_VALUE)).data.getTimestamp(0), hf));
                 }
             }
         }
     }
 
+    /**
+     * Batch R-peak detection over the buffered ECG window
+     *
+     * @param datastreams Global data stream object
+     * @param ECGstream   Input ECG datastream
+     * @param filters     Band-pass, derivative and smoothing filters, continuing from the previous window
+     * @param frequency   Sampling frequency
+     * @return R-peak datastream
+     */
+    private DataPointStream computeRPeaks(DataStreams datastreams, DataPointStream ECGstream, ECGFilterChain filters, double frequency) {
+        //Ohio State Algorithm
+
+        DataPointStream y2 = datastreams.get(DATA_ECG_Y2);
+        DataPointStream y2normalized = datastreams.get(DATA_ECG_Y2_NORMALIZED);
+        AutoSense.applyFilterNormalize(ECGstream, y2, y2normalized, filters.bandpass, 90);
+
+        DataPointStream y3 = datastreams.get(DATA_ECG_Y3);
+        DataPointStream y3normalized = datastreams.get(DATA_ECG_Y3_NORMALIZED);
+        AutoSense.applyFilterNormalize(y2normalized, y3, y3normalized, filters.derivative, 90);
+
+        DataPointStream y4 = datastreams.get(DATA_ECG_Y4);
+        DataPointStream y4normalized = datastreams.get(DATA_ECG_Y4_NORMALIZED);
+        AutoSense.applySquareFilterNormalize(y3normalized, y4, y4normalized, 90);
+
+        DataPointStream y5 = datastreams.get(DATA_ECG_Y5);
+        DataPointStream y5normalized = datastreams.get(DATA_ECG_Y5_NORMALIZED);
+        AutoSense.applyFilterNormalize(y4normalized, y5, y5normalized, filters.smoothing, 90);
+
+
+        DataPointStream peaks = datastreams.get(DATA_ECG_PEAKS);
+        findpeaks(peaks, y5normalized);
+
+        DataPointStream rr_ave = datastreams.get(DATA_ECG_RR_AVE);
+        DataPointStream Rpeak_temp1 = datastreams.get(DATA_ECG_PEAKS_TEMP1);
+        filterPeaks(rr_ave, Rpeak_temp1, peaks, ECGstream);
+
+        DataPointStream Rpeak_temp2 = datastreams.get(DATA_ECG_PEAKS_TEMP2);
+        filterPeaksTemp2(Rpeak_temp2, Rpeak_temp1, frequency);
+
+        DataPointStream rpeaks = datastreams.get(DATA_ECG_PEAKS_RPEAKS);
+        filterRpeaks(rpeaks, Rpeak_temp2, peaks, frequency);
+        return rpeaks;
+    }
+
     /**
      * Determine valid RR-intervals and outliers
      * <p></p>
@@ -161,17 +229,21 @@ public class ECGFeatures {
      * @param rr_value_diff     Output derivitive of rr-intervals datastream
      * @param ds                Input datastream
      */
-    private void validRRinterval(DataPointStream outlierresult, DataPointStream valid_rr_interval, DataPointStream rr_value_diff, DataPointStream ds) {
-        List<Integer> outlier = new ArrayList<Integer>();
+    public static void validRRinterval(DataPointStream outlierresult, DataPointStream valid_rr_interval, DataPointStream rr_value_diff, DataPointStream ds) {
+        int[] outlier = new int[ds.data.size()];
 
+        //Each valid rr-interval carries the index of its source sample so outliers are marked without a search
+        int[] validIndex = new int[ds.data.size()];
         for (int i1 = 0; i1 < ds.data.size(); i1++) {
-            if (ds.data.get(i1).value > 0.3 && ds.data.get(i1).value < 2.0) {
-                valid_rr_interval.add(ds.data.get(i1));
+            double value = ds.data.getValue(i1);
+            if (value > 0.3 && value < 2.0) {
+                validIndex[valid_rr_interval.data.size()] = i1;
+                valid_rr_interval.add(ds.data.getTimestamp(i1), value);
             }
         }
 
         for (int i1 = 1; i1 < valid_rr_interval.data.size(); i1++) {
-            rr_value_diff.add(new DataPoint(valid_rr_interval.data.get(i1).timestamp, Math.abs(valid_rr_interval.data.get(i1).value - valid_rr_interval.data.get(i1 - 1).value)));
+            rr_value_diff.add(valid_rr_interval.data.getTimestamp(i1), Math.abs(valid_rr_interval.data.getValue(i1) - valid_rr_interval.data.getValue(i1 - 1)));
         }
 
         double MED = AUTOSENSE.MED_CONSTANT * 0.5 * (rr_value_diff.getPercentile(75) - rr_value_diff.getPercentile(25));
@@ -181,44 +253,34 @@ public class ECGFeatures {
             CBD = AUTOSENSE.CBD_THRESHOLD;
         }
 
-        for (DataPoint aSample : ds.data) {
-            outlier.add(AUTOSENSE.QUALITY_BAD);
-        }
-        outlier.set(0, AUTOSENSE.QUALITY_GOOD);
+        Arrays.fill(outlier, AUTOSENSE.QUALITY_BAD);
+        outlier[0] = AUTOSENSE.QUALITY_GOOD;
 
         double standard_rrInterval;
         if (valid_rr_interval.data.size() > 0) {
-            standard_rrInterval = valid_rr_interval.data.get(0).value;
+            standard_rrInterval = valid_rr_interval.data.getValue(0);
         } else {
             standard_rrInterval = valid_rr_interval.getMean();
         }
         boolean prev_beat_bad = false;
 
         for (int i1 = 1; i1 < valid_rr_interval.data.size() - 1; i1++) {
-            double ref = valid_rr_interval.data.get(i1).value;
+            double ref = valid_rr_interval.data.getValue(i1);
             if (ref > AUTOSENSE.REF_MINIMUM && ref < AUTOSENSE.REF_MAXIMUM) {
-                double beat_diff_prevGood = Math.abs(standard_rrInterval - valid_rr_interval.data.get(i1).value);
-                double beat_diff_pre = Math.abs(valid_rr_interval.data.get(i1 - 1).value - valid_rr_interval.data.get(i1).value);
-                double beat_diff_post = Math.abs(valid_rr_interval.data.get(i1).value - valid_rr_interval.data.get(i1 + 1).value);
+                double beat_diff_prevGood = Math.abs(standard_rrInterval - valid_rr_interval.data.getValue(i1));
+                double beat_diff_pre = Math.abs(valid_rr_interval.data.getValue(i1 - 1) - valid_rr_interval.data.getValue(i1));
+                double beat_diff_post = Math.abs(valid_rr_interval.data.getValue(i1) - valid_rr_interval.data.getValue(i1 + 1));
 
                 if ((prev_beat_bad && beat_diff_prevGood < CBD) || (prev_beat_bad && beat_diff_prevGood > CBD && beat_diff_pre <= CBD && beat_diff_post <= CBD)) {
-                    for (int j = 0; j < ds.data.size(); j++) {
-                        if (ds.data.get(j).timestamp == valid_rr_interval.data.get(i1).timestamp) {
-                            outlier.set(j, AUTOSENSE.QUALITY_GOOD);
-                        }
-                    }
+                    markGood(outlier, ds.data, validIndex[i1]);
                     prev_beat_bad = false;
-                    standard_rrInterval = valid_rr_interval.data.get(i1).value;
+                    standard_rrInterval = valid_rr_interval.data.getValue(i1);
                 } else if (prev_beat_bad && beat_diff_prevGood > CBD && (beat_diff_pre > CBD || beat_diff_post > CBD)) {
                     prev_beat_bad = true;
                 } else if (!prev_beat_bad && beat_diff_pre <= CBD) {
-                    for (int j = 0; j < ds.data.size(); j++) {
-                        if (ds.data.get(j).timestamp == valid_rr_interval.data.get(i1).timestamp) {
-                            outlier.set(j, AUTOSENSE.QUALITY_GOOD);
-                        }
-                    }
+                    markGood(outlier, ds.data, validIndex[i1]);
                     prev_beat_bad = false;
-                    standard_rrInterval = valid_rr_interval.data.get(i1).value;
+                    standard_rrInterval = valid_rr_interval.data.getValue(i1);
                 } else if (!prev_beat_bad && beat_diff_pre > CBD) {
                     prev_beat_bad = true;
                 }
@@ -227,8 +289,34 @@ public class ECGFeatures {
         }
 
 
-        for (int i1 = 0; i1 < outlier.size(); i1++) {
-            outlierresult.add(new DataPoint(ds.data.get(i1).timestamp, outlier.get(i1)));
+        for (int i1 = 0; i1 < outlier.length; i1++) {
+            outlierresult.add(ds.data.getTimestamp(i1), outlier[i1]);
+        }
+    }
+
+    /**
+     * Mark a sample and every other sample sharing its timestamp as good
+     *
+     * @param outlier Outlier labels
+     * @param data    Samples the labels refer to
+     * @param index   Index of the good sample
+     */
+    private static void markGood(int[] outlier, DataPointList data, int index) {
+        long timestamp = data.getTimestamp(index);
+        if (data.isOrdered()) {
+            //Equal timestamps are adjacent in ordered data
+            for (int j = index; j >= 0 && data.getTimestamp(j) == timestamp; j--) {
+                outlier[j] = AUTOSENSE.QUALITY_GOOD;
+            }
+            for (int j = index + 1; j < data.size() && data.getTimestamp(j) == timestamp; j++) {
+                outlier[j] = AUTOSENSE.QUALITY_GOOD;
+            }
+        } else {
+            for (int j = 0; j < data.size(); j++) {
+                if (data.getTimestamp(j) == timestamp) {
+                    outlier[j] = AUTOSENSE.QUALITY_GOOD;
+                }
+            }
         }
     }
 
@@ -243,7 +331,7 @@ public class ECGFeatures {
      */
     private void computeRRValue(DataPointStream rr_value, DataPointStream rpeaks) {
         for (int i1 = 0; i1 < rpeaks.data.size() - 1; i1++) {
-            rr_value.add(new DataPoint(rpeaks.data.get(i1).timestamp, (rpeaks.data.get(i1 + 1).timestamp - rpeaks.data.get(i1).timestamp) / 1000.0));
+            rr_value.add(rpeaks.data.getTimestamp(i1), (rpeaks.data.getTimestamp(i1 + 1) - rpeaks.data.getTimestamp(i1)) / 1000.0);
         }
 
     }
@@ -260,7 +348,7 @@ public class ECGFeatures {
      */
     private void rpeakFilter(DataPointStream rr_value, DataPointStream rr_value_filtered, DataPointStream rr_outlier) {
         for (int i1 = 0; i1 < rr_value.data.size(); i1++) {
-            if (rr_outlier.data.get(i1).value == AUTOSENSE.QUALITY_GOOD) {
+            if (rr_outlier.data.getValue(i1) == AUTOSENSE.QUALITY_GOOD) {
                 rr_value_filtered.add(rr_value.data.get(i1));
             }
         }
@@ -268,11 +356,11 @@ public class ECGFeatures {
         double mu = rr_value_filtered.getMean();
         double sigma = rr_value_filtered.getStandardDeviation();
         for (int i1 = 0; i1 < rr_outlier.data.size(); i1++) {
-            if (rr_outlier.data.get(i1).value == AUTOSENSE.QUALITY_GOOD) {
-                if (Math.abs(rr_value.data.get(i1).value - mu) > (3.0 * sigma)) {
-                    rr_outlier.data.get(i1).value = AUTOSENSE.QUALITY_NOISE;
+            if (rr_outlier.data.getValue(i1) == AUTOSENSE.QUALITY_GOOD) {
+                if (Math.abs(rr_value.data.getValue(i1) - mu) > (3.0 * sigma)) {
+                    rr_outlier.data.setValue(i1, AUTOSENSE.QUALITY_NOISE);
                 } else {
-                    rr_outlier.data.get(i1).value = AUTOSENSE.QUALITY_GOOD;
+                    rr_outlier.data.setValue(i1, AUTOSENSE.QUALITY_GOOD);
                 }
             }
         }
@@ -289,48 +377,62 @@ public class ECGFeatures {
      * @param peaks       Input peak datastream
      * @param frequency   Sampling frequence
      */
-    private void filterRpeaks(DataPointStream Rpeaks, DataPointStream Rpeak_temp2, DataPointStream peaks, double frequency) {
-        List<DataPoint> Rpeak_temp3 = new ArrayList<DataPoint>();
+    public static void filterRpeaks(DataPointStream Rpeaks, DataPointStream Rpeak_temp2, DataPointStream peaks, double frequency) {
         if (Rpeak_temp2.data.size() > 0) {
-            Rpeak_temp3.add(Rpeak_temp2.data.get(0));
+            Rpeaks.add(Rpeak_temp2.data.getTimestamp(0), Rpeak_temp2.data.getValue(0));
 
+            int halfWidth = (int) Math.ceil(frequency / AUTOSENSE.RPEAK_BIN_FACTOR);
+            boolean ordered = peaks.data.isOrdered();
+            long previousPeaktime = Long.MIN_VALUE;
+            int before = 0;
+            int windowStop = 0;
 
             for (int k = 1; k < Rpeak_temp2.data.size() - 1; k++) {
-                double maxValue = -1e9;
-
-
-                double peaktime = Rpeak_temp2.data.get(k).timestamp;
+                long peaktime = Rpeak_temp2.data.getTimestamp(k);
                 int windowStart = 0;
-                int windowStop = peaks.data.size();
-                for (int i1 = 0; i1 < peaks.data.size(); i1++) {
-                    if (peaks.data.get(i1).timestamp < (peaktime - (int) Math.ceil(frequency / AUTOSENSE.RPEAK_BIN_FACTOR))) {
-                        windowStart = i1;
+
+                if (ordered) {
+                    //Both window edges only move forward while the candidates are in time order
+                    if (peaktime < previousPeaktime) {
+                        before = 0;
+                        windowStop = 0;
+                    }
+                    previousPeaktime = peaktime;
+                    while (windowStop < peaks.data.size() && peaks.data.getTimestamp(windowStop) <= peaktime + halfWidth) {
+                        windowStop++;
                     }
-                    if (peaks.data.get(i1).timestamp > (peaktime + (int) Math.ceil(frequency / AUTOSENSE.RPEAK_BIN_FACTOR))) {
-                        windowStop = i1;
-                        break;
+                    while (before < windowStop && peaks.data.getTimestamp(before) < peaktime - halfWidth) {
+                        before++;
+                    }
+                    if (before > 0) {
+                        windowStart = before - 1;
+                    }
+                } else {
+                    windowStop = peaks.data.size();
+                    for (int i1 = 0; i1 < peaks.data.size(); i1++) {
+                        if (peaks.data.getTimestamp(i1) < peaktime - halfWidth) {
+                            windowStart = i1;
+                        }
+                        if (peaks.data.getTimestamp(i1) > peaktime + halfWidth) {
+                            windowStop = i1;
+                            break;
+                        }
                     }
                 }
 
-                DataPoint maxDP = new DataPoint(0, 0.0);
-                try {
-                    for (int j = windowStart + 1; j < windowStop; j++) {
-                        if (peaks.data.get(j).value > maxValue) {
-                            maxValue = peaks.data.get(j).value;
-                            maxDP = new DataPoint(peaks.data.get(j));
-                        }
+                double maxValue = -1e9;
+                long maxTimestamp = 0;
+                double maxDPValue = 0.0;
+                for (int j = windowStart + 1; j < windowStop; j++) {
+                    if (peaks.data.getValue(j) > maxValue) {
+                        maxValue = peaks.data.getValue(j);
+                        maxTimestamp = peaks.data.getTimestamp(j);
+                        maxDPValue = maxValue;
                     }
-                } catch (Exception e) {
-                    //Do nothing here
-                } finally {
-                    Rpeak_temp3.add(maxDP);
                 }
+                Rpeaks.add(maxTimestamp, maxDPValue);
             }
         }
-
-        for (DataPoint dp : Rpeak_temp3) {
-            Rpeaks.add(new DataPoint(dp));
-        }
     }
 
     /**
@@ -338,56 +440,96 @@ public class ECGFeatures {
      * <p>
      * Reference: Matlab code \\TODO
      * </p>
+     * <p>
+     * Each pass eliminates the smaller peak of every pair closer than the interpeak limit.  Only pairs made adjacent
+     * by a removal can be close on the next pass, so the peaks are kept in a linked list and each pass only revisits
+     * those pairs.
+     * </p>
      *
      * @param Rpeak_temp2 Output datastream
      * @param Rpeak_temp1 Input datastream
      * @param frequency   Sampling frequency
      */
-    private void filterPeaksTemp2(DataPointStream Rpeak_temp2, DataPointStream Rpeak_temp1, double frequency) {
-        Rpeak_temp2.data.addAll(Rpeak_temp1.data);
-
-        boolean difference = false;
-
-        while (!difference) {
-            int length_Rpeak_temp2 = Rpeak_temp2.data.size();
-            List<DataPoint> diffRpeak = new ArrayList<DataPoint>();
-            for (int j = 1; j < Rpeak_temp2.data.size(); j++) {
-                diffRpeak.add(new DataPoint(Rpeak_temp2.data.get(j).timestamp - Rpeak_temp2.data.get(j - 1).timestamp, Rpeak_temp2.data.get(j).value - Rpeak_temp2.data.get(j - 1).value));
+    public static void filterPeaksTemp2(DataPointStream Rpeak_temp2, DataPointStream Rpeak_temp1, double frequency) {
+        DataPointList peaks = Rpeak_temp2.data;
+        peaks.addAll(Rpeak_temp1.data);
+
+        int n = peaks.size();
+        double limit = AUTOSENSE.RPEAK_INTERPEAK_MULTIPLIER * frequency;
+        int[] next = new int[n];
+        int[] prev = new int[n];
+        for (int i = 0; i < n; i++) {
+            next[i] = i + 1 < n ? i + 1 : -1;
+            prev[i] = i - 1;
+        }
+        boolean[] removed = new boolean[n];
+        boolean[] revisit = new boolean[n];
+        int[] pairs = new int[n];
+        int[] eliminated = new int[n];
+
+        int pairCount = 0;
+        for (int i = 0; i + 1 < n; i++) {
+            pairs[pairCount++] = i;
+        }
+        int eliminatedCount = 0;
+        for (int i = 0; i < n; i++) {
+            //The original marker value removed any peak that happened to carry it
+            if (peaks.getValue(i) == -999999) {
+                removed[i] = true;
+                eliminated[eliminatedCount++] = i;
             }
+        }
 
-            List<DataPoint> comp1 = new ArrayList<DataPoint>();
-            List<DataPoint> comp2 = new ArrayList<DataPoint>();
-            List<Integer> eli_index = new ArrayList<Integer>();
-
-            for (int j = 0; j < diffRpeak.size(); j++) {
-                if (diffRpeak.get(j).timestamp < (AUTOSENSE.RPEAK_INTERPEAK_MULTIPLIER * frequency)) {
-                    comp1.add(Rpeak_temp2.data.get(j));
-                    comp2.add(Rpeak_temp2.data.get(j + 1));
-                    if (comp1.get(comp1.size() - 1).value < comp2.get(comp2.size() - 1).value) {
-                        eli_index.add(0);
-                    } else {
-                        eli_index.add(1);
+        while (true) {
+            for (int p = 0; p < pairCount; p++) {
+                int left = pairs[p];
+                int right = next[left];
+                if (right >= 0 && peaks.getTimestamp(right) - peaks.getTimestamp(left) < limit) {
+                    int loser = peaks.getValue(left) < peaks.getValue(right) ? left : right;
+                    if (!removed[loser]) {
+                        removed[loser] = true;
+                        eliminated[eliminatedCount++] = loser;
                     }
-                } else {
-                    eli_index.add(-999999);
                 }
             }
+            if (eliminatedCount == 0) {
+                break;
+            }
 
-            for (int j = 0; j < diffRpeak.size(); j++) {
-                if (diffRpeak.get(j).timestamp < (AUTOSENSE.RPEAK_INTERPEAK_MULTIPLIER * frequency)) {
-                    Rpeak_temp2.data.set(j + eli_index.get(j), new DataPoint(0, -999999));
+            pairCount = 0;
+            for (int e = 0; e < eliminatedCount; e++) {
+                int i = eliminated[e];
+                if (prev[i] >= 0) {
+                    next[prev[i]] = next[i];
+                    if (!revisit[prev[i]]) {
+                        revisit[prev[i]] = true;
+                        pairs[pairCount++] = prev[i];
+                    }
+                }
+                if (next[i] >= 0) {
+                    prev[next[i]] = prev[i];
                 }
             }
-
-            for (Iterator<DataPoint> it = Rpeak_temp2.data.iterator(); it.hasNext(); ) {
-                if (it.next().value == -999999) {
-                    it.remove();
+            int kept = 0;
+            for (int p = 0; p < pairCount; p++) {
+                revisit[pairs[p]] = false;
+                if (!removed[pairs[p]]) {
+                    pairs[kept++] = pairs[p];
                 }
             }
+            pairCount = kept;
+            eliminatedCount = 0;
+        }
 
-            difference = (length_Rpeak_temp2 == Rpeak_temp2.data.size());
-
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (!removed[i]) {
+                peaks.setTimestamp(size, peaks.getTimestamp(i));
+                peaks.setValue(size, peaks.getValue(i));
+                size++;
+            }
         }
+        peaks.subList(size, n).clear();
     }
 
     /**
@@ -423,14 +565,14 @@ public class ECGFeatures {
 
         DataPoint rr_ave;
 
-        if (rrAverage.stats.getN() == 0) {
+        if (rrAverage.getN() == 0) {
             rrAverage.setPreservedLastInsert(true);
             double rr_avg = 0.0;
             for (int i1 = 1; i1 < peaks.data.size(); i1++) {
-                rr_avg += peaks.data.get(i1).value - peaks.data.get(i1 - 1).value;
+                rr_avg += peaks.data.getValue(i1) - peaks.data.getValue(i1 - 1);
             }
             rr_avg /= (peaks.data.size() - 1);
-            rr_ave = new DataPoint(ECG.data.get(0).timestamp, rr_avg);
+            rr_ave = new DataPoint(ECG.data.getTimestamp(0), rr_avg);
             rrAverage.add(rr_ave);
         }
         rr_ave = rrAverage.data.get(rrAverage.data.size() - 1);
@@ -444,19 +586,19 @@ public class ECGFeatures {
 
         for (int i1 = 0; i1 < peaks.data.size(); i1++) {
             if (Rpeak_temp1.size() == 0) {
-                if (peaks.data.get(i1).value > thr1 && peaks.data.get(i1).value < (3.0 * sig_lev)) {
+                if (peaks.data.getValue(i1) > thr1 && peaks.data.getValue(i1) < (3.0 * sig_lev)) {
                     if (Rpeak_temp1.size() <= c1) {
                         Rpeak_temp1.add(new DataPoint(0, 0.0));
                     }
                     Rpeak_temp1.set(c1, peaks.data.get(i1));
-                    sig_lev = Smoothing.ewma(peaks.data.get(i1).value, sig_lev, AUTOSENSE.EWMA_ALPHA); //TODO: Candidate for datastream
+                    sig_lev = Smoothing.ewma(peaks.data.getValue(i1), sig_lev, AUTOSENSE.EWMA_ALPHA); //TODO: Candidate for datastream
                     if (c2.size() <= c1) {
                         c2.add(0);
                     }
                     c2.set(c1, i1);
                     c1 += 1;
-                } else if (peaks.data.get(i1).value < thr1 && peaks.data.get(i1).value > thr2) {
-                    noise_lev = Smoothing.ewma(peaks.data.get(i1).value, noise_lev, AUTOSENSE.EWMA_ALPHA); //TODO: Candidate for datastream
+                } else if (peaks.data.getValue(i1) < thr1 && peaks.data.getValue(i1) > thr2) {
+                    noise_lev = Smoothing.ewma(peaks.data.getValue(i1), noise_lev, AUTOSENSE.EWMA_ALPHA); //TODO: Candidate for datastream
                 }
 
                 thr1 = noise_lev + 0.25 * (sig_lev - noise_lev); //TODO: Candidate for datastream
@@ -464,13 +606,13 @@ public class ECGFeatures {
 
                 rr_ave = rr_ave_update(Rpeak_temp1, rrAverage);
             } else {
-                if (((peaks.data.get(i1).timestamp - peaks.data.get(c2.get(c1 - 1)).timestamp) > 1.66 * rr_ave.value) && (i1 - c2.get(c1 - 1)) > 1) {
+                if (((peaks.data.getTimestamp(i1) - peaks.data.getTimestamp(c2.get(c1 - 1))) > 1.66 * rr_ave.value) && (i1 - c2.get(c1 - 1)) > 1) {
                     List<Double> searchback_array_inrange = new ArrayList<Double>();
                     List<Integer> searchback_array_inrange_index = new ArrayList<Integer>();
 
                     for (int j = c2.get(c1 - 1) + 1; j < i1 - 1; j++) {
-                        if (peaks.data.get(i1).value < 3.0 * sig_lev && peaks.data.get(i1).value > thr2) {
-                            searchback_array_inrange.add(peaks.data.get(i1).value);
+                        if (peaks.data.getValue(i1) < 3.0 * sig_lev && peaks.data.getValue(i1) > thr2) {
+                            searchback_array_inrange.add(peaks.data.getValue(i1));
                             searchback_array_inrange_index.add(j - c2.get(c1 - 1));
                         }
                     }
@@ -500,19 +642,19 @@ public class ECGFeatures {
                         rr_ave = rr_ave_update(Rpeak_temp1, rrAverage);
                         continue;
                     }
-                } else if (peaks.data.get(i1).value >= thr1 && peaks.data.get(i1).value < (3.0 * sig_lev)) {
+                } else if (peaks.data.getValue(i1) >= thr1 && peaks.data.getValue(i1) < (3.0 * sig_lev)) {
                     if (Rpeak_temp1.size() >= c1) {
                         Rpeak_temp1.add(new DataPoint(0, 0.0));
                     }
                     Rpeak_temp1.set(c1, peaks.data.get(i1));
-                    sig_lev = Smoothing.ewma(peaks.data.get(i1).value, sig_lev, AUTOSENSE.EWMA_ALPHA); //TODO: Candidate for datastream
+                    sig_lev = Smoothing.ewma(peaks.data.getValue(i1), sig_lev, AUTOSENSE.EWMA_ALPHA); //TODO: Candidate for datastream
                     if (c2.size() <= c1) {
                         c2.add(0);
                     }
                     c2.set(c1, i1);
                     c1 += 1;
-                } else if (peaks.data.get(i1).value < thr1 && peaks.data.get(i1).value > thr2) {
-                    noise_lev = Smoothing.ewma(peaks.data.get(i1).value, noise_lev, AUTOSENSE.EWMA_ALPHA); //TODO: Candidate for datastream
+                } else if (peaks.data.getValue(i1) < thr1 && peaks.data.getValue(i1) > thr2) {
+                    noise_lev = Smoothing.ewma(peaks.data.getValue(i1), noise_lev, AUTOSENSE.EWMA_ALPHA); //TODO: Candidate for datastream
                 }
                 thr1 = noise_lev + 0.25 * (sig_lev - noise_lev);
                 thr2 = 0.5 * thr1;
@@ -532,10 +674,10 @@ public class ECGFeatures {
      */
     private void findpeaks(DataPointStream peaks, DataPointStream y5normalized) {
         for (int i = 2; i < y5normalized.data.size() - 2; i++) {
-            if (y5normalized.data.get(i - 2).value < y5normalized.data.get(i - 1).value &&
-                    y5normalized.data.get(i - 1).value < y5normalized.data.get(i).value &&
-                    y5normalized.data.get(i).value >= y5normalized.data.get(i + 1).value &&
-                    y5normalized.data.get(i + 1).value > y5normalized.data.get(i + 2).value) { //TODO: Why is this hard-coded to five samples to examine?
+            if (y5normalized.data.getValue(i - 2) < y5normalized.data.getValue(i - 1) &&
+                    y5normalized.data.getValue(i - 1) < y5normalized.data.getValue(i) &&
+                    y5normalized.data.getValue(i) >= y5normalized.data.getValue(i + 1) &&
+                    y5normalized.data.getValue(i + 1) > y5normalized.data.getValue(i + 2)) { //TODO: Why is this hard-coded to five samples to examine?
                 peaks.add(new DataPoint(y5normalized.data.get(i)));
             }
         }
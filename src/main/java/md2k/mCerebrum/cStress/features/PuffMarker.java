@@ -32,7 +32,9 @@ import md2k.mCerebrum.cStress.autosense.PUFFMARKER;
 import md2k.mCerebrum.cStress.library.datastream.DataArrayStream;
 import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
 import md2k.mCerebrum.cStress.library.datastream.DataStreams;
+import md2k.mCerebrum.cStress.library.datastream.StreamHandle;
 import md2k.mCerebrum.cStress.library.structs.DataPointArray;
+import md2k.mCerebrum.cStress.library.structs.DataPointRange;
 import org.apache.commons.math3.exception.NotANumberException;
 
 import java.util.ArrayList;
@@ -43,6 +45,8 @@ import java.util.List;
  */
 public class PuffMarker {
 
+    private static final StreamHandle<DataArrayStream> PUFF_MARKERS_FV = StreamHandle.dataArray("org.md2k.puffMarkers.fv");
+
 
     /**
      * Constructor for PuffMarker features
@@ -62,7 +66,7 @@ public class PuffMarker {
                     int endIndex = (int) gyr_intersections.data.get(i).value;
 
                     DataPointArray fv = computePuffMarkerFeatures(datastreams, wrist, startIndex, endIndex);
-                    DataArrayStream fvStream = datastreams.getDataArrayStream("org.md2k.puffMarkers.fv");
+                    DataArrayStream fvStream = datastreams.get(PUFF_MARKERS_FV);
                     fvStream.add(fv);
                 }
             }
@@ -74,15 +78,14 @@ public class PuffMarker {
 
 
     /**
-     * Validate roll and pitch from the sensors based on statically learned values
+     * Validate roll and pitch of a segment based on statically learned values
      *
-     * @param roll  Input roll datastream
-     * @param pitch Input roll datastream
+     * @param roll  Input roll segment
+     * @param pitch Input pitch segment
      * @return True if error is below the threshold, False otherwise
      */
-    public boolean checkValidRollPitch(DataPointStream roll, DataPointStream pitch) {
+    public boolean checkValidRollPitch(DataPointRange roll, DataPointRange pitch) {
         double x = (pitch.getPercentile(50) - PUFFMARKER.PUFFMARKER_PITCH_MEAN) / PUFFMARKER.PUFFMARKER_PITCH_STD;
-        double y = (roll.getPercentile(50) - PUFFMARKER.PUFFMARKER_ROLL_MEAN) / PUFFMARKER.PUFFMARKER_ROLL_STD; //TODO: Is this needed?
         double error = x * x;
         return (error < PUFFMARKER.PUFFMARKER_TH[0]);
     }
@@ -100,18 +103,19 @@ public class PuffMarker {
     private DataPointArray computePuffMarkerFeatures(DataStreams datastreams, String wrist, int startIndex, int endIndex) {
 
         /////////////// WRIST FEATURES ////////////////////////
-        DataPointStream gyr_mag = new DataPointStream("org.md2k.cstress.data.gyr.mag" + wrist + ".segment", (datastreams.getDataPointStream("org.md2k.cstress.data.gyr.mag" + wrist)).data.subList(startIndex, endIndex));
-        DataPointStream gyr_mag_800 = new DataPointStream("org.md2k.cstress.data.gyr.mag_800" + wrist + ".segment", (datastreams.getDataPointStream("org.md2k.cstress.data.gyr.mag_800" + wrist)).data.subList(startIndex, endIndex));
-        DataPointStream gyr_mag_8000 = new DataPointStream("org.md2k.cstress.data.gyr.mag_8000" + wrist + ".segment", (datastreams.getDataPointStream("org.md2k.cstress.data.gyr.mag_8000" + wrist)).data.subList(startIndex, endIndex));
+        //Segments are views over the wrist streams, nothing is copied
+        DataPointRange gyr_mag = (datastreams.getDataPointStream("org.md2k.cstress.data.gyr.mag" + wrist)).data.range(startIndex, endIndex);
+        DataPointRange gyr_mag_800 = (datastreams.getDataPointStream("org.md2k.cstress.data.gyr.mag_800" + wrist)).data.range(startIndex, endIndex);
+        DataPointRange gyr_mag_8000 = (datastreams.getDataPointStream("org.md2k.cstress.data.gyr.mag_8000" + wrist)).data.range(startIndex, endIndex);
 
-        DataPointStream rolls = new DataPointStream("org.md2k.cstress.data.roll" + wrist + ".segment", (datastreams.getDataPointStream("org.md2k.cstress.data.roll" + wrist)).data.subList(startIndex, endIndex));
-        DataPointStream pitchs = new DataPointStream("org.md2k.cstress.data.pitch" + wrist + ".segment", (datastreams.getDataPointStream("org.md2k.cstress.data.pitch" + wrist)).data.subList(startIndex, endIndex));
+        DataPointRange rolls = (datastreams.getDataPointStream("org.md2k.cstress.data.roll" + wrist)).data.range(startIndex, endIndex);
+        DataPointRange pitchs = (datastreams.getDataPointStream("org.md2k.cstress.data.pitch" + wrist)).data.range(startIndex, endIndex);
 
         /*
         Three filtering criteria
          */
-        double meanHeight = gyr_mag_800.stats.getMean() - gyr_mag_8000.stats.getMean();
-        double duration = gyr_mag_8000.data.get(gyr_mag_8000.data.size() - 1).timestamp - gyr_mag_8000.data.get(0).timestamp;
+        double meanHeight = gyr_mag_800.getMean() - gyr_mag_8000.getMean();
+        double duration = gyr_mag_8000.getTimestamp(gyr_mag_8000.size() - 1) - gyr_mag_8000.getTimestamp(0);
         boolean isValidRollPitch = checkValidRollPitch(rolls, pitchs);
 
 
@@ -121,9 +125,9 @@ public class PuffMarker {
             WRIST - GYRO MAGNITUDE - std deviation
             WRIST - GYRO MAGNITUDE - quartile deviation
          */
-        double GYRO_Magnitude_Mean = gyr_mag.stats.getMean();
+        double GYRO_Magnitude_Mean = gyr_mag.getMean();
         double GYRO_Magnitude_Median = gyr_mag.getPercentile(50);
-        double GYRO_Magnitude_SD = gyr_mag.stats.getStandardDeviation();
+        double GYRO_Magnitude_SD = gyr_mag.getStandardDeviation();
         double GYRO_Magnitude_Quartile_Deviation = gyr_mag.getPercentile(75) - gyr_mag.getPercentile(25);
 
          /*
@@ -132,9 +136,9 @@ public class PuffMarker {
             WRIST - PITCH - std deviation
             WRIST - PITCH - quartile deviation
          */
-        double Pitch_Mean = pitchs.stats.getMean();
+        double Pitch_Mean = pitchs.getMean();
         double Pitch_Median = pitchs.getPercentile(50);
-        double Pitch_SD = pitchs.stats.getStandardDeviation();
+        double Pitch_SD = pitchs.getStandardDeviation();
         double Pitch_Quartile_Deviation = pitchs.getPercentile(75) - gyr_mag.getPercentile(25);
 
          /*
@@ -143,9 +147,9 @@ public class PuffMarker {
             WRIST - ROLL - std deviation
             WRIST - ROLL - quartile deviation
          */
-        double Roll_Mean = rolls.stats.getMean();
+        double Roll_Mean = rolls.getMean();
         double Roll_Median = rolls.getPercentile(50);
-        double Roll_SD = rolls.stats.getStandardDeviation();
+        double Roll_SD = rolls.getStandardDeviation();
         double Roll_Quartile_Deviation = rolls.getPercentile(75) - gyr_mag.getPercentile(25);
 
 
@@ -171,6 +175,6 @@ public class PuffMarker {
                 throw new NotANumberException();
             }
         }
-        return new DataPointArray(gyr_mag.data.get(0).timestamp, featureVector);
+        return new DataPointArray(gyr_mag.getTimestamp(0), featureVector);
     }
 }
@@ -30,6 +30,7 @@ package md2k.mCerebrum.cStress.features;
 import md2k.mCerebrum.cStress.autosense.AUTOSENSE;
 import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
 import md2k.mCerebrum.cStress.library.datastream.DataStreams;
+import md2k.mCerebrum.cStress.library.datastream.StreamHandle;
 import md2k.mCerebrum.cStress.library.dataquality.autosense.RipQualityCalculation;
 import md2k.mCerebrum.cStress.library.structs.DataPoint;
 
@@ -40,14 +41,18 @@ import java.util.List;
  */
 public class RIPDataQuality {
 
+    private static final StreamHandle<DataPointStream> DATA_RIP = StreamHandle.dataPoint("org.md2k.cstress.data.rip");
+    private static final StreamHandle<DataPointStream> DATA_RIP_QUALITY = StreamHandle.dataPoint("org.md2k.cstress.data.rip.quality");
+    private static final StreamHandle<DataPointStream> DATA_RIP_WINDOW_QUALITY = StreamHandle.dataPoint("org.md2k.cstress.data.rip.window.quality");
+
     /**
      * Constructor
      * @param datastreams Global datastream object
      * @param qualityThreshold Input quality threshold
      */
     public RIPDataQuality(DataStreams datastreams, double qualityThreshold) {
-        DataPointStream ecg = datastreams.getDataPointStream("org.md2k.cstress.data.rip");
-        DataPointStream ecgQuality = datastreams.getDataPointStream("org.md2k.cstress.data.rip.quality");
+        DataPointStream ecg = datastreams.get(DATA_RIP);
+        DataPointStream ecgQuality = datastreams.get(DATA_RIP_QUALITY);
 
         RipQualityCalculation ripQuality = new RipQualityCalculation(5, 50, 4500, 20, 2, 20, 150);
         List<DataPoint> quality = ripQuality.computeQuality(ecg.data, 5000);
@@ -60,7 +65,7 @@ public class RIPDataQuality {
             }
         }
 
-        DataPointStream ecgWindowQuality = datastreams.getDataPointStream("org.md2k.cstress.data.rip.window.quality");
+        DataPointStream ecgWindowQuality = datastreams.get(DATA_RIP_WINDOW_QUALITY);
 
         if ((count / quality.size()) > qualityThreshold)
             ecgWindowQuality.add(new DataPoint(quality.get(0).timestamp, AUTOSENSE.QUALITY_GOOD));
@@ -3,9 +3,11 @@ package md2k.mCerebrum.cStress.features;
 import md2k.mCerebrum.cStress.autosense.AUTOSENSE;
 import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
 import md2k.mCerebrum.cStress.library.datastream.DataStreams;
+import md2k.mCerebrum.cStress.library.datastream.StreamHandle;
 import md2k.mCerebrum.cStress.library.Vector;
 import md2k.mCerebrum.cStress.library.signalprocessing.Smoothing;
 import md2k.mCerebrum.cStress.library.structs.DataPoint;
+import md2k.mCerebrum.cStress.library.structs.DataPointList;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 
 import java.util.ArrayList;
@@ -42,6 +44,34 @@ import java.util.List;
  * Respiration feature computation class
  */
 public class RIPFeatures {
+
+    private static final StreamHandle<DataPointStream> DATA_RIP = StreamHandle.dataPoint("org.md2k.cstress.data.rip");
+    private static final StreamHandle<DataPointStream> DATA_RIP_SMOOTH = StreamHandle.dataPoint("org.md2k.cstress.data.rip.smooth");
+    private static final StreamHandle<DataPointStream> DATA_RIP_MAC = StreamHandle.dataPoint("org.md2k.cstress.data.rip.mac");
+    private static final StreamHandle<DataPointStream> DATA_RIP_UP_INTERCEPTS = StreamHandle.dataPoint("org.md2k.cstress.data.rip.upIntercepts");
+    private static final StreamHandle<DataPointStream> DATA_RIP_DOWN_INTERCEPTS = StreamHandle.dataPoint("org.md2k.cstress.data.rip.downIntercepts");
+    private static final StreamHandle<DataPointStream> DATA_RIP_UP_INTERCEPTS_FILTERED = StreamHandle.dataPoint("org.md2k.cstress.data.rip.upIntercepts.filtered");
+    private static final StreamHandle<DataPointStream> DATA_RIP_DOWN_INTERCEPTS_FILTERED = StreamHandle.dataPoint("org.md2k.cstress.data.rip.downIntercepts.filtered");
+    private static final StreamHandle<DataPointStream> DATA_RIP_UP_INTERCEPTS_FILTERED_1SEC = StreamHandle.dataPoint("org.md2k.cstress.data.rip.upIntercepts.filtered.1sec");
+    private static final StreamHandle<DataPointStream> DATA_RIP_DOWN_INTERCEPTS_FILTERED_1SEC = StreamHandle.dataPoint("org.md2k.cstress.data.rip.downIntercepts.filtered.1sec");
+    private static final StreamHandle<DataPointStream> DATA_RIP_UP_INTERCEPTS_FILTERED_1SEC_T20 = StreamHandle.dataPoint("org.md2k.cstress.data.rip.upIntercepts.filtered.1sec.t20");
+    private static final StreamHandle<DataPointStream> DATA_RIP_DOWN_INTERCEPTS_FILTERED_1SEC_T20 = StreamHandle.dataPoint("org.md2k.cstress.data.rip.downIntercepts.filtered.1sec.t20");
+    private static final StreamHandle<DataPointStream> DATA_RIP_PEAKS = StreamHandle.dataPoint("org.md2k.cstress.data.rip.peaks");
+    private static final StreamHandle<DataPointStream> DATA_RIP_VALLEYS = StreamHandle.dataPoint("org.md2k.cstress.data.rip.valleys");
+    private static final StreamHandle<DataPointStream> DATA_RIP_INSPIRATION_AMPLITUDE = StreamHandle.dataPoint("org.md2k.cstress.data.rip.inspirationAmplitude");
+    private static final StreamHandle<DataPointStream> DATA_RIP_RESPIRATION_DURATION = StreamHandle.dataPoint("org.md2k.cstress.data.rip.respirationDuration");
+    private static final StreamHandle<DataPointStream> DATA_RIP_VALLEYS_FILTERED = StreamHandle.dataPoint("org.md2k.cstress.data.rip.valleys.filtered");
+    private static final StreamHandle<DataPointStream> DATA_RIP_PEAKS_FILTERED = StreamHandle.dataPoint("org.md2k.cstress.data.rip.peaks.filtered");
+    private static final StreamHandle<DataPointStream> DATA_ACCEL_ACTIVITY = StreamHandle.dataPoint("org.md2k.cstress.data.accel.activity");
+    private static final StreamHandle<DataPointStream> DATA_RIP_INSPDURATION = StreamHandle.dataPoint("org.md2k.cstress.data.rip.inspduration");
+    private static final StreamHandle<DataPointStream> DATA_RIP_EXPRDURATION = StreamHandle.dataPoint("org.md2k.cstress.data.rip.exprduration");
+    private static final StreamHandle<DataPointStream> DATA_RIP_RESPDURATION = StreamHandle.dataPoint("org.md2k.cstress.data.rip.respduration");
+    private static final StreamHandle<DataPointStream> DATA_RIP_STRETCH = StreamHandle.dataPoint("org.md2k.cstress.data.rip.stretch");
+    private static final StreamHandle<DataPointStream> DATA_RIP_IERATIO = StreamHandle.dataPoint("org.md2k.cstress.data.rip.IERatio");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr");
+    private static final StreamHandle<DataPointStream> DATA_RIP_RSA = StreamHandle.dataPoint("org.md2k.cstress.data.rip.RSA");
+    private static final StreamHandle<DataPointStream> DATA_RIP_BREATH_RATE = StreamHandle.dataPoint("org.md2k.cstress.data.rip.BreathRate");
+    private static final StreamHandle<DataPointStream> DATA_RIP_MINUTE_VENTILATION = StreamHandle.dataPoint("org.md2k.cstress.data.rip.MinuteVentilation");
     /**
      * Core Respiration Features
      * <p>
@@ -52,81 +82,81 @@ public class RIPFeatures {
     public RIPFeatures(DataStreams datastreams) {
 
 
-        DataPointStream rip = datastreams.getDataPointStream("org.md2k.cstress.data.rip");
-        DataPointStream rip_smooth = datastreams.getDataPointStream("org.md2k.cstress.data.rip.smooth");
+        DataPointStream rip = datastreams.get(DATA_RIP);
+        DataPointStream rip_smooth = datastreams.get(DATA_RIP_SMOOTH);
         Smoothing.smooth(rip_smooth, rip, AUTOSENSE.PEAK_VALLEY_SMOOTHING_SIZE);
 
-        int windowLength = (int) Math.round(AUTOSENSE.WINDOW_LENGTH_SECS * (Double) datastreams.getDataPointStream("org.md2k.cstress.data.rip").metadata.get("frequency"));
-        DataPointStream rip_mac = datastreams.getDataPointStream("org.md2k.cstress.data.rip.mac");
+        int windowLength = (int) Math.round(AUTOSENSE.WINDOW_LENGTH_SECS * (Double) datastreams.get(DATA_RIP).metadata.get("frequency"));
+        DataPointStream rip_mac = datastreams.get(DATA_RIP_MAC);
         Smoothing.smooth(rip_mac, rip_smooth, windowLength); //TWH: Replaced MAC with Smooth after discussion on 11/9/2015
 
-        DataPointStream upIntercepts = datastreams.getDataPointStream("org.md2k.cstress.data.rip.upIntercepts");
-        DataPointStream downIntercepts = datastreams.getDataPointStream("org.md2k.cstress.data.rip.downIntercepts");
+        DataPointStream upIntercepts = datastreams.get(DATA_RIP_UP_INTERCEPTS);
+        DataPointStream downIntercepts = datastreams.get(DATA_RIP_DOWN_INTERCEPTS);
         generateIntercepts(upIntercepts, downIntercepts, rip_smooth, rip_mac);
 
-        DataPointStream upInterceptsFiltered = datastreams.getDataPointStream("org.md2k.cstress.data.rip.upIntercepts.filtered");
-        DataPointStream downInterceptsFiltered = datastreams.getDataPointStream("org.md2k.cstress.data.rip.downIntercepts.filtered");
+        DataPointStream upInterceptsFiltered = datastreams.get(DATA_RIP_UP_INTERCEPTS_FILTERED);
+        DataPointStream downInterceptsFiltered = datastreams.get(DATA_RIP_DOWN_INTERCEPTS_FILTERED);
         filterIntercepts(upInterceptsFiltered, downInterceptsFiltered, upIntercepts, downIntercepts);
 
-        DataPointStream upInterceptsFiltered1sec = datastreams.getDataPointStream("org.md2k.cstress.data.rip.upIntercepts.filtered.1sec");
-        DataPointStream downInterceptsFiltered1sec = datastreams.getDataPointStream("org.md2k.cstress.data.rip.downIntercepts.filtered.1sec");
+        DataPointStream upInterceptsFiltered1sec = datastreams.get(DATA_RIP_UP_INTERCEPTS_FILTERED_1SEC);
+        DataPointStream downInterceptsFiltered1sec = datastreams.get(DATA_RIP_DOWN_INTERCEPTS_FILTERED_1SEC);
         filter1Second(upInterceptsFiltered1sec, downInterceptsFiltered1sec, upInterceptsFiltered, downInterceptsFiltered);
 
-        DataPointStream upInterceptsFiltered1sect20 = datastreams.getDataPointStream("org.md2k.cstress.data.rip.upIntercepts.filtered.1sec.t20");
-        DataPointStream downInterceptsFiltered1sect20 = datastreams.getDataPointStream("org.md2k.cstress.data.rip.downIntercepts.filtered.1sec.t20");
+        DataPointStream upInterceptsFiltered1sect20 = datastreams.get(DATA_RIP_UP_INTERCEPTS_FILTERED_1SEC_T20);
+        DataPointStream downInterceptsFiltered1sect20 = datastreams.get(DATA_RIP_DOWN_INTERCEPTS_FILTERED_1SEC_T20);
         filtert20second(upInterceptsFiltered1sect20, downInterceptsFiltered1sect20, upInterceptsFiltered1sec, downInterceptsFiltered1sec);
 
-        DataPointStream peaks = datastreams.getDataPointStream("org.md2k.cstress.data.rip.peaks");
+        DataPointStream peaks = datastreams.get(DATA_RIP_PEAKS);
         generatePeaks(peaks, upInterceptsFiltered1sect20, downInterceptsFiltered1sect20, rip_smooth);
 
-        DataPointStream valleys = datastreams.getDataPointStream("org.md2k.cstress.data.rip.valleys");
+        DataPointStream valleys = datastreams.get(DATA_RIP_VALLEYS);
         generateValleys(valleys, upInterceptsFiltered1sect20, downInterceptsFiltered1sect20, rip_smooth);
 
-        DataPointStream inspirationAmplitude = datastreams.getDataPointStream("org.md2k.cstress.data.rip.inspirationAmplitude");
+        DataPointStream inspirationAmplitude = datastreams.get(DATA_RIP_INSPIRATION_AMPLITUDE);
         double meanInspirationAmplitude = generateInspirationAmplitude(inspirationAmplitude, peaks, valleys);
 
-        DataPointStream respirationDuration = datastreams.getDataPointStream("org.md2k.cstress.data.rip.respirationDuration");
+        DataPointStream respirationDuration = datastreams.get(DATA_RIP_RESPIRATION_DURATION);
         generateRespirationDuration(respirationDuration, valleys);
 
-        DataPointStream valleysFiltered = datastreams.getDataPointStream("org.md2k.cstress.data.rip.valleys.filtered");
-        DataPointStream peaksFiltered = datastreams.getDataPointStream("org.md2k.cstress.data.rip.peaks.filtered");
+        DataPointStream valleysFiltered = datastreams.get(DATA_RIP_VALLEYS_FILTERED);
+        DataPointStream peaksFiltered = datastreams.get(DATA_RIP_PEAKS_FILTERED);
         filterPeaksAndValleys(peaksFiltered, valleysFiltered, respirationDuration, inspirationAmplitude, peaks, valleys, meanInspirationAmplitude);
 
 
         //Key features
 
-        double activity = datastreams.getDataPointStream("org.md2k.cstress.data.accel.activity").data.get(0).value;
+        double activity = datastreams.get(DATA_ACCEL_ACTIVITY).data.getValue(0);
         if (activity == 0.0) {
             for (int i = 0; i < valleys.data.size() - 1; i++) {
 
-                datastreams.getDataPointStream("org.md2k.cstress.data.rip.inspduration").add(new DataPoint(valleys.data.get(i).timestamp, peaks.data.get(i).timestamp - valleys.data.get(i).timestamp));
-                datastreams.getDataPointStream("org.md2k.cstress.data.rip.exprduration").add(new DataPoint(peaks.data.get(i).timestamp, valleys.data.get(i + 1).timestamp - peaks.data.get(i).timestamp));
-                datastreams.getDataPointStream("org.md2k.cstress.data.rip.respduration").add(new DataPoint(valleys.data.get(i).timestamp, valleys.data.get(i + 1).timestamp - valleys.data.get(i).timestamp));
+                datastreams.get(DATA_RIP_INSPDURATION).add(valleys.data.getTimestamp(i), peaks.data.getTimestamp(i) - valleys.data.getTimestamp(i));
+                datastreams.get(DATA_RIP_EXPRDURATION).add(peaks.data.getTimestamp(i), valleys.data.getTimestamp(i + 1) - peaks.data.getTimestamp(i));
+                datastreams.get(DATA_RIP_RESPDURATION).add(valleys.data.getTimestamp(i), valleys.data.getTimestamp(i + 1) - valleys.data.getTimestamp(i));
 
-                datastreams.getDataPointStream("org.md2k.cstress.data.rip.stretch").add(new DataPoint(valleys.data.get(i).timestamp, peaks.data.get(i).value - valleys.data.get(i).value));
+                datastreams.get(DATA_RIP_STRETCH).add(valleys.data.getTimestamp(i), peaks.data.getValue(i) - valleys.data.getValue(i));
 
-                DataPoint inratio = datastreams.getDataPointStream("org.md2k.cstress.data.rip.inspduration").data.get(datastreams.getDataPointStream("org.md2k.cstress.data.rip.inspduration").data.size() - 1);
-                DataPoint exratio = datastreams.getDataPointStream("org.md2k.cstress.data.rip.exprduration").data.get(datastreams.getDataPointStream("org.md2k.cstress.data.rip.exprduration").data.size() - 1);
+                DataPoint inratio = datastreams.get(DATA_RIP_INSPDURATION).data.get(datastreams.get(DATA_RIP_INSPDURATION).data.size() - 1);
+                DataPoint exratio = datastreams.get(DATA_RIP_EXPRDURATION).data.get(datastreams.get(DATA_RIP_EXPRDURATION).data.size() - 1);
 
-                (datastreams.getDataPointStream("org.md2k.cstress.data.rip.IERatio")).add(new DataPoint(valleys.data.get(i).timestamp, inratio.value / exratio.value));
+                (datastreams.get(DATA_RIP_IERATIO)).add(valleys.data.getTimestamp(i), inratio.value / exratio.value);
 
-                DataPoint rsa = rsaCalculateCycle(valleys.data.get(i).timestamp, valleys.data.get(i + 1).timestamp, datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr"));
+                DataPoint rsa = rsaCalculateCycle(valleys.data.getTimestamp(i), valleys.data.getTimestamp(i + 1), datastreams.get(DATA_ECG_RR));
                 if (rsa.value != -1.0) { //Only add if a valid value
-                    (datastreams.getDataPointStream("org.md2k.cstress.data.rip.RSA")).add(rsa);
+                    (datastreams.get(DATA_RIP_RSA)).add(rsa);
                 }
 
             }
 
 
-            (datastreams.getDataPointStream("org.md2k.cstress.data.rip.BreathRate")).add(new DataPoint(datastreams.getDataPointStream("org.md2k.cstress.data.rip").data.get(datastreams.getDataPointStream("org.md2k.cstress.data.rip").data.size() - 1).timestamp, valleys.data.size() - 1));
+            (datastreams.get(DATA_RIP_BREATH_RATE)).add(datastreams.get(DATA_RIP).data.getTimestamp(datastreams.get(DATA_RIP).data.size() - 1), valleys.data.size() - 1);
 
             double minuteVentilation = 0.0;
             for (int i = 0; i < valleys.data.size() - 1; i++) {
-                minuteVentilation += (peaks.data.get(i).timestamp - valleys.data.get(i).timestamp) / 1000.0 * (peaks.data.get(i).value - valleys.data.get(i).value) / 2.0;
+                minuteVentilation += (peaks.data.getTimestamp(i) - valleys.data.getTimestamp(i)) / 1000.0 * (peaks.data.getValue(i) - valleys.data.getValue(i)) / 2.0;
             }
             //minuteVentilation *= (valleys.data.size()-1); //TODO: Check with experts that this should not be there
 
-            (datastreams.getDataPointStream("org.md2k.cstress.data.rip.MinuteVentilation")).add(new DataPoint(datastreams.getDataPointStream("org.md2k.cstress.data.rip").data.get(datastreams.getDataPointStream("org.md2k.cstress.data.rip").data.size() - 1).timestamp, minuteVentilation));
+            (datastreams.get(DATA_RIP_MINUTE_VENTILATION)).add(datastreams.get(DATA_RIP).data.getTimestamp(datastreams.get(DATA_RIP).data.size() - 1), minuteVentilation);
         }
 
     }
@@ -148,9 +178,9 @@ public class RIPFeatures {
     private void filterPeaksAndValleys(DataPointStream peaksFiltered, DataPointStream valleysFiltered, DataPointStream respirationDuration, DataPointStream inspirationAmplitude, DataPointStream peaks, DataPointStream valleys, double meanInspirationAmplitude) {
 
         for (int i1 = 0; i1 < respirationDuration.data.size(); i1++) {
-            double duration = respirationDuration.data.get(i1).value / 1000.0;
+            double duration = respirationDuration.data.getValue(i1) / 1000.0;
             if (duration > 1.0 && duration < 12.0) { //Passes length test
-                if (inspirationAmplitude.data.get(i1).value > (AUTOSENSE.INSPIRATION_EXPIRATION_AMPLITUDE_THRESHOLD_FACTOR * meanInspirationAmplitude)) { //Passes amplitude test
+                if (inspirationAmplitude.data.getValue(i1) > (AUTOSENSE.INSPIRATION_EXPIRATION_AMPLITUDE_THRESHOLD_FACTOR * meanInspirationAmplitude)) { //Passes amplitude test
                     valleysFiltered.add(valleys.data.get(i1));
                     peaksFiltered.add(peaks.data.get(i1));
                 }
@@ -172,7 +202,7 @@ public class RIPFeatures {
     private void generateRespirationDuration(DataPointStream respirationDuration, DataPointStream valleys) {
 
         for (int i1 = 0; i1 < valleys.data.size() - 1; i1++) {
-            respirationDuration.add(new DataPoint(valleys.data.get(i1).timestamp, valleys.data.get(i1 + 1).timestamp - valleys.data.get(i1).timestamp));
+            respirationDuration.add(valleys.data.getTimestamp(i1), valleys.data.getTimestamp(i1 + 1) - valleys.data.getTimestamp(i1));
         }
 
     }
@@ -192,8 +222,8 @@ public class RIPFeatures {
         SummaryStatistics inspirationAmplitude = new SummaryStatistics();
 
         for (int i1 = 0; i1 < valleys.data.size() - 1; i1++) {
-            double inspAmp = (peaks.data.get(i1).value - valleys.data.get(i1).value);
-            ia.add(new DataPoint(valleys.data.get(i1).timestamp, inspAmp));
+            double inspAmp = (peaks.data.getValue(i1) - valleys.data.getValue(i1));
+            ia.add(valleys.data.getTimestamp(i1), inspAmp);
             inspirationAmplitude.addValue(inspAmp);
         }
 
@@ -261,7 +291,7 @@ public class RIPFeatures {
         if (downInterceptsFiltered1sec.data.size() > 0) {
             downInterceptsFiltered1sect20.add(downInterceptsFiltered1sec.data.get(0));
             for (int i1 = 0; i1 < upInterceptsFiltered1sec.data.size(); i1++) {
-                if ((downInterceptsFiltered1sec.data.get(i1 + 1).timestamp - upInterceptsFiltered1sec.data.get(i1).timestamp) > (2.0 / 20.0)) {
+                if ((downInterceptsFiltered1sec.data.getTimestamp(i1 + 1) - upInterceptsFiltered1sec.data.getTimestamp(i1)) > (2.0 / 20.0)) {
                     downInterceptsFiltered1sect20.add(downInterceptsFiltered1sec.data.get(i1 + 1));
                     upInterceptsFiltered1sect20.add(upInterceptsFiltered1sec.data.get(i1));
                 }
@@ -284,7 +314,7 @@ public class RIPFeatures {
     private void filter1Second(DataPointStream upInterceptsFiltered1sec, DataPointStream downInterceptsFiltered1sec, DataPointStream upInterceptsFiltered, DataPointStream downInterceptsFiltered) {
 
         for (int i1 = 1; i1 < downInterceptsFiltered.data.size(); i1++) {
-            if ((downInterceptsFiltered.data.get(i1).timestamp - downInterceptsFiltered.data.get(i1 - 1).timestamp) > 1000.0) {
+            if ((downInterceptsFiltered.data.getTimestamp(i1) - downInterceptsFiltered.data.getTimestamp(i1 - 1)) > 1000.0) {
                 downInterceptsFiltered1sec.add(downInterceptsFiltered.data.get(i1 - 1));
                 upInterceptsFiltered1sec.add(upInterceptsFiltered.data.get(i1 - 1));
             }
@@ -314,10 +344,10 @@ public class RIPFeatures {
 
         while (downPointer != downIntercepts.data.size() && upPointer != upIntercepts.data.size()) {
             if (updownstate) { //Check for up intercept
-                if (downIntercepts.data.get(downPointer).timestamp < upIntercepts.data.get(upPointer).timestamp) {
+                if (downIntercepts.data.getTimestamp(downPointer) < upIntercepts.data.getTimestamp(upPointer)) {
                     //Replace down intercept
-                    downInterceptsFiltered.data.get(downInterceptsFiltered.data.size() - 1).timestamp = downIntercepts.data.get(downPointer).timestamp;
-                    downInterceptsFiltered.data.get(downInterceptsFiltered.data.size() - 1).value = downIntercepts.data.get(downPointer).value;
+                    downInterceptsFiltered.data.setTimestamp(downInterceptsFiltered.data.size() - 1, downIntercepts.data.getTimestamp(downPointer));
+                    downInterceptsFiltered.data.setValue(downInterceptsFiltered.data.size() - 1, downIntercepts.data.getValue(downPointer));
                     downPointer++;
                 } else {
                     //Found up intercept
@@ -326,10 +356,10 @@ public class RIPFeatures {
                     updownstate = false;
                 }
             } else { //Check for down intercept
-                if (downIntercepts.data.get(downPointer).timestamp > upIntercepts.data.get(upPointer).timestamp) {
+                if (downIntercepts.data.getTimestamp(downPointer) > upIntercepts.data.getTimestamp(upPointer)) {
                     //Replace up intercept
-                    upInterceptsFiltered.data.get(upInterceptsFiltered.data.size() - 1).timestamp = upIntercepts.data.get(upPointer).timestamp;
-                    upInterceptsFiltered.data.get(upInterceptsFiltered.data.size() - 1).value = upIntercepts.data.get(upPointer).value;
+                    upInterceptsFiltered.data.setTimestamp(upInterceptsFiltered.data.size() - 1, upIntercepts.data.getTimestamp(upPointer));
+                    upInterceptsFiltered.data.setValue(upInterceptsFiltered.data.size() - 1, upIntercepts.data.getValue(upPointer));
                     upPointer++;
                 } else {
                     //Found down intercept
@@ -356,9 +386,9 @@ public class RIPFeatures {
     private void generateIntercepts(DataPointStream upIntercepts, DataPointStream downIntercepts, DataPointStream rip_smooth, DataPointStream rip_mac) {
         for (int i1 = 1; i1 < rip_mac.data.size() - 1; i1++) {
 
-            if (rip_smooth.data.get(i1 - 1).value < rip_mac.data.get(i1).value && rip_smooth.data.get(i1 + 1).value > rip_mac.data.get(i1).value) {
+            if (rip_smooth.data.getValue(i1 - 1) < rip_mac.data.getValue(i1) && rip_smooth.data.getValue(i1 + 1) > rip_mac.data.getValue(i1)) {
                 upIntercepts.add(rip_mac.data.get(i1));
-            } else if (rip_smooth.data.get(i1 - 1).value > rip_mac.data.get(i1).value && rip_smooth.data.get(i1 + 1).value < rip_mac.data.get(i1).value) {
+            } else if (rip_smooth.data.getValue(i1 - 1) > rip_mac.data.getValue(i1) && rip_smooth.data.getValue(i1 + 1) < rip_mac.data.getValue(i1)) {
                 downIntercepts.add(rip_mac.data.get(i1));
             }
 
@@ -381,30 +411,38 @@ public class RIPFeatures {
     private DataPoint rsaCalculateCycle(long starttime, long endtime, DataPointStream rrintervals) {
         DataPoint result = new DataPoint(starttime, -1.0);
 
-        DataPoint max = new DataPoint(0, 0.0);
-        DataPoint min = new DataPoint(0, 0.0);
+        DataPointList rr = rrintervals.getRange(starttime, endtime);
+
+        long maxTimestamp = 0;
+        long minTimestamp = 0;
+        double max = 0.0;
+        double min = 0.0;
         boolean maxFound = false;
         boolean minFound = false;
-        for (DataPoint dp : rrintervals.data) {
-            if (dp.timestamp > starttime && dp.timestamp < endtime) {
-                if (max.timestamp == 0 && min.timestamp == 0) {
-                    max = new DataPoint(dp);
-                    min = new DataPoint(dp);
-                } else {
-                    if (dp.value > max.value) {
-                        max = new DataPoint(dp);
-                        maxFound = true;
-                    }
-                    if (dp.value < min.value) {
-                        min = new DataPoint(dp);
-                        minFound = true;
-                    }
+        for (int i = 0; i < rr.size(); i++) {
+            long timestamp = rr.getTimestamp(i);
+            double value = rr.getValue(i);
+            if (maxTimestamp == 0 && minTimestamp == 0) {
+                maxTimestamp = timestamp;
+                minTimestamp = timestamp;
+                max = value;
+                min = value;
+            } else {
+                if (value > max) {
+                    maxTimestamp = timestamp;
+                    max = value;
+                    maxFound = true;
+                }
+                if (value < min) {
+                    minTimestamp = timestamp;
+                    min = value;
+                    minFound = true;
                 }
             }
         }
 
         if (maxFound && minFound) {
-            result.value = max.value - min.value; //RSA amplitude
+            result.value = max - min; //RSA amplitude
         }
         return result;
     }
@@ -425,7 +463,7 @@ public class RIPFeatures {
 
         List<DataPoint> temp = new ArrayList<DataPoint>();
         for (int i = 0; i < data.data.size(); i++) { //Identify potential data points
-            if (downIntercept.timestamp < data.data.get(i).timestamp && data.data.get(i).timestamp < upIntercept.timestamp) {
+            if (downIntercept.timestamp < data.data.getTimestamp(i) && data.data.getTimestamp(i) < upIntercept.timestamp) {
                 temp.add(data.data.get(i));
             }
         }
@@ -486,7 +524,7 @@ public class RIPFeatures {
 
         ArrayList<DataPoint> temp = new ArrayList<DataPoint>();
         for (int i = 0; i < data.data.size(); i++) { //Identify potential data points
-            if (upIntercept.timestamp < data.data.get(i).timestamp && data.data.get(i).timestamp < downIntercept.timestamp) {
+            if (upIntercept.timestamp < data.data.getTimestamp(i) && data.data.getTimestamp(i) < downIntercept.timestamp) {
                 temp.add(data.data.get(i));
             }
         }
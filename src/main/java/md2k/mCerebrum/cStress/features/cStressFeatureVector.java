@@ -30,6 +30,7 @@ package md2k.mCerebrum.cStress.features;
 import md2k.mCerebrum.cStress.library.datastream.DataArrayStream;
 import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
 import md2k.mCerebrum.cStress.library.datastream.DataStreams;
+import md2k.mCerebrum.cStress.library.datastream.StreamHandle;
 import md2k.mCerebrum.cStress.library.structs.DataPointArray;
 import org.apache.commons.math3.exception.NotANumberException;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
@@ -42,6 +43,22 @@ import java.util.List;
  */
 public class cStressFeatureVector {
 
+    private static final StreamHandle<DataArrayStream> FV = StreamHandle.dataArray("org.md2k.cstress.fv");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_VALUE = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr_value");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_LOMB_LOW_FREQUENCY_ENERGY = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr.LombLowFrequencyEnergy");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_LOMB_MEDIUM_FREQUENCY_ENERGY = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr.LombMediumFrequencyEnergy");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_LOMB_HIGH_FREQUENCY_ENERGY = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr.LombHighFrequencyEnergy");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_LOW_HIGH_FREQUENCY_ENERGY_RATIO = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr.LowHighFrequencyEnergyRatio");
+    private static final StreamHandle<DataPointStream> DATA_ECG_RR_HEARTRATE = StreamHandle.dataPoint("org.md2k.cstress.data.ecg.rr.heartrate");
+    private static final StreamHandle<DataPointStream> DATA_RIP_INSPDURATION = StreamHandle.dataPoint("org.md2k.cstress.data.rip.inspduration");
+    private static final StreamHandle<DataPointStream> DATA_RIP_EXPRDURATION = StreamHandle.dataPoint("org.md2k.cstress.data.rip.exprduration");
+    private static final StreamHandle<DataPointStream> DATA_RIP_RESPDURATION = StreamHandle.dataPoint("org.md2k.cstress.data.rip.respduration");
+    private static final StreamHandle<DataPointStream> DATA_RIP_IERATIO = StreamHandle.dataPoint("org.md2k.cstress.data.rip.IERatio");
+    private static final StreamHandle<DataPointStream> DATA_RIP_STRETCH = StreamHandle.dataPoint("org.md2k.cstress.data.rip.stretch");
+    private static final StreamHandle<DataPointStream> DATA_RIP_BREATH_RATE = StreamHandle.dataPoint("org.md2k.cstress.data.rip.BreathRate");
+    private static final StreamHandle<DataPointStream> DATA_RIP_MINUTE_VENTILATION = StreamHandle.dataPoint("org.md2k.cstress.data.rip.MinuteVentilation");
+    private static final StreamHandle<DataPointStream> DATA_RIP_RSA = StreamHandle.dataPoint("org.md2k.cstress.data.rip.RSA");
+
     /**
      * Constructor for cStress
      * @param datastreams Global datastreams
@@ -49,7 +66,7 @@ public class cStressFeatureVector {
     public cStressFeatureVector(DataStreams datastreams) {
         try {
             DataPointArray fv = computeStressFeatures(datastreams);
-            DataArrayStream fvStream = datastreams.getDataArrayStream("org.md2k.cstress.fv");
+            DataArrayStream fvStream = datastreams.get(FV);
             fvStream.add(fv);
         } catch (IndexOutOfBoundsException e) {
             //Ignore this error
@@ -80,28 +97,28 @@ public class cStressFeatureVector {
          ECG - RR interval heart-rate
          */
 
-        DescriptiveStatistics RRint = new DescriptiveStatistics(datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value").getNormalizedValues());
+        DescriptiveStatistics RRint = new DescriptiveStatistics(datastreams.get(DATA_ECG_RR_VALUE).getNormalizedValues());
         double ECG_RR_Interval_Variance = RRint.getVariance();
         double ECG_RR_Interval_Quartile_Deviation = (RRint.getPercentile(75) - RRint.getPercentile(25)) / 2.0;
 
-        DataPointStream lombLE = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr.LombLowFrequencyEnergy");
-        double ECG_RR_Interval_Low_Frequency_Energy = (lombLE.data.get(0).value - lombLE.stats.getMean()) / lombLE.stats.getStandardDeviation();
+        DataPointStream lombLE = datastreams.get(DATA_ECG_RR_LOMB_LOW_FREQUENCY_ENERGY);
+        double ECG_RR_Interval_Low_Frequency_Energy = (lombLE.data.getValue(0) - lombLE.getMean()) / lombLE.getStandardDeviation();
 
-        DataPointStream lombME = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr.LombMediumFrequencyEnergy");
-        double ECG_RR_Interval_Medium_Frequency_Energy = (lombME.data.get(0).value - lombME.stats.getMean()) / lombME.stats.getStandardDeviation();
+        DataPointStream lombME = datastreams.get(DATA_ECG_RR_LOMB_MEDIUM_FREQUENCY_ENERGY);
+        double ECG_RR_Interval_Medium_Frequency_Energy = (lombME.data.getValue(0) - lombME.getMean()) / lombME.getStandardDeviation();
 
-        DataPointStream lombHE = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr.LombHighFrequencyEnergy");
-        double ECG_RR_Interval_High_Frequency_Energy = (lombHE.data.get(0).value - lombHE.stats.getMean()) / lombHE.stats.getStandardDeviation();
+        DataPointStream lombHE = datastreams.get(DATA_ECG_RR_LOMB_HIGH_FREQUENCY_ENERGY);
+        double ECG_RR_Interval_High_Frequency_Energy = (lombHE.data.getValue(0) - lombHE.getMean()) / lombHE.getStandardDeviation();
 
-        DataPointStream lombLH = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr.LowHighFrequencyEnergyRatio");
-        double ECG_RR_Interval_Low_High_Frequency_Energy_Ratio = (lombLH.data.get(0).value - lombLH.stats.getMean()) / lombLH.stats.getStandardDeviation();
+        DataPointStream lombLH = datastreams.get(DATA_ECG_RR_LOW_HIGH_FREQUENCY_ENERGY_RATIO);
+        double ECG_RR_Interval_Low_High_Frequency_Energy_Ratio = (lombLH.data.getValue(0) - lombLH.getMean()) / lombLH.getStandardDeviation();
 
         double ECG_RR_Interval_Mean = RRint.getMean();
         double ECG_RR_Interval_Median = RRint.getPercentile(50);
         double ECG_RR_Interval_80thPercentile = RRint.getPercentile(80);
         double ECG_RR_Interval_20thPercentile = RRint.getPercentile(20);
 
-        DescriptiveStatistics heartrate = new DescriptiveStatistics(datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr.heartrate").getNormalizedValues());
+        DescriptiveStatistics heartrate = new DescriptiveStatistics(datastreams.get(DATA_ECG_RR_HEARTRATE).getNormalizedValues());
         double ECG_RR_Interval_Heart_Rate = heartrate.getMean();
 
          /*
@@ -111,7 +128,7 @@ public class cStressFeatureVector {
          RIP - Inspiration Duration - 80th percentile
          */
 
-        DescriptiveStatistics InspDuration = new DescriptiveStatistics(datastreams.getDataPointStream("org.md2k.cstress.data.rip.inspduration").getNormalizedValues());
+        DescriptiveStatistics InspDuration = new DescriptiveStatistics(datastreams.get(DATA_RIP_INSPDURATION).getNormalizedValues());
 
         double RIP_Inspiration_Duration_Quartile_Deviation = (InspDuration.getPercentile(75) - InspDuration.getPercentile(25)) / 2.0;
         double RIP_Inspiration_Duration_Mean = InspDuration.getMean();
@@ -125,7 +142,7 @@ public class cStressFeatureVector {
          RIP - Expiration Duration - 80th percentile
          */
 
-        DescriptiveStatistics ExprDuration = new DescriptiveStatistics(datastreams.getDataPointStream("org.md2k.cstress.data.rip.exprduration").getNormalizedValues());
+        DescriptiveStatistics ExprDuration = new DescriptiveStatistics(datastreams.get(DATA_RIP_EXPRDURATION).getNormalizedValues());
 
         double RIP_Expiration_Duration_Quartile_Deviation = (ExprDuration.getPercentile(75) - ExprDuration.getPercentile(25)) / 2.0;
         double RIP_Expiration_Duration_Mean = ExprDuration.getMean();
@@ -138,7 +155,7 @@ public class cStressFeatureVector {
          RIP - Respiration Duration - 80th percentile
          */
 
-        DescriptiveStatistics RespDuration = new DescriptiveStatistics(datastreams.getDataPointStream("org.md2k.cstress.data.rip.respduration").getNormalizedValues());
+        DescriptiveStatistics RespDuration = new DescriptiveStatistics(datastreams.get(DATA_RIP_RESPDURATION).getNormalizedValues());
 
         double RIP_Respiration_Duration_Quartile_Deviation = (RespDuration.getPercentile(75) - RespDuration.getPercentile(25)) / 2.0;
         double RIP_Respiration_Duration_Mean = RespDuration.getMean();
@@ -151,7 +168,7 @@ public class cStressFeatureVector {
          RIP - Inspiration-Expiration Duration Ratio - median
          RIP - Inspiration-Expiration Duration Ratio - 80th percentile
          */
-        DescriptiveStatistics InspExprDuration = new DescriptiveStatistics((datastreams.getDataPointStream("org.md2k.cstress.data.rip.IERatio")).getNormalizedValues());
+        DescriptiveStatistics InspExprDuration = new DescriptiveStatistics((datastreams.get(DATA_RIP_IERATIO)).getNormalizedValues());
 
         double RIP_Inspiration_Expiration_Duration_Quartile_Deviation = (InspExprDuration.getPercentile(75) - InspExprDuration.getPercentile(25)) / 2.0;
         double RIP_Inspiration_Expiration_Duration_Mean = InspExprDuration.getMean();
@@ -164,7 +181,7 @@ public class cStressFeatureVector {
          *RIP - Stretch - median
          RIP - Stretch - 80th percentile
          */
-        DescriptiveStatistics Stretch = new DescriptiveStatistics(datastreams.getDataPointStream("org.md2k.cstress.data.rip.stretch").getNormalizedValues());
+        DescriptiveStatistics Stretch = new DescriptiveStatistics(datastreams.get(DATA_RIP_STRETCH).getNormalizedValues());
 
         double RIP_Stretch_Quartile_Deviation = (Stretch.getPercentile(75) - Stretch.getPercentile(25)) / 2.0;
         double RIP_Stretch_Mean = Stretch.getMean();
@@ -173,14 +190,14 @@ public class cStressFeatureVector {
          /*
          *RIP - Breath-rate
          */
-        DataPointStream breathRate = datastreams.getDataPointStream("org.md2k.cstress.data.rip.BreathRate");
-        double RIP_Breath_Rate = (breathRate.data.get(0).value - breathRate.stats.getMean()) / breathRate.stats.getStandardDeviation();
+        DataPointStream breathRate = datastreams.get(DATA_RIP_BREATH_RATE);
+        double RIP_Breath_Rate = (breathRate.data.getValue(0) - breathRate.getMean()) / breathRate.getStandardDeviation();
 
          /*
          *RIP - Inspiration Minute Volume
          */
-        DataPointStream minVent = datastreams.getDataPointStream("org.md2k.cstress.data.rip.MinuteVentilation");
-        double RIP_Inspiration_Minute_Ventilation = (minVent.data.get(0).value - minVent.stats.getMean()) / minVent.stats.getStandardDeviation();
+        DataPointStream minVent = datastreams.get(DATA_RIP_MINUTE_VENTILATION);
+        double RIP_Inspiration_Minute_Ventilation = (minVent.data.getValue(0) - minVent.getMean()) / minVent.getStandardDeviation();
 
          /*
          RIP+ECG - Respiratory Sinus Arrhythmia (RSA) - quartile deviation
@@ -189,7 +206,7 @@ public class cStressFeatureVector {
          RIP+ECG - Respiratory Sinus Arrhythmia (RSA) - 80th percentile
          */
 
-        DescriptiveStatistics RSA = new DescriptiveStatistics((datastreams.getDataPointStream("org.md2k.cstress.data.rip.RSA")).getNormalizedValues());
+        DescriptiveStatistics RSA = new DescriptiveStatistics((datastreams.get(DATA_RIP_RSA)).getNormalizedValues());
 
         double RSA_Quartile_Deviation = (RSA.getPercentile(75) - RSA.getPercentile(25)) / 2.0;
         double RSA_Mean = RSA.getMean();
@@ -250,6 +267,6 @@ public class cStressFeatureVector {
                 throw new NotANumberException();
             }
         }
-        return new DataPointArray(datastreams.getDataPointStream("org.md2k.cstress.data.ecg.rr_value").data.get(0).timestamp, featureVector);
+        return new DataPointArray(datastreams.get(DATA_ECG_RR_VALUE).data.getTimestamp(0), featureVector);
     }
 }
@@ -28,23 +28,55 @@ package md2k.mCerebrum.cStress.library;
  */
 
 
-import java.util.TreeMap;
-
+/**
+ * Percentile statistics over a sliding window of the most recent values
+ */
 public class DescriptiveStatistics {
 
-    TreeMap<Integer, PSquared> pp = new TreeMap<Integer, PSquared>();
+    public static final int DEFAULT_WINDOW_SIZE = 16384;
+
+    private OrderStatisticWindow window;
+
+    public DescriptiveStatistics() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public DescriptiveStatistics(int windowSize) {
+        window = new OrderStatisticWindow(windowSize);
+    }
 
     public void addValue(double value) {
-        for (Integer i : pp.keySet()) {
-            pp.get(i).accept(value);
-        }
+        window.add(value);
+    }
+
+    /**
+     * Exact percentile of the values in the window, see OrderStatisticWindow.getPercentile
+     *
+     * @param i Percentile in the range [0, 100]
+     * @return Percentile value, NaN if no values have been added
+     */
+    public double getPercentile(double i) {
+        return window.getPercentile(i);
+    }
+
+    public long getN() {
+        return window.size();
+    }
+
+    public int getWindowSize() {
+        return window.getWindowSize();
+    }
 
+    /**
+     * Change the number of values retained.  Values already in the window are discarded.
+     *
+     * @param windowSize Number of most recent values to retain
+     */
+    public void setWindowSize(int windowSize) {
+        window = new OrderStatisticWindow(windowSize);
     }
 
-    public double getPercentile(Integer i) {
-        if (!pp.containsKey(i)) {
-            pp.put(i, new PSquared(i.doubleValue()));
-        }
-        return pp.get(i).getPValue();
+    public void clear() {
+        window.clear();
     }
 }
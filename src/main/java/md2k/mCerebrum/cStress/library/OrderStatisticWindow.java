@@ -0,0 +1,312 @@
+package md2k.mCerebrum.cStress.library;
+
+import java.util.Arrays;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center 
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * 
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+/**
+ * Sliding window of values supporting exact order statistics
+ * <p>
+ * Values are kept in an indexable skip list ordered by (value, arrival) so insertion, eviction of the oldest value
+ * and selection of the k-th smallest value are all O(log n).  Nodes are stored in primitive arrays and recycled as
+ * the window slides, so a full window does not allocate.
+ * </p>
+ */
+public class OrderStatisticWindow {
+
+    private static final int NIL = -1;
+    private static final int HEAD = 0;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int windowSize;
+    private final int maxLevels;
+
+    //Node storage, node 0 is the head and holds maxLevels links
+    private double[] values;
+    private long[] sequence;
+    private int[] offset;
+    private int[] levels;
+    private int[] next;
+    private int[] width;
+    private int nodes;
+    private int links;
+
+    private int[] free;
+    private int freeCount;
+
+    //Node ids in arrival order
+    private int[] fifo;
+    private int fifoHead;
+    private int size;
+
+    private long arrivals;
+    private long random;
+
+    private final int[] chain;
+    private final int[] steps;
+
+
+    /**
+     * Constructor
+     *
+     * @param windowSize Number of most recent values to retain
+     */
+    public OrderStatisticWindow(int windowSize) {
+        this.windowSize = Math.max(windowSize, 1);
+        this.maxLevels = 33 - Integer.numberOfLeadingZeros(this.windowSize);
+        this.chain = new int[maxLevels];
+        this.steps = new int[maxLevels];
+        clear();
+    }
+
+
+    /**
+     * Remove all values
+     */
+    public void clear() {
+        int capacity = Math.min(INITIAL_CAPACITY, windowSize) + 1;
+        values = new double[capacity];
+        sequence = new long[capacity];
+        offset = new int[capacity];
+        levels = new int[capacity];
+        next = new int[capacity * 2 + maxLevels];
+        width = new int[capacity * 2 + maxLevels];
+        free = new int[capacity];
+        fifo = new int[capacity - 1];
+        freeCount = 0;
+        fifoHead = 0;
+        size = 0;
+        arrivals = 0;
+        random = 0x2545F4914F6CDD1DL;
+
+        levels[HEAD] = maxLevels;
+        offset[HEAD] = 0;
+        for (int l = 0; l < maxLevels; l++) {
+            next[l] = NIL;
+            width[l] = 1;
+        }
+        nodes = 1;
+        links = maxLevels;
+    }
+
+    /**
+     * @return Number of values currently in the window
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Maximum number of values retained
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Add a value, evicting the oldest value if the window is full
+     *
+     * @param value New value
+     */
+    public void add(double value) {
+        if (size == windowSize) {
+            int oldest = fifo[fifoHead];
+            unlink(oldest);
+            free[freeCount++] = oldest;
+            fifoHead = (fifoHead + 1) % fifo.length;
+            size--;
+        }
+
+        int node = allocate();
+        values[node] = value;
+        sequence[node] = arrivals++;
+        link(node);
+
+        if (size == fifo.length) {
+            growFifo();
+        }
+        fifo[(fifoHead + size) % fifo.length] = node;
+        size++;
+    }
+
+    /**
+     * Select the k-th smallest value
+     *
+     * @param k Zero based rank
+     * @return Value of rank k
+     */
+    public double select(int k) {
+        if (k < 0 || k >= size) {
+            throw new IndexOutOfBoundsException("Rank: " + k + ", Size: " + size);
+        }
+        int node = HEAD;
+        int remaining = k + 1;
+        for (int l = maxLevels - 1; l >= 0; l--) {
+            while (width[offset[node] + l] <= remaining) {
+                remaining -= width[offset[node] + l];
+                node = next[offset[node] + l];
+            }
+        }
+        return values[node];
+    }
+
+    /**
+     * Percentile using the same estimation as the commons-math Percentile class (legacy estimation)
+     *
+     * @param p Percentile in the range [0, 100]
+     * @return Interpolated percentile, NaN if the window is empty
+     */
+    public double getPercentile(double p) {
+        if (size == 0) {
+            return Double.NaN;
+        }
+        if (size == 1) {
+            return select(0);
+        }
+        double pos = p / 100.0 * (size + 1); //Same operation order as Percentile, so results agree to the bit
+        double fpos = Math.floor(pos);
+        int intPos = (int) fpos;
+        double dif = pos - fpos;
+        if (pos < 1) {
+            return select(0);
+        }
+        if (pos >= size) {
+            return select(size - 1);
+        }
+        double lower = select(intPos - 1);
+        double upper = select(intPos);
+        return lower + dif * (upper - lower);
+    }
+
+
+    /**
+     * Ordering by value, ties broken by arrival
+     */
+    private boolean before(int a, double value, long seq) {
+        if (a == NIL) {
+            return false;
+        }
+        return values[a] < value || (values[a] == value && sequence[a] < seq);
+    }
+
+    private void link(int node) {
+        double value = values[node];
+        long seq = sequence[node];
+
+        int current = HEAD;
+        for (int l = maxLevels - 1; l >= 0; l--) {
+            steps[l] = 0;
+            while (before(next[offset[current] + l], value, seq)) {
+                steps[l] += width[offset[current] + l];
+                current = next[offset[current] + l];
+            }
+            chain[l] = current;
+        }
+
+        int d = levels[node];
+        int stepped = 0;
+        for (int l = 0; l < d; l++) {
+            int previous = offset[chain[l]] + l;
+            next[offset[node] + l] = next[previous];
+            next[previous] = node;
+            width[offset[node] + l] = width[previous] - stepped;
+            width[previous] = stepped + 1;
+            stepped += steps[l];
+        }
+        for (int l = d; l < maxLevels; l++) {
+            width[offset[chain[l]] + l]++;
+        }
+    }
+
+    private void unlink(int node) {
+        double value = values[node];
+        long seq = sequence[node];
+
+        int current = HEAD;
+        for (int l = maxLevels - 1; l >= 0; l--) {
+            while (before(next[offset[current] + l], value, seq)) {
+                current = next[offset[current] + l];
+            }
+            chain[l] = current;
+        }
+
+        int d = levels[node];
+        for (int l = 0; l < d; l++) {
+            int previous = offset[chain[l]] + l;
+            width[previous] += width[offset[node] + l] - 1;
+            next[previous] = next[offset[node] + l];
+        }
+        for (int l = d; l < maxLevels; l++) {
+            width[offset[chain[l]] + l]--;
+        }
+    }
+
+    /**
+     * Take a recycled node or create a new one with a random level
+     */
+    private int allocate() {
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+        if (nodes == values.length) {
+            growNodes();
+        }
+        int node = nodes++;
+
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        int level = Math.min(1 + Long.numberOfTrailingZeros(random), maxLevels);
+
+        if (links + level > next.length) {
+            next = Arrays.copyOf(next, Math.max(next.length * 2, links + level));
+            width = Arrays.copyOf(width, next.length);
+        }
+        levels[node] = level;
+        offset[node] = links;
+        links += level;
+        return node;
+    }
+
+    private void growNodes() {
+        int capacity = Math.min(2 * (values.length - 1), windowSize) + 1;
+        values = Arrays.copyOf(values, capacity);
+        sequence = Arrays.copyOf(sequence, capacity);
+        offset = Arrays.copyOf(offset, capacity);
+        levels = Arrays.copyOf(levels, capacity);
+        free = Arrays.copyOf(free, capacity);
+    }
+
+    private void growFifo() {
+        int[] temp = new int[Math.min(2 * fifo.length, windowSize)];
+        for (int i = 0; i < size; i++) {
+            temp[i] = fifo[(fifoHead + i) % fifo.length];
+        }
+        fifo = temp;
+        fifoHead = 0;
+    }
+}
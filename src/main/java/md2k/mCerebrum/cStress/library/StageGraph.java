@@ -0,0 +1,190 @@
+package md2k.mCerebrum.cStress.library;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Dependency graph of processing stages
+ * <p>
+ * Stages are added with the names of the stages they depend on, which must have been added before, so insertion
+ * order is always a valid sequential order and cycles can not be built.  With a pool, every stage is started as
+ * soon as all of its dependencies have completed; without one the stages run in insertion order.  A stage that throws
+ * is recorded as failed and the stages depending on it, directly or not, are skipped, while independent stages still
+ * run.
+ * </p>
+ */
+public class StageGraph {
+
+    private final List<Node> nodes = new ArrayList<Node>();
+
+
+    /**
+     * Add a stage
+     *
+     * @param name      Unique stage name
+     * @param stage     Work of the stage
+     * @param dependsOn Names of stages that must complete before this stage starts
+     */
+    public void add(String name, Runnable stage, String... dependsOn) {
+        if (find(name) != null) {
+            throw new IllegalArgumentException("Duplicate stage: " + name);
+        }
+        Node node = new Node(name, stage, dependsOn.length);
+        for (String dependency : dependsOn) {
+            Node parent = find(dependency);
+            if (parent == null) {
+                throw new IllegalArgumentException("Stage " + name + " depends on unknown stage " + dependency);
+            }
+            parent.dependents.add(node);
+        }
+        nodes.add(node);
+    }
+
+    /**
+     * Run all stages once
+     *
+     * @param pool Pool to run independent stages concurrently on, or null to run them in insertion order on the
+     *             calling thread.  The calling thread must not be a worker of this pool.
+     * @throws RuntimeException The exception of the first stage that failed, after all other stages finished
+     */
+    public void run(ForkJoinPool pool) {
+        for (Node node : nodes) {
+            node.reset();
+        }
+
+        if (pool == null) {
+            for (Node node : nodes) {
+                if (!node.skipped) {
+                    node.execute();
+                }
+            }
+        } else {
+            final CountDownLatch done = new CountDownLatch(nodes.size());
+            for (Node node : nodes) {
+                node.latch = done;
+            }
+            for (Node node : nodes) {
+                if (node.remaining.get() == 0) {
+                    submit(pool, node);
+                }
+            }
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+
+        for (Node node : nodes) {
+            if (node.failure != null) {
+                throw node.failure;
+            }
+        }
+    }
+
+
+    private Node find(String name) {
+        for (Node node : nodes) {
+            if (node.name.equals(name)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private static void submit(final ForkJoinPool pool, final Node node) {
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!node.skipped) {
+                        node.execute();
+                    }
+                } finally {
+                    for (Node dependent : node.dependents) {
+                        if (dependent.remaining.decrementAndGet() == 0) {
+                            submit(pool, dependent);
+                        }
+                    }
+                    node.latch.countDown();
+                }
+            }
+        });
+    }
+
+    private static class Node {
+        final String name;
+        final Runnable stage;
+        final int dependencies;
+        final List<Node> dependents = new ArrayList<Node>();
+        final AtomicInteger remaining = new AtomicInteger();
+        volatile boolean skipped;
+        volatile RuntimeException failure;
+        CountDownLatch latch;
+
+        Node(String name, Runnable stage, int dependencies) {
+            this.name = name;
+            this.stage = stage;
+            this.dependencies = dependencies;
+        }
+
+        void reset() {
+            remaining.set(dependencies);
+            skipped = false;
+            failure = null;
+        }
+
+        void execute() {
+            try {
+                stage.run();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+            if (failure != null) {
+                for (Node dependent : dependents) {
+                    dependent.skip();
+                }
+            }
+        }
+
+        void skip() {
+            if (!skipped) {
+                skipped = true;
+                for (Node dependent : dependents) {
+                    dependent.skip();
+                }
+            }
+        }
+    }
+}
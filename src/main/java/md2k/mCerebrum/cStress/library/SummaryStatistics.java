@@ -26,11 +26,19 @@ package md2k.mCerebrum.cStress.library;
  * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+/**
+ * Running mean, variance, skewness, and kurtosis based on Welford's online algorithm.  Central moments are updated
+ * incrementally instead of from raw power sums, which avoids cancellation for streams with a large mean.  Two
+ * summaries of disjoint samples can be combined with merge (Chan et al., extended to higher moments by Pebay) and a
+ * value can be taken back out with removeValue for sliding windows.
+ */
 public class SummaryStatistics {
 
-    double sum = 0;
-    double sumsq = 0;
     long n = 0;
+    double mean = 0;
+    double m2 = 0;
+    double m3 = 0;
+    double m4 = 0;
 
     public SummaryStatistics(double[] values) {
         for (int i = 0; i < values.length; i++) {
@@ -42,21 +50,151 @@ public class SummaryStatistics {
 
     }
 
+    /**
+     * Copy constructor
+     *
+     * @param other SummaryStatistics object to copy
+     */
+    public SummaryStatistics(SummaryStatistics other) {
+        this.n = other.n;
+        this.mean = other.mean;
+        this.m2 = other.m2;
+        this.m3 = other.m3;
+        this.m4 = other.m4;
+    }
+
     public void addValue(double value) {
+        long n1 = n;
         n++;
-        sum += value;
-        sumsq += value * value;
+        double delta = value - mean;
+        double deltaN = delta / n;
+        double deltaN2 = deltaN * deltaN;
+        double term1 = delta * deltaN * n1;
+
+        mean += deltaN;
+        m4 += term1 * deltaN2 * ((double) n * n - 3.0 * n + 3.0) + 6.0 * deltaN2 * m2 - 4.0 * deltaN * m3;
+        m3 += term1 * deltaN * (n - 2.0) - 3.0 * deltaN * m2;
+        m2 += term1;
+    }
+
+    /**
+     * Remove a value that was previously added, e.g. the oldest value of a sliding window
+     *
+     * @param value Value to remove
+     */
+    public void removeValue(double value) {
+        if (n <= 1) {
+            clear();
+            return;
+        }
+        combine(-1, value, 0, 0, 0);
+    }
+
+    /**
+     * Combine the statistics of a disjoint sample into this object, e.g. to join summaries computed in parallel
+     *
+     * @param other Statistics of the other sample
+     */
+    public void merge(SummaryStatistics other) {
+        if (other.n == 0) {
+            return;
+        }
+        if (n == 0) {
+            n = other.n;
+            mean = other.mean;
+            m2 = other.m2;
+            m3 = other.m3;
+            m4 = other.m4;
+            return;
+        }
+        combine(other.n, other.mean, other.m2, other.m3, other.m4);
+    }
+
+    public void clear() {
+        n = 0;
+        mean = 0;
+        m2 = 0;
+        m3 = 0;
+        m4 = 0;
     }
 
     public double getMean() {
-        return sum / n;
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return mean;
+    }
+
+    /**
+     * @return Sample variance (n - 1 denominator)
+     */
+    public double getVariance() {
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return m2 / (n - 1);
     }
 
     public double getStandardDeviation() {
-        return Math.sqrt((sumsq - (sum * sum) / n) / (n - 1));
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * @return Bias corrected sample skewness, NaN for fewer than three values
+     */
+    public double getSkewness() {
+        if (n < 3) {
+            return Double.NaN;
+        }
+        double variance = m2 / (n - 1);
+        return ((double) n / ((n - 1.0) * (n - 2.0))) * m3 / (variance * Math.sqrt(variance));
+    }
+
+    /**
+     * @return Bias corrected sample excess kurtosis, NaN for fewer than four values
+     */
+    public double getKurtosis() {
+        if (n < 4) {
+            return Double.NaN;
+        }
+        double variance = m2 / (n - 1);
+        double n0 = n;
+        return (n0 * (n0 + 1.0) / ((n0 - 1.0) * (n0 - 2.0) * (n0 - 3.0))) * m4 / (variance * variance)
+                - 3.0 * (n0 - 1.0) * (n0 - 1.0) / ((n0 - 2.0) * (n0 - 3.0));
+    }
+
+    public double getSum() {
+        return mean * n;
     }
 
     public long getN() {
         return n;
     }
+
+    /**
+     * Pairwise update of the central moments.  The formulas are identities in the sample counts, so a negative count
+     * removes a sample that was merged in before.
+     */
+    private void combine(long nB, double meanB, double m2B, double m3B, double m4B) {
+        double nA = n;
+        double nb = nB;
+        double nX = nA + nb;
+        double delta = meanB - mean;
+        double delta2 = delta * delta;
+
+        double m4X = m4 + m4B
+                + delta2 * delta2 * nA * nb * (nA * nA - nA * nb + nb * nb) / (nX * nX * nX)
+                + 6.0 * delta2 * (nA * nA * m2B + nb * nb * m2) / (nX * nX)
+                + 4.0 * delta * (nA * m3B - nb * m3) / nX;
+        double m3X = m3 + m3B
+                + delta2 * delta * nA * nb * (nA - nb) / (nX * nX)
+                + 3.0 * delta * (nA * m2B - nb * m2) / nX;
+        double m2X = m2 + m2B + delta2 * nA * nb / nX;
+
+        n += nB;
+        mean += delta * nb / nX;
+        m2 = m2X;
+        m3 = m3X;
+        m4 = m4X;
+    }
 }
@@ -0,0 +1,380 @@
+package md2k.mCerebrum.cStress.library.datastream;
+
+import md2k.mCerebrum.cStress.library.structs.DataPointArray;
+import md2k.mCerebrum.cStress.library.structs.DataPointList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Reader for data stream files written by BinaryStreamWriter
+ * <p>
+ * Opening a file reads only the chunk headers to build a time index; range queries decode just the chunks whose
+ * time span overlaps the requested range.  A partially written trailing chunk is ignored.
+ * </p>
+ */
+public class BinaryStreamReader implements Closeable {
+
+    private final FileChannel channel;
+    private final int kind;
+
+    //Chunk index
+    private int chunks;
+    private long[] offsets;
+    private int[] lengths;
+    private int[] counts;
+    private long[] minTimes;
+    private long[] maxTimes;
+    private double[] minValues;
+    private double[] maxValues;
+
+    //Value column bit reading and XOR state
+    private ByteBuffer payload;
+    private long bitAccumulator;
+    private int bitCount;
+    private long previousBits;
+    private int previousLeading;
+    private int previousTrailing;
+    private boolean firstValue;
+
+
+    /**
+     * Open a data stream file and index its chunks
+     *
+     * @param filename File name and path
+     * @throws IOException If the file can not be read or is not a data stream file
+     */
+    public BinaryStreamReader(String filename) throws IOException {
+        channel = new RandomAccessFile(filename, "r").getChannel();
+
+        ByteBuffer header = ByteBuffer.allocate(BinaryStreamWriter.FILE_HEADER_SIZE);
+        readFully(header, 0);
+        if (header.remaining() < BinaryStreamWriter.FILE_HEADER_SIZE || header.getInt() != BinaryStreamWriter.FILE_MAGIC || header.getInt() != BinaryStreamWriter.VERSION) {
+            channel.close();
+            throw new IOException("Not a data stream file: " + filename);
+        }
+        kind = header.getInt();
+
+        offsets = new long[16];
+        lengths = new int[16];
+        counts = new int[16];
+        minTimes = new long[16];
+        maxTimes = new long[16];
+        minValues = new double[16];
+        maxValues = new double[16];
+
+        long size = channel.size();
+        long position = BinaryStreamWriter.FILE_HEADER_SIZE;
+        ByteBuffer chunkHeader = ByteBuffer.allocate(BinaryStreamWriter.CHUNK_HEADER_SIZE);
+        while (position + BinaryStreamWriter.CHUNK_HEADER_SIZE <= size) {
+            chunkHeader.clear();
+            readFully(chunkHeader, position);
+            if (chunkHeader.getInt() != BinaryStreamWriter.CHUNK_MAGIC) {
+                break;
+            }
+            int length = chunkHeader.getInt();
+            if (position + BinaryStreamWriter.CHUNK_HEADER_SIZE + length > size) {
+                break;
+            }
+            if (chunks == offsets.length) {
+                grow();
+            }
+            offsets[chunks] = position + BinaryStreamWriter.CHUNK_HEADER_SIZE;
+            lengths[chunks] = length;
+            counts[chunks] = chunkHeader.getInt();
+            minTimes[chunks] = chunkHeader.getLong();
+            maxTimes[chunks] = chunkHeader.getLong();
+            minValues[chunks] = chunkHeader.getDouble();
+            maxValues[chunks] = chunkHeader.getDouble();
+            chunks++;
+            position += BinaryStreamWriter.CHUNK_HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * @return BinaryStreamWriter.KIND_DATAPOINT or BinaryStreamWriter.KIND_DATAPOINTARRAY
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * @return Number of complete chunks in the file
+     */
+    public int getChunkCount() {
+        return chunks;
+    }
+
+    /**
+     * @param chunk Chunk index
+     * @return Number of entries in the chunk
+     */
+    public int getCount(int chunk) {
+        return counts[chunk];
+    }
+
+    /**
+     * @param chunk Chunk index
+     * @return Earliest timestamp in the chunk
+     */
+    public long getMinTimestamp(int chunk) {
+        return minTimes[chunk];
+    }
+
+    /**
+     * @param chunk Chunk index
+     * @return Latest timestamp in the chunk
+     */
+    public long getMaxTimestamp(int chunk) {
+        return maxTimes[chunk];
+    }
+
+    /**
+     * @param chunk Chunk index
+     * @return Smallest value in the chunk
+     */
+    public double getMinValue(int chunk) {
+        return minValues[chunk];
+    }
+
+    /**
+     * @param chunk Chunk index
+     * @return Largest value in the chunk
+     */
+    public double getMaxValue(int chunk) {
+        return maxValues[chunk];
+    }
+
+    /**
+     * Read all DataPoints with starttime &lt;= timestamp &lt; endtime, in file order
+     *
+     * @param starttime Start of the time range, inclusive
+     * @param endtime   End of the time range, exclusive
+     * @return DataPoints within the range
+     * @throws IOException On read failure
+     */
+    public DataPointList readDataPoints(long starttime, long endtime) throws IOException {
+        if (kind != BinaryStreamWriter.KIND_DATAPOINT) {
+            throw new IllegalStateException("Not a DataPoint stream file");
+        }
+        DataPointList result = new DataPointList();
+        long[] timestamps = new long[0];
+        for (int c = 0; c < chunks; c++) {
+            if (maxTimes[c] < starttime || minTimes[c] >= endtime) {
+                continue;
+            }
+            loadChunk(c);
+            if (timestamps.length < counts[c]) {
+                timestamps = new long[counts[c]];
+            }
+            readTimestamps(c, timestamps);
+            for (int i = 0; i < counts[c]; i++) {
+                double value = getValue();
+                if (timestamps[i] >= starttime && timestamps[i] < endtime) {
+                    result.add(timestamps[i], value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Read all DataPointArrays with starttime &lt;= timestamp &lt; endtime, in file order
+     *
+     * @param starttime Start of the time range, inclusive
+     * @param endtime   End of the time range, exclusive
+     * @return DataPointArrays within the range
+     * @throws IOException On read failure
+     */
+    public List<DataPointArray> readDataPointArrays(long starttime, long endtime) throws IOException {
+        if (kind != BinaryStreamWriter.KIND_DATAPOINTARRAY) {
+            throw new IllegalStateException("Not a DataPointArray stream file");
+        }
+        List<DataPointArray> result = new ArrayList<DataPointArray>();
+        long[] timestamps = new long[0];
+        int[] sizes = new int[0];
+        for (int c = 0; c < chunks; c++) {
+            if (maxTimes[c] < starttime || minTimes[c] >= endtime) {
+                continue;
+            }
+            loadChunk(c);
+            if (timestamps.length < counts[c]) {
+                timestamps = new long[counts[c]];
+                sizes = new int[counts[c]];
+            }
+            readTimestamps(c, timestamps);
+            for (int i = 0; i < counts[c]; i++) {
+                sizes[i] = (int) getVarLong();
+            }
+            for (int i = 0; i < counts[c]; i++) {
+                List<Double> values = new ArrayList<Double>(sizes[i]);
+                for (int j = 0; j < sizes[i]; j++) {
+                    values.add(getValue());
+                }
+                if (timestamps[i] >= starttime && timestamps[i] < endtime) {
+                    result.add(new DataPointArray(timestamps[i], values));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Close the underlying file channel
+     *
+     * @throws IOException On failure
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    private void grow() {
+        int size = offsets.length * 2;
+        long[] o = new long[size];
+        int[] l = new int[size];
+        int[] n = new int[size];
+        long[] t0 = new long[size];
+        long[] t1 = new long[size];
+        double[] v0 = new double[size];
+        double[] v1 = new double[size];
+        System.arraycopy(offsets, 0, o, 0, chunks);
+        System.arraycopy(lengths, 0, l, 0, chunks);
+        System.arraycopy(counts, 0, n, 0, chunks);
+        System.arraycopy(minTimes, 0, t0, 0, chunks);
+        System.arraycopy(maxTimes, 0, t1, 0, chunks);
+        System.arraycopy(minValues, 0, v0, 0, chunks);
+        System.arraycopy(maxValues, 0, v1, 0, chunks);
+        offsets = o;
+        lengths = l;
+        counts = n;
+        minTimes = t0;
+        maxTimes = t1;
+        minValues = v0;
+        maxValues = v1;
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+        target.flip();
+    }
+
+    private void loadChunk(int chunk) throws IOException {
+        if (payload == null || payload.capacity() < lengths[chunk]) {
+            payload = ByteBuffer.allocate(Math.max(lengths[chunk], 4096));
+        }
+        payload.clear();
+        payload.limit(lengths[chunk]);
+        readFully(payload, offsets[chunk]);
+        bitAccumulator = 0;
+        bitCount = 0;
+        previousLeading = -1;
+        previousTrailing = 0;
+        firstValue = true;
+    }
+
+    private void readTimestamps(int chunk, long[] timestamps) {
+        long previous = minTimes[chunk];
+        for (int i = 0; i < counts[chunk]; i++) {
+            long zigzag = getVarLong();
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            timestamps[i] = previous;
+        }
+    }
+
+    private long getVarLong() {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = payload.get();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    /**
+     * Decode the next value of the value column, see BinaryStreamWriter
+     */
+    private double getValue() {
+        long bits;
+        if (firstValue) {
+            bits = getBits(64);
+            firstValue = false;
+        } else if (getBits(1) == 0) {
+            bits = previousBits;
+        } else if (getBits(1) == 0) {
+            long xor = getBits(64 - previousLeading - previousTrailing) << previousTrailing;
+            bits = previousBits ^ xor;
+        } else {
+            int leading = (int) getBits(5);
+            int significant = (int) getBits(6);
+            if (significant == 0) {
+                significant = 64;
+            }
+            int trailing = 64 - leading - significant;
+            long xor = getBits(significant) << trailing;
+            bits = previousBits ^ xor;
+            previousLeading = leading;
+            previousTrailing = trailing;
+        }
+        previousBits = bits;
+        return Double.longBitsToDouble(bits);
+    }
+
+    private long getBits(int bits) {
+        long result = 0;
+        while (bits > 0) {
+            if (bitCount == 0) {
+                bitAccumulator = payload.get() & 0xFF;
+                bitCount = 8;
+            }
+            int take = Math.min(bits, bitCount);
+            long chunk = (bitAccumulator >>> (bitCount - take)) & ((1L << take) - 1);
+            result = (result << take) | chunk;
+            bitCount -= take;
+            bits -= take;
+        }
+        return result;
+    }
+}
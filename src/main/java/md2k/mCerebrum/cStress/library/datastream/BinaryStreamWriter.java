@@ -0,0 +1,323 @@
+package md2k.mCerebrum.cStress.library.datastream;
+
+import md2k.mCerebrum.cStress.library.structs.DataPointArray;
+import md2k.mCerebrum.cStress.library.structs.DataPointList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Append-only writer for the binary, chunked, columnar data stream format
+ * <p>
+ * A file starts with a header (magic, version, stream kind) followed by one chunk per persisted window.  Each chunk
+ * has a fixed size header holding the payload length, the number of entries, the minimum and maximum timestamp and
+ * the minimum and maximum value, which lets a reader index a file without decoding it.  The payload stores the
+ * timestamp column as zigzag varint deltas, for array streams the array lengths as varints, and the value column XOR
+ * compressed against the previous value (Gorilla encoding).
+ * </p>
+ * <p>
+ * The underlying FileChannel stays open until close() so that a stream is appended to without reopening its file.
+ * </p>
+ */
+public class BinaryStreamWriter implements Closeable {
+
+    public static final String EXTENSION = ".cstb";
+    public static final int FILE_MAGIC = 0x43535442;
+    public static final int CHUNK_MAGIC = 0x43484e4b;
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER_SIZE = 12;
+    public static final int CHUNK_HEADER_SIZE = 44;
+
+    public static final int KIND_DATAPOINT = 0;
+    public static final int KIND_DATAPOINTARRAY = 1;
+
+    private final FileChannel channel;
+    private final int kind;
+    private ByteBuffer buffer;
+
+    //Value column bit packing and XOR state
+    private long bitAccumulator;
+    private int bitCount;
+    private long previousBits;
+    private int previousLeading;
+    private int previousTrailing;
+    private boolean firstValue;
+
+
+    /**
+     * Open a stream file for appending, writing the file header if the file is new
+     *
+     * @param filename File name and path
+     * @param kind     KIND_DATAPOINT or KIND_DATAPOINTARRAY
+     * @throws IOException If the file can not be opened or holds a different kind of stream
+     */
+    public BinaryStreamWriter(String filename, int kind) throws IOException {
+        this.kind = kind;
+        this.buffer = ByteBuffer.allocate(4096);
+        this.channel = new RandomAccessFile(filename, "rw").getChannel();
+
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(FILE_MAGIC).putInt(VERSION).putInt(kind);
+            header.flip();
+            writeFully(header);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < FILE_HEADER_SIZE || header.getInt() != FILE_MAGIC || header.getInt() != VERSION || header.getInt() != kind) {
+                channel.close();
+                throw new IOException("Not a compatible data stream file: " + filename);
+            }
+            channel.position(channel.size());
+        }
+    }
+
+    /**
+     * @return KIND_DATAPOINT or KIND_DATAPOINTARRAY
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * Append a chunk of DataPoints
+     *
+     * @param data DataPoints to write, nothing is written if empty
+     * @throws IOException On write failure
+     */
+    public void write(DataPointList data) throws IOException {
+        write(data, 0);
+    }
+
+    /**
+     * Append a chunk of DataPoints starting at an offset into the list
+     *
+     * @param data  DataPoints to write
+     * @param start Index of the first DataPoint to write, nothing is written if it is at or past the end
+     * @throws IOException On write failure
+     */
+    public void write(DataPointList data, int start) throws IOException {
+        int count = data.size() - start;
+        if (count <= 0) {
+            return;
+        }
+        if (kind != KIND_DATAPOINT) {
+            throw new IllegalStateException("DataPoints written to a DataPointArray stream file");
+        }
+
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        double minValue = Double.POSITIVE_INFINITY;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        for (int i = start; i < data.size(); i++) {
+            minTime = Math.min(minTime, data.getTimestamp(i));
+            maxTime = Math.max(maxTime, data.getTimestamp(i));
+            minValue = Math.min(minValue, data.getValue(i));
+            maxValue = Math.max(maxValue, data.getValue(i));
+        }
+
+        beginChunk();
+        long previous = minTime;
+        for (int i = start; i < data.size(); i++) {
+            putVarLong(zigzag(data.getTimestamp(i) - previous));
+            previous = data.getTimestamp(i);
+        }
+        for (int i = start; i < data.size(); i++) {
+            putValue(data.getValue(i));
+        }
+        endChunk(count, minTime, maxTime, minValue, maxValue);
+    }
+
+    /**
+     * Append a chunk of DataPointArrays
+     *
+     * @param data DataPointArrays to write, nothing is written if empty
+     * @throws IOException On write failure
+     */
+    public void write(List<DataPointArray> data) throws IOException {
+        int count = data.size();
+        if (count == 0) {
+            return;
+        }
+        if (kind != KIND_DATAPOINTARRAY) {
+            throw new IllegalStateException("DataPointArrays written to a DataPoint stream file");
+        }
+
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        double minValue = Double.POSITIVE_INFINITY;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        for (DataPointArray dpa : data) {
+            minTime = Math.min(minTime, dpa.timestamp);
+            maxTime = Math.max(maxTime, dpa.timestamp);
+            for (Double d : dpa.value) {
+                minValue = Math.min(minValue, d);
+                maxValue = Math.max(maxValue, d);
+            }
+        }
+
+        beginChunk();
+        long previous = minTime;
+        for (DataPointArray dpa : data) {
+            putVarLong(zigzag(dpa.timestamp - previous));
+            previous = dpa.timestamp;
+        }
+        for (DataPointArray dpa : data) {
+            putVarLong(dpa.value.size());
+        }
+        for (DataPointArray dpa : data) {
+            for (Double d : dpa.value) {
+                putValue(d);
+            }
+        }
+        endChunk(count, minTime, maxTime, minValue, maxValue);
+    }
+
+    /**
+     * Close the underlying file channel
+     *
+     * @throws IOException On failure
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    private void beginChunk() {
+        buffer.clear();
+        buffer.position(CHUNK_HEADER_SIZE);
+        bitAccumulator = 0;
+        bitCount = 0;
+        previousLeading = -1;
+        previousTrailing = 0;
+        firstValue = true;
+    }
+
+    private void endChunk(int count, long minTime, long maxTime, double minValue, double maxValue) throws IOException {
+        if (bitCount > 0) {
+            ensureCapacity(1);
+            buffer.put((byte) (bitAccumulator << (8 - bitCount)));
+        }
+        int end = buffer.position();
+        buffer.position(0);
+        buffer.putInt(CHUNK_MAGIC).putInt(end - CHUNK_HEADER_SIZE).putInt(count);
+        buffer.putLong(minTime).putLong(maxTime).putDouble(minValue).putDouble(maxValue);
+        buffer.position(end);
+        buffer.flip();
+        writeFully(buffer);
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private void putVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Append a value to the value column.  The first value of a chunk is stored raw, following values as the XOR with
+     * their predecessor: a 0 bit if identical, 10 and the meaningful bits if they fit the previous leading/trailing
+     * zero window, otherwise 11, 5 bits of leading zeros, 6 bits of length and the meaningful bits.
+     */
+    private void putValue(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        if (firstValue) {
+            putBits(bits, 64);
+            firstValue = false;
+        } else {
+            long xor = bits ^ previousBits;
+            if (xor == 0) {
+                putBits(0, 1);
+            } else {
+                int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                int trailing = Long.numberOfTrailingZeros(xor);
+                if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                    putBits(2, 2);
+                    putBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                } else {
+                    int significant = 64 - leading - trailing;
+                    putBits(3, 2);
+                    putBits(leading, 5);
+                    putBits(significant & 63, 6);
+                    putBits(xor >>> trailing, significant);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+        }
+        previousBits = bits;
+    }
+
+    /**
+     * Append the low order bits of a value to the value column, most significant bit first
+     */
+    private void putBits(long value, int bits) {
+        while (bits > 0) {
+            int take = Math.min(bits, 8 - bitCount);
+            int chunk = (int) (value >>> (bits - take)) & ((1 << take) - 1);
+            bitAccumulator = (bitAccumulator << take) | chunk;
+            bitCount += take;
+            bits -= take;
+            if (bitCount == 8) {
+                ensureCapacity(1);
+                buffer.put((byte) bitAccumulator);
+                bitAccumulator = 0;
+                bitCount = 0;
+            }
+        }
+    }
+}
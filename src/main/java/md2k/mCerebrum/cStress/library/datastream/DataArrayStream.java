@@ -2,13 +2,14 @@ package md2k.mCerebrum.cStress.library.datastream;
 
 
 import md2k.mCerebrum.cStress.library.structs.DataPointArray;
+import md2k.mCerebrum.cStress.library.structs.DataPointArrayRing;
 
 import java.io.BufferedWriter;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -45,7 +46,7 @@ import java.util.List;
 public class DataArrayStream extends DataStream {
 
     public List<DataPointArray> data;
-    private List<DataPointArray> history;
+    private DataPointArrayRing history;
 
     /**
      * Constructor
@@ -54,7 +55,7 @@ public class DataArrayStream extends DataStream {
      */
     public DataArrayStream(String name) {
         data = new ArrayList<DataPointArray>();
-        history = new ArrayList<DataPointArray>();
+        history = new DataPointArrayRing();
         metadata = new HashMap<String, Object>();
         metadata.put("name", name);
         preserve = false;
@@ -68,7 +69,7 @@ public class DataArrayStream extends DataStream {
      */
     public DataArrayStream(DataArrayStream other) {
         this.data = new ArrayList<DataPointArray>(other.data);
-        this.history = new ArrayList<DataPointArray>(other.history);
+        this.history = new DataPointArrayRing(other.history);
         this.metadata = other.metadata;
         this.preserve = other.preserve;
     }
@@ -85,7 +86,20 @@ public class DataArrayStream extends DataStream {
 
 
     /**
-     * Retrieve historical data including the current window of data
+     * Set the retention policy of the stream history
+     *
+     * @param maxAge   Retention horizon in milliseconds
+     * @param maxCount Maximum number of DataPointArrays to retain
+     */
+    @Override
+    public void setHistoryRetention(long maxAge, int maxCount) {
+        history.setRetention(maxAge, maxCount);
+    }
+
+
+    /**
+     * Retrieve historical data including the current window of data.  History is bounded by the retention policy set
+     * with setHistoryRetention.
      *
      * @param starttime The time from which to get data to the present
      * @return List of data that is within the time window
@@ -93,13 +107,13 @@ public class DataArrayStream extends DataStream {
     public List<DataPointArray> getHistoricalValues(long starttime) {
         List<DataPointArray> result = new ArrayList<DataPointArray>();
 
-        for (DataPointArray dpa : history) {
-            if (dpa.timestamp > starttime) {
-                result.add(dpa);
+        int first = history.isOrdered() ? history.firstIndexAfter(starttime) : 0;
+        for (int i = first; i < history.size(); i++) {
+            if (history.getTimestamp(i) > starttime) {
+                result.add(history.get(i));
             }
         }
 
-        Collections.reverse(result);
         return result;
     }
 
@@ -125,6 +139,22 @@ public class DataArrayStream extends DataStream {
         }
     }
 
+    /**
+     * Append the current window of data to a binary data stream file
+     *
+     * @param writer Open writer for this stream's file
+     * @throws IOException On write failure
+     */
+    @Override
+    public void persist(BinaryStreamWriter writer) throws IOException {
+        writer.write(data);
+    }
+
+    @Override
+    public int getPersistenceKind() {
+        return BinaryStreamWriter.KIND_DATAPOINTARRAY;
+    }
+
     /**
      * Reset the data stream array for the next interval
      */
@@ -151,7 +181,7 @@ public class DataArrayStream extends DataStream {
      */
     public void add(DataPointArray dp) {
         data.add(new DataPointArray(dp));
-        history.add(0, new DataPointArray(dp)); //Add in reverse to make looking through the array easier
+        history.add(new DataPointArray(dp));
 
         if (dataPointInterface != null) {
             dataPointInterface.dataPointArrayHandler((String) metadata.get("name"), dp);
@@ -4,13 +4,15 @@ package md2k.mCerebrum.cStress.library.datastream;
 import md2k.mCerebrum.cStress.library.DescriptiveStatistics;
 import md2k.mCerebrum.cStress.library.SummaryStatistics;
 import md2k.mCerebrum.cStress.library.structs.DataPoint;
+import md2k.mCerebrum.cStress.library.structs.DataPointList;
+import md2k.mCerebrum.cStress.library.structs.DataPointRing;
 
 import java.io.BufferedWriter;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -46,10 +48,18 @@ import java.util.List;
  */
 public class DataPointStream extends DataStream {
 
-    public List<DataPoint> data;
-    public SummaryStatistics stats;
-    public DescriptiveStatistics descriptiveStats;
-    private List<DataPoint> history;
+    public DataPointList data;
+    private static final int DEFAULT_PENDING_CAPACITY = 16;
+
+    private SummaryStatistics stats;
+    private DescriptiveStatistics descriptiveStats;
+    private DataPointRing history;
+    private boolean statisticsEnabled;
+    private int carried;
+
+    private double[] pending;
+    private int pendingStart;
+    private int pendingSize;
 
 
     /**
@@ -58,13 +68,15 @@ public class DataPointStream extends DataStream {
      * @param name Unique name of the DataPoint object
      */
     public DataPointStream(String name) {
-        data = new ArrayList<DataPoint>();
-        history = new ArrayList<DataPoint>();
+        data = new DataPointList();
+        history = new DataPointRing();
         metadata = new HashMap<String, Object>();
         metadata.put("name", name);
         preserve = false;
+        statisticsEnabled = true;
         stats = new SummaryStatistics();
         descriptiveStats = new DescriptiveStatistics();
+        pending = new double[DEFAULT_PENDING_CAPACITY];
     }
 
     public DataPointStream(String name, List<DataPoint> dataPoints) {
@@ -80,12 +92,15 @@ public class DataPointStream extends DataStream {
      * @param other DataPointStream object to copy
      */
     public DataPointStream(DataPointStream other) {
-        this.data = new ArrayList<DataPoint>(other.data);
-        this.history = new ArrayList<DataPoint>(other.history);
+        this.data = new DataPointList(other.data);
+        this.history = new DataPointRing(other.history);
         this.metadata = other.metadata;
+        other.fold();
         this.stats = other.stats;
         this.descriptiveStats = other.descriptiveStats;
+        this.pending = new double[DEFAULT_PENDING_CAPACITY];
         this.preserve = other.preserve;
+        this.statisticsEnabled = other.statisticsEnabled;
     }
 
     /**
@@ -97,6 +112,37 @@ public class DataPointStream extends DataStream {
         preserve = state;
     }
 
+    /**
+     * Enable or disable maintenance of stats and descriptiveStats.  Streams whose mean, standard deviation, or
+     * percentiles are never queried can turn this off to make add a plain append.
+     *
+     * @param enabled False to stop updating statistics on add
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        statisticsEnabled = enabled;
+    }
+
+    /**
+     * Set the retention policy of the stream history
+     *
+     * @param maxAge   Retention horizon in milliseconds
+     * @param maxCount Maximum number of DataPoints to retain
+     */
+    @Override
+    public void setHistoryRetention(long maxAge, int maxCount) {
+        history.setRetention(maxAge, maxCount);
+    }
+
+    /**
+     * Set the number of most recent values used for percentile computation
+     *
+     * @param windowSize Number of values
+     */
+    public synchronized void setPercentileWindow(int windowSize) {
+        fold();
+        descriptiveStats.setWindowSize(windowSize);
+    }
+
     /**
      * Persist the data stream to the local file system
      *
@@ -106,8 +152,8 @@ public class DataPointStream extends DataStream {
     public void persist(String filename) {
         try {
             Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename, true), "utf-8"));
-            for (DataPoint dp : this.data) {
-                writer.write(dp.timestamp + ", " + dp.value + "\n");
+            for (int i = carried; i < data.size(); i++) {
+                writer.write(data.getTimestamp(i) + ", " + data.getValue(i) + "\n");
             }
             writer.close();
         } catch (Exception e) {
@@ -115,18 +161,36 @@ public class DataPointStream extends DataStream {
         }
     }
 
+    /**
+     * Append the current window of data to a binary data stream file
+     *
+     * @param writer Open writer for this stream's file
+     * @throws IOException On write failure
+     */
+    @Override
+    public void persist(BinaryStreamWriter writer) throws IOException {
+        writer.write(data, carried);
+    }
+
+    @Override
+    public int getPersistenceKind() {
+        return BinaryStreamWriter.KIND_DATAPOINT;
+    }
+
     /**
      * Reset the data stream array for the next interval.  Preserve stats and descriptiveStats if preserve is set
      */
     @Override
     public void reset() {
+        carried = 0;
         if (!preserve) {
             data.clear();
         } else {
             if (data.size() > 0) {
-                DataPoint temp = data.get(data.size() - 1);
+                long timestamp = data.getTimestamp(data.size() - 1);
+                double value = data.getValue(data.size() - 1);
                 data.clear();
-                data.add(temp);
+                data.add(timestamp, value);
             } else {
                 data.clear();
             }
@@ -135,7 +199,53 @@ public class DataPointStream extends DataStream {
 
 
     /**
-     * Retrieve historical data including the current window of data
+     * Reset the data stream for the next hop of a sliding window.  DataPoints at or after starttime stay in the window
+     * and are not persisted a second time.
+     *
+     * @param starttime Start time of the next window
+     */
+    public void retain(long starttime) {
+        int first = 0;
+        if (data.isOrdered()) {
+            first = data.firstIndexAtOrAfter(starttime);
+        } else {
+            while (first < data.size() && data.getTimestamp(first) < starttime) {
+                first++;
+            }
+        }
+        data.subList(0, first).clear();
+        carried = data.size();
+    }
+
+
+    /**
+     * Range query over the current window of data
+     *
+     * @param starttime Exclusive start of the range
+     * @param endtime   Exclusive end of the range
+     * @return DataPoints with starttime &lt; timestamp &lt; endtime, in window order
+     */
+    public DataPointList getRange(long starttime, long endtime) {
+        int first = 0;
+        int last = data.size();
+        if (data.isOrdered()) {
+            first = data.firstIndexAfter(starttime);
+            last = Math.max(first, data.firstIndexAtOrAfter(endtime));
+        }
+        DataPointList result = new DataPointList(last - first);
+        for (int i = first; i < last; i++) {
+            long timestamp = data.getTimestamp(i);
+            if (timestamp > starttime && timestamp < endtime) {
+                result.add(timestamp, data.getValue(i));
+            }
+        }
+        return result;
+    }
+
+
+    /**
+     * Retrieve historical data including the current window of data.  History is bounded by the retention policy set
+     * with setHistoryRetention.
      *
      * @param starttime The time from which to get data to the present
      * @return List of data that is within the time window
@@ -143,43 +253,57 @@ public class DataPointStream extends DataStream {
     public List<DataPoint> getHistoricalValues(long starttime) {
         List<DataPoint> result = new ArrayList<DataPoint>();
 
-        for (DataPoint dpa : history) {
-            if (dpa.timestamp > starttime) {
-                result.add(dpa);
+        int first = history.isOrdered() ? history.firstIndexAfter(starttime) : 0;
+        for (int i = history.size() - 1; i >= first; i--) {
+            if (history.getTimestamp(i) > starttime) {
+                result.add(history.get(i));
             }
         }
 
-        Collections.reverse(result);
         return result;
     }
 
     /**
-     * Main method to add DataPoint to the data stream.  Updates stats and descriptiveStats and checks for invalid data
+     * Main method to add DataPoint to the data stream.  Queues the value for the statistics and checks for invalid data
      * values.
      *
      * @param dp New DataPoint to add to the data stream
      */
     public void add(DataPoint dp) {
-        if (!Double.isNaN(dp.value) && !Double.isInfinite(dp.value)) {
-            data.add(new DataPoint(dp));
-            history.add(new DataPoint(dp));
-            stats.addValue(dp.value);
-            descriptiveStats.addValue(dp.value);
+        add(dp.timestamp, dp.value);
+    }
+
+    /**
+     * Allocation free version of add(DataPoint).  The value is appended to the primitive window and history storage,
+     * a DataPoint is only created when a callback is registered for this stream.
+     *
+     * @param timestamp Time in milliseconds since Jan 1st, 1970
+     * @param value     Floating point value
+     */
+    public void add(long timestamp, double value) {
+        if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+            data.add(timestamp, value);
+            history.add(timestamp, value);
+            if (statisticsEnabled) {
+                defer(value);
+            }
 
             if (dataPointInterface != null) {
-                dataPointInterface.dataPointHandler((String) metadata.get("name"), new DataPoint(dp));
+                dataPointInterface.dataPointHandler((String) metadata.get("name"), new DataPoint(timestamp, value));
             }
         }
     }
 
 
     /**
-     * Percentile computation based on a buffer of datapoints
+     * Exact percentile computation over a sliding window of the most recent datapoints, including those from previous
+     * windows (see setPercentileWindow)
      *
      * @param i The percentile to retrieve
      * @return Computed percentile
      */
-    public double getPercentile(int i) {
+    public synchronized double getPercentile(int i) {
+        fold();
         return descriptiveStats.getPercentile(i);
     }
 
@@ -188,7 +312,8 @@ public class DataPointStream extends DataStream {
      *
      * @return Mean of all DataPoints up to the current time
      */
-    public double getMean() {
+    public synchronized double getMean() {
+        fold();
         return stats.getMean();
     }
 
@@ -197,20 +322,26 @@ public class DataPointStream extends DataStream {
      *
      * @return Standard deviation of all DataPoints up to the current time
      */
-    public double getStandardDeviation() {
+    public synchronized double getStandardDeviation() {
+        fold();
         return stats.getStandardDeviation();
     }
 
+    /**
+     * @return Number of DataPoints included in the mean and standard deviation
+     */
+    public synchronized long getN() {
+        fold();
+        return stats.getN();
+    }
+
     /**
      * Retrieves all values in the current data window
      *
      * @return Array of double values
      */
     public double[] getValues() {
-        double result[] = new double[data.size()];
-        for (int i = 0; i < data.size(); i++)
-            result[i] = data.get(i).value;
-        return result;
+        return data.getValues();
     }
 
     /**
@@ -219,9 +350,60 @@ public class DataPointStream extends DataStream {
      * @return Array of double values normalized based on the mean and standard deviation
      */
     public double[] getNormalizedValues() {
+        double mean = getMean();
+        double standardDeviation = getStandardDeviation();
         double result[] = new double[data.size()];
         for (int i = 0; i < data.size(); i++)
-            result[i] = (data.get(i).value - stats.getMean()) / stats.getStandardDeviation();
+            result[i] = (data.getValue(i) - mean) / standardDeviation;
         return result;
     }
+
+    /**
+     * Queue a value for the statistics.  Values are only folded into stats and descriptiveStats when one of them is
+     * queried, so streams whose statistics are never read pay for a primitive array store.  The queue is bounded by
+     * the percentile window: a value that can no longer be part of that window is folded into stats right away.
+     *
+     * @param value Value to queue
+     */
+    private void defer(double value) {
+        if (pendingSize == pending.length) {
+            if (pendingSize < descriptiveStats.getWindowSize()) {
+                double[] grown = new double[(int) Math.min((long) pendingSize * 2, descriptiveStats.getWindowSize())];
+                for (int i = 0; i < pendingSize; i++) {
+                    grown[i] = pending[(pendingStart + i) % pending.length];
+                }
+                pending = grown;
+                pendingStart = 0;
+            } else {
+                stats.addValue(pending[pendingStart]);
+                pendingStart = (pendingStart + 1) % pending.length;
+                pendingSize--;
+            }
+        }
+        pending[(pendingStart + pendingSize) % pending.length] = value;
+        pendingSize++;
+    }
+
+    /**
+     * Fold queued values into stats and descriptiveStats in insertion order
+     */
+    private synchronized void fold() {
+        if (pendingSize == 0) {
+            return;
+        }
+        int windowSize = descriptiveStats.getWindowSize();
+        int firstInWindow = pendingSize - windowSize;
+        if (firstInWindow >= 0) {
+            descriptiveStats.clear();
+        }
+        for (int i = 0; i < pendingSize; i++) {
+            double value = pending[(pendingStart + i) % pending.length];
+            stats.addValue(value);
+            if (i >= firstInWindow) {
+                descriptiveStats.addValue(value);
+            }
+        }
+        pendingStart = 0;
+        pendingSize = 0;
+    }
 }
@@ -2,6 +2,7 @@ package md2k.mCerebrum.cStress.library.datastream;
 
 import md2k.mCerebrum.cStress.DataPointInterface;
 
+import java.io.IOException;
 import java.util.HashMap;
 
 /*
@@ -46,4 +47,26 @@ public abstract class DataStream implements DataStreamInterface {
     public String getName() {
         return (String) metadata.get("name");
     }
+
+    /**
+     * Set the retention policy of the stream history.  Entries older than maxAge milliseconds relative to the newest
+     * entry, or beyond the newest maxCount entries, are discarded.
+     *
+     * @param maxAge   Retention horizon in milliseconds
+     * @param maxCount Maximum number of entries to retain
+     */
+    public abstract void setHistoryRetention(long maxAge, int maxCount);
+
+    /**
+     * Append the current window of data to a binary data stream file
+     *
+     * @param writer Open writer for this stream's file
+     * @throws IOException On write failure
+     */
+    public abstract void persist(BinaryStreamWriter writer) throws IOException;
+
+    /**
+     * @return Kind of binary data stream file this stream is persisted to, see BinaryStreamWriter
+     */
+    public abstract int getPersistenceKind();
 }
@@ -1,7 +1,11 @@
 package md2k.mCerebrum.cStress.library.datastream;
 
 import md2k.mCerebrum.cStress.DataPointInterface;
+import md2k.mCerebrum.cStress.library.structs.TimeIndexedRing;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.TreeMap;
 
 /*
@@ -37,56 +41,116 @@ import java.util.TreeMap;
 public class DataStreams {
 
     private TreeMap<String, DataStream> datastreams;
+    private volatile DataStream[] streams;
     private TreeMap<String, DataPointInterface> callbackRegistration;
+    private long historyMaxAge;
+    private int historyMaxCount;
+    private HashMap<String, BinaryStreamWriter> writers;
 
     /**
      * Constructor
      */
     public DataStreams() {
         datastreams = new TreeMap<String, DataStream>();
+        streams = new DataStream[Math.max(64, StreamHandle.count())];
         callbackRegistration = new TreeMap<String, DataPointInterface>();
+        historyMaxAge = TimeIndexedRing.DEFAULT_MAX_AGE;
+        historyMaxCount = TimeIndexedRing.DEFAULT_MAX_COUNT;
+        writers = new HashMap<String, BinaryStreamWriter>();
     }
 
 
+    /**
+     * Set the history retention policy for all current and future data streams
+     *
+     * @param maxAge   Retention horizon in milliseconds
+     * @param maxCount Maximum number of entries to retain per stream
+     */
+    public synchronized void setHistoryRetention(long maxAge, int maxCount) {
+        historyMaxAge = maxAge;
+        historyMaxCount = maxCount;
+        for (String key : datastreams.keySet()) {
+            datastreams.get(key).setHistoryRetention(maxAge, maxCount);
+        }
+    }
+
+
+    /**
+     * Retrieve a data stream by handle
+     *
+     * Will create the data stream if it does not exist.  Lookups of existing streams are a lock-free array access and
+     * safe to call from concurrent processing stages.
+     *
+     * @param handle Handle of the stream to retrieve
+     * @param <T>    DataPointStream or DataArrayStream
+     * @return Data stream
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends DataStream> T get(StreamHandle<T> handle) {
+        DataStream[] current = streams;
+        if (handle.index < current.length) {
+            DataStream ds = current[handle.index];
+            if (ds != null) {
+                return (T) ds;
+            }
+        }
+        return (T) create(handle);
+    }
+
     /**
      * Retrieve a DataPointStream from the DataStreams object
      *
-     * Will create the DataPointStream if it does not exist
+     * Will create the DataPointStream if it does not exist.  Safe to call from concurrent processing stages.
      *
      * @param stream String identifier of the stream to retrieve
      * @return DataPointStream
      */
     public DataPointStream getDataPointStream(String stream) {
-        if (!datastreams.containsKey(stream)) {
-            datastreams.put(stream, new DataPointStream(stream));
-            if (callbackRegistration.containsKey(stream)) {
-                datastreams.get(stream).dataPointInterface = callbackRegistration.get(stream);
-            }
-        }
-        return (DataPointStream) datastreams.get(stream);
+        return get(StreamHandle.dataPoint(stream));
     }
 
     /**
      * Retrieve a DataArrayStream from the DataStreams object
      *
-     * Will create the DataArrayStream if it does not exist
+     * Will create the DataArrayStream if it does not exist.  Safe to call from concurrent processing stages.
      *
      * @param stream String identifier of the stream to retrieve
      * @return DataArrayStream
      */
     public DataArrayStream getDataArrayStream(String stream) {
-        if (!datastreams.containsKey(stream)) {
-            datastreams.put(stream, new DataArrayStream(stream));
-            if (callbackRegistration.containsKey(stream)) {
-                datastreams.get(stream).dataPointInterface = callbackRegistration.get(stream);
-            }
+        return get(StreamHandle.dataArray(stream));
+    }
+
+    /**
+     * Create a data stream and publish it in a copy of the stream array
+     */
+    private synchronized DataStream create(StreamHandle<?> handle) {
+        DataStream[] current = streams;
+        if (handle.index < current.length && current[handle.index] != null) {
+            return current[handle.index];
+        }
+
+        DataStream ds;
+        if (handle.type == DataArrayStream.class) {
+            ds = new DataArrayStream(handle.name);
+        } else {
+            ds = new DataPointStream(handle.name);
+        }
+        ds.setHistoryRetention(historyMaxAge, historyMaxCount);
+        if (callbackRegistration.containsKey(handle.name)) {
+            ds.dataPointInterface = callbackRegistration.get(handle.name);
         }
-        return (DataArrayStream) datastreams.get(stream);
+        datastreams.put(handle.name, ds);
+
+        DataStream[] updated = Arrays.copyOf(current, Math.max(current.length, StreamHandle.count()));
+        updated[handle.index] = ds;
+        streams = updated;
+        return ds;
     }
 
 
     /**
-     * Iterate through all data streams and persist them to disk
+     * Iterate through all data streams and append them to text files, one "timestamp, value" line per entry
      *
      * @param filebase Based directory where data streams are persisted
      */
@@ -96,6 +160,43 @@ public class DataStreams {
         }
     }
 
+    /**
+     * Iterate through all data streams and append them to their binary data stream files, see BinaryStreamWriter.
+     * Each file is opened once and kept open until close() is called.
+     *
+     * @param filebase Based directory where data streams are persisted
+     */
+    public void persistBinary(String filebase) {
+        for (String key : datastreams.keySet()) {
+            DataStream ds = datastreams.get(key);
+            String filename = filebase + ds.getName() + BinaryStreamWriter.EXTENSION;
+            try {
+                BinaryStreamWriter writer = writers.get(filename);
+                if (writer == null) {
+                    writer = new BinaryStreamWriter(filename, ds.getPersistenceKind());
+                    writers.put(filename, writer);
+                }
+                ds.persist(writer);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Close all binary data stream files opened by persistBinary
+     */
+    public void close() {
+        for (BinaryStreamWriter writer : writers.values()) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        writers.clear();
+    }
+
     /**
      * Reset all data streams
      */
@@ -105,12 +206,40 @@ public class DataStreams {
         }
     }
 
+    /**
+     * Reset all data streams for the next hop of a sliding window.  The retained streams keep the DataPoints at or
+     * after starttime, see DataPointStream.retain.
+     *
+     * @param starttime Start time of the next window
+     * @param retained  Streams whose overlapping DataPoints are reused by the next window
+     */
+    @SafeVarargs
+    public final void reset(long starttime, StreamHandle<DataPointStream>... retained) {
+        DataStream[] current = streams;
+        boolean[] keep = new boolean[current.length];
+        for (StreamHandle<DataPointStream> handle : retained) {
+            if (handle.index < keep.length) {
+                keep[handle.index] = true;
+            }
+        }
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == null) {
+                continue;
+            }
+            if (keep[i]) {
+                ((DataPointStream) current[i]).retain(starttime);
+            } else {
+                current[i].reset();
+            }
+        }
+    }
+
     /**
      * Registration method for the data point interface
      * @param key String designating which data stream to reference
      * @param dki DataPointInterface reference
      */
-    public void registerDataPointInterface(String key, DataPointInterface dki) {
+    public synchronized void registerDataPointInterface(String key, DataPointInterface dki) {
         callbackRegistration.put(key, dki);
         if (datastreams.containsKey(key)) {
             datastreams.get(key).dataPointInterface = callbackRegistration.get(key);
@@ -122,7 +251,7 @@ public class DataStreams {
      * @param key String designating which data stream to reference
      * @param dki DataPointInterface reference
      */
-    public void registerDataArrayInterface(String key, DataPointInterface dki) {
+    public synchronized void registerDataArrayInterface(String key, DataPointInterface dki) {
         callbackRegistration.put(key, dki);
         if (datastreams.containsKey(key)) {
             datastreams.get(key).dataPointInterface = callbackRegistration.get(key);
@@ -0,0 +1,107 @@
+package md2k.mCerebrum.cStress.library.datastream;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Interned, typed reference to a data stream
+ * <p>
+ * Every stream name is assigned a small integer index the first time a handle is requested for it, and DataStreams
+ * keeps its streams in an array by that index.  Resolving a handle once, typically in a static final field, replaces
+ * the string keyed map lookup on every access with an array load.
+ * </p>
+ *
+ * @param <T> DataPointStream or DataArrayStream
+ */
+public final class StreamHandle<T extends DataStream> {
+
+    private static final ConcurrentHashMap<String, StreamHandle<?>> registry = new ConcurrentHashMap<String, StreamHandle<?>>();
+    private static int next = 0;
+
+    public final int index;
+    public final String name;
+    public final Class<T> type;
+
+
+    private StreamHandle(int index, String name, Class<T> type) {
+        this.index = index;
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * Handle of a DataPointStream
+     *
+     * @param name Unique stream name
+     * @return Interned handle
+     */
+    public static StreamHandle<DataPointStream> dataPoint(String name) {
+        return intern(name, DataPointStream.class);
+    }
+
+    /**
+     * Handle of a DataArrayStream
+     *
+     * @param name Unique stream name
+     * @return Interned handle
+     */
+    public static StreamHandle<DataArrayStream> dataArray(String name) {
+        return intern(name, DataArrayStream.class);
+    }
+
+    /**
+     * @return Number of handles issued so far, an upper bound for every index
+     */
+    static synchronized int count() {
+        return next;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends DataStream> StreamHandle<T> intern(String name, Class<T> type) {
+        StreamHandle<?> handle = registry.get(name);
+        if (handle == null) {
+            synchronized (StreamHandle.class) {
+                handle = registry.get(name);
+                if (handle == null) {
+                    handle = new StreamHandle<T>(next++, name, type);
+                    registry.put(name, handle);
+                }
+            }
+        }
+        if (handle.type != type) {
+            throw new IllegalArgumentException("Stream " + name + " is a " + handle.type.getSimpleName() + ", not a " + type.getSimpleName());
+        }
+        return (StreamHandle<T>) handle;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,7 +1,6 @@
 package md2k.mCerebrum.cStress.library.signalprocessing;
 
 import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
-import md2k.mCerebrum.cStress.library.structs.DataPoint;
 
 /*
  * Copyright (c) 2015, The University of Memphis, MD2K Center
@@ -45,19 +44,42 @@ public class AutoSense {
      * @param normalizePercentile What percentile to utilize for normalization
      */
     public static void applyFilterNormalize(DataPointStream input, DataPointStream output, DataPointStream outputNormalized, double[] filter, int normalizePercentile) {
-        double[] sample = new double[input.data.size()];
-        for (int i = 0; i < sample.length; i++) {
-            sample[i] = input.data.get(i).value;
-        }
+        double[] sample = input.data.getValues();
         double[] result = Filter.conv(sample, filter);
 
         //Add value to datastream for computing percentiles
         for (int i = 0; i < result.length; i++) {
-            output.add(new DataPoint(input.data.get(i).timestamp, result[i]));
+            output.add(input.data.getTimestamp(i), result[i]);
         }
         //Normalized based on percentiles
         for (int i = 0; i < sample.length; i++) {
-            outputNormalized.add(new DataPoint(output.data.get(i).timestamp, output.data.get(i).value / output.getPercentile(normalizePercentile)));
+            outputNormalized.add(output.data.getTimestamp(i), output.data.getValue(i) / output.getPercentile(normalizePercentile));
+        }
+    }
+
+    /**
+     * Applies a stateful filter and normalizes the result.  The filter carries its delay line over from the previous
+     * window, so the output holds the samples that became available in this window: the last samples of the previous
+     * window followed by all but the last filter.getDelay() samples of this one.
+     *
+     * @param input               Input DataPointStream
+     * @param output              Output DataPointStream
+     * @param outputNormalized    Output normalized DataPointStream
+     * @param filter              FirFilter that persists between windows
+     * @param normalizePercentile What percentile to utilize for normalization
+     */
+    public static void applyFilterNormalize(DataPointStream input, DataPointStream output, DataPointStream outputNormalized, FirFilter filter, int normalizePercentile) {
+        long[] timestamps = input.data.getTimestamps();
+        double[] result = input.data.getValues();
+        int length = filter.process(timestamps, result, result.length);
+
+        //Add value to datastream for computing percentiles
+        for (int i = 0; i < length; i++) {
+            output.add(timestamps[i], result[i]);
+        }
+        //Normalized based on percentiles
+        for (int i = 0; i < output.data.size(); i++) {
+            outputNormalized.add(output.data.getTimestamp(i), output.data.getValue(i) / output.getPercentile(normalizePercentile));
         }
     }
 
@@ -73,12 +95,13 @@ public class AutoSense {
                                                   int normalizePercentile) {
         //Add value to datastream for computing percentiles
         for (int i = 0; i < input.data.size(); i++) {
-            output.add(new DataPoint(input.data.get(i).timestamp, input.data.get(i).value * input.data.get(i).value));
+            double value = input.data.getValue(i);
+            output.add(input.data.getTimestamp(i), value * value);
         }
         //Normalized based on percentiles
         for (int i = 0; i < output.data.size(); i++) {
-            outputNormalized.add(new DataPoint(output.data.get(i).timestamp, output.data.get(i).value
-                    / output.getPercentile(normalizePercentile)));
+            outputNormalized.add(output.data.getTimestamp(i), output.data.getValue(i)
+                    / output.getPercentile(normalizePercentile));
         }
     }
 }
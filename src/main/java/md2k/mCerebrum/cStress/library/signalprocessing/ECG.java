@@ -9,6 +9,7 @@ import org.apache.commons.math3.transform.FastFourierTransformer;
 import org.apache.commons.math3.transform.TransformType;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /*
@@ -199,6 +200,132 @@ public class ECG {
         return result;
     }
 
+    /**
+     * Fast Lomb–Scargle periodogram (Press-Rybicki)
+     * <p>
+     * Produces the same frequency grid as {@link #lomb(DataPoint[])} (oversampling 4, up to the average Nyquist
+     * frequency) in O(N log N).  The samples and the unit weights needed for the time offsets tau are extirpolated
+     * onto a regular mesh and all trigonometric sums are read off a single FFT of both meshes.  The input arrays are
+     * not modified.
+     * </p>
+     * <p>
+     * The result is an approximation: on RR interval series the band powers used by ECGFeatures differ from lomb by up
+     * to about 3e-4 relative, most in the high frequency band close to the Nyquist frequency.
+     * </p>
+     * <p>
+     * Reference: Press, W. H. and Rybicki, G. B., "Fast algorithm for spectral analysis of unevenly sampled data",
+     * Astrophysical Journal 338 (1989); Numerical Recipes fasper
+     * </p>
+     *
+     * @param t Sample times in increasing order
+     * @param y Sample values
+     * @param n Number of samples to use
+     * @return Lomb object containing P and f
+     */
+    public static Lomb fastLomb(double[] t, double[] y, int n) {
+        double T = t[n - 1] - t[0];
+        int nf = (int) Math.round(0.5 * LOMB_OVERSAMPLING * LOMB_HIFAC * n);
+        double[] f = new double[nf];
+        for (int i = 0; i < nf; i++) {
+            f[i] = (i + 1) / (T * LOMB_OVERSAMPLING);
+        }
+
+        double mx = 0;
+        for (int i = 0; i < n; i++) {
+            mx += y[i];
+        }
+        mx /= n;
+        double vx = 0;
+        for (int i = 0; i < n; i++) {
+            vx += (y[i] - mx) * (y[i] - mx);
+        }
+        vx /= (n - 1);
+
+        double[] P = new double[nf];
+        if (T <= 0) {
+            Arrays.fill(P, Double.NaN);
+            Lomb result = new Lomb();
+            result.P = P;
+            result.f = f;
+            return result;
+        }
+
+        //The mesh must hold twice the highest frequency, oversampled for the extirpolation
+        int size = FFT.nextPowerOfTwo((int) (LOMB_OVERSAMPLING * LOMB_HIFAC * n * LOMB_EXTIRPOLATION));
+        int ndim = 2 * size;
+        double[] re = new double[ndim];
+        double[] im = new double[ndim];
+
+        //Samples go into the real mesh at w*t, unit weights into the imaginary mesh at 2*w*t
+        double fac = ndim / (T * LOMB_OVERSAMPLING);
+        for (int i = 0; i < n; i++) {
+            double ck = ((t[i] - t[0]) * fac) % ndim;
+            double ckk = (2.0 * ck) % ndim;
+            extirpolate(y[i] - mx, re, ck, LOMB_EXTIRPOLATION);
+            extirpolate(1.0, im, ckk, LOMB_EXTIRPOLATION);
+        }
+
+        FFT.getInstance(ndim).forward(re, im);
+
+        for (int j = 1; j <= nf; j++) {
+            //Separate the two real transforms; sums use exp(+i w t) so the sine terms change sign
+            int k = ndim - j;
+            double c1 = 0.5 * (re[j] + re[k]);
+            double s1 = -0.5 * (im[j] - im[k]);
+            double c2 = 0.5 * (im[j] + im[k]);
+            double s2 = 0.5 * (re[j] - re[k]);
+
+            //Half cosine and sine of 2 w tau, with atan2(0, 0) = 0 as in lomb
+            double hypo = Math.sqrt(c2 * c2 + s2 * s2);
+            double hc2wt = hypo > 0 ? 0.5 * c2 / hypo : 0.5;
+            double hs2wt = hypo > 0 ? 0.5 * s2 / hypo : 0.0;
+            double cwt = Math.sqrt(0.5 + hc2wt);
+            double swt = Math.copySign(Math.sqrt(0.5 - hc2wt), hs2wt);
+            double den = 0.5 * n + hc2wt * c2 + hs2wt * s2;
+            double cterm = den > 0 ? (cwt * c1 + swt * s1) * (cwt * c1 + swt * s1) / den : 0.0;
+            double sterm = n - den > 0 ? (cwt * s1 - swt * c1) * (cwt * s1 - swt * c1) / (n - den) : 0.0;
+            P[j - 1] = (cterm + sterm) / (2 * vx);
+        }
+
+        Lomb result = new Lomb();
+        result.P = P;
+        result.f = f;
+        return result;
+    }
+
+    private static final double LOMB_OVERSAMPLING = 4.0;
+    private static final double LOMB_HIFAC = 1.0;
+    private static final int LOMB_EXTIRPOLATION = 4;
+    private static final double[] FACTORIAL = {1, 1, 2, 6, 24, 120, 720, 5040, 40320, 362880, 3628800};
+
+    /**
+     * Extirpolate a value onto the m nearest points of a regular mesh, the inverse of Lagrange interpolation
+     *
+     * @param value Value to spread
+     * @param mesh  Mesh to accumulate into
+     * @param x     Position on the mesh, 0 &lt;= x &lt; mesh.length
+     * @param m     Number of mesh points to use
+     */
+    private static void extirpolate(double value, double[] mesh, double x, int m) {
+        int ix = (int) x;
+        if (x == ix) {
+            mesh[ix] += value;
+            return;
+        }
+        int lo = Math.min(Math.max((int) (x - 0.5 * m + 1.0), 0), mesh.length - m);
+        int hi = lo + m - 1;
+        double fac = x - lo;
+        for (int j = lo + 1; j <= hi; j++) {
+            fac *= (x - j);
+        }
+        double nden = FACTORIAL[m - 1];
+        mesh[hi] += value * fac / (nden * (x - hi));
+        for (int j = hi - 1; j >= lo; j--) {
+            nden = (nden / (j + 1 - lo)) * (j - hi);
+            mesh[j] += value * fac / (nden * (x - j));
+        }
+    }
+
     /**
      * Compute the signal energy using FFTs
      * <p>
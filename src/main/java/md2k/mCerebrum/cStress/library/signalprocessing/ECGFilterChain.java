@@ -0,0 +1,78 @@
+package md2k.mCerebrum.cStress.library.signalprocessing;
+
+import md2k.mCerebrum.cStress.autosense.AUTOSENSE;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * FIR filters of the ECG R-peak chain: least-squares band-pass, derivative, and Blackman smoothing
+ * <p>
+ * Specific to Autosense hardware @ 64Hz and 12-bit values.  The filters keep their delay lines between processing
+ * windows, so the owner of a chain decides when the signal is continuous and when it must be reset.
+ * </p>
+ */
+public class ECGFilterChain {
+
+    public final FirFilter bandpass;
+    public final FirFilter derivative;
+    public final FirFilter smoothing;
+
+
+    /**
+     * Constructor
+     *
+     * @param frequency Sampling frequency of the ECG signal
+     */
+    public ECGFilterChain(double frequency) {
+        double f = 2.0 / frequency;
+        double[] F = {0.0, 4.5 * f, 5.0 * f, 20.0 * f, 20.5 * f, 1};
+        double[] A = {0, 0, 1, 1, 0, 0};
+        double[] w = {500.0 / 0.02, 1.0 / 0.02, 500 / 0.02};
+        int window_l = (int) Math.ceil(frequency / 5.0);
+
+        bandpass = new FirFilter(Filter.firls(AUTOSENSE.FL_INIT, F, A, w));
+        derivative = new FirFilter(new double[]{-1.0 / 8.0, -2.0 / 8.0, 0.0 / 8.0, 2.0 / 8.0, -1.0 / 8.0});
+        smoothing = new FirFilter(Filter.blackman(window_l));
+    }
+
+    /**
+     * Clear the delay lines of all filters, e.g. after a gap in the signal
+     */
+    public void reset() {
+        bandpass.reset();
+        derivative.reset();
+        smoothing.reset();
+    }
+
+    /**
+     * @return Combined delay of the chain in samples
+     */
+    public int getDelay() {
+        return bandpass.getDelay() + derivative.getDelay() + smoothing.getDelay();
+    }
+}
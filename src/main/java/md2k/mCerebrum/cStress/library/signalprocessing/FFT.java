@@ -0,0 +1,163 @@
+package md2k.mCerebrum.cStress.library.signalprocessing;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * In-place radix-2 fast Fourier transform on primitive arrays
+ * <p>
+ * Twiddle factors and bit-reversal tables are computed once per transform size and shared between threads.
+ * </p>
+ */
+public class FFT {
+
+    private static final ConcurrentHashMap<Integer, FFT> plans = new ConcurrentHashMap<Integer, FFT>();
+
+    private final int n;
+    private final double[] cos;
+    private final double[] sin;
+    private final int[] reverse;
+
+
+    private FFT(int n) {
+        this.n = n;
+        cos = new double[n / 2];
+        sin = new double[n / 2];
+        for (int i = 0; i < n / 2; i++) {
+            cos[i] = Math.cos(2.0 * Math.PI * i / n);
+            sin[i] = Math.sin(2.0 * Math.PI * i / n);
+        }
+        reverse = new int[n];
+        int bits = Integer.numberOfTrailingZeros(n);
+        for (int i = 0; i < n; i++) {
+            reverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    /**
+     * Retrieve the shared transform plan for a size
+     *
+     * @param n Transform size, must be a power of two
+     * @return FFT plan
+     */
+    public static FFT getInstance(int n) {
+        if (n <= 0 || (n & (n - 1)) != 0) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + n);
+        }
+        FFT plan = plans.get(n);
+        if (plan == null) {
+            plan = new FFT(n);
+            FFT existing = plans.putIfAbsent(n, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Smallest power of two that is greater than or equal to a value
+     *
+     * @param value Lower bound
+     * @return Power of two
+     */
+    public static int nextPowerOfTwo(int value) {
+        int n = 1;
+        while (n < value) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    /**
+     * @return Transform size
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Forward transform, X[k] = sum x[j] exp(-2 pi i j k / n)
+     *
+     * @param re Real parts, replaced by the transform
+     * @param im Imaginary parts, replaced by the transform
+     */
+    public void forward(double[] re, double[] im) {
+        transform(re, im, -1.0);
+    }
+
+    /**
+     * Inverse transform including the 1/n scaling
+     *
+     * @param re Real parts, replaced by the transform
+     * @param im Imaginary parts, replaced by the transform
+     */
+    public void inverse(double[] re, double[] im) {
+        transform(re, im, 1.0);
+        double scale = 1.0 / n;
+        for (int i = 0; i < n; i++) {
+            re[i] *= scale;
+            im[i] *= scale;
+        }
+    }
+
+
+    private void transform(double[] re, double[] im, double sign) {
+        for (int i = 0; i < n; i++) {
+            int j = reverse[i];
+            if (j > i) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for (int length = 2; length <= n; length <<= 1) {
+            int half = length >> 1;
+            int step = n / length;
+            for (int start = 0; start < n; start += length) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * step];
+                    double wi = sign * sin[k * step];
+                    int a = start + k;
+                    int b = a + half;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
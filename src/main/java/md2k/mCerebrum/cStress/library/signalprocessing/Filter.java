@@ -1,5 +1,11 @@
 package md2k.mCerebrum.cStress.library.signalprocessing;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /*
  * Copyright (c) 2015, The University of Memphis, MD2K Center
  * - Timothy Hnat <twhnat@memphis.edu>
@@ -31,6 +37,87 @@ package md2k.mCerebrum.cStress.library.signalprocessing;
  * Signal processing filters
  */
 public class Filter {
+
+    private static final int FFT_KERNEL_THRESHOLD = 64;
+    private static final int SPECTRUM_CACHE_SIZE = 32;
+
+    //Hardcoded to the specifications of the Autosense ECG sensor.  Determined from the Matlab code
+    private static final double[] FIRLS_COEFFICIENTS = {
+            -4.7274160329724543e-04, -4.3910892627884660e-04, 8.6902448327532778e-04, 1.2580375981368801e-03,
+            -7.0870338859324122e-05, -3.1826848647111390e-04, 2.6535857915570944e-04, -8.1833969244558271e-04,
+            -1.4124933569042541e-03, -1.9995228246965813e-05, 6.7313359750941992e-05, -6.0349375063082288e-04,
+            8.6714439266190248e-04, 1.5065160936261314e-03, 1.0310266272463235e-04, 5.4715012534279738e-04,
+            1.1904732453105013e-03, -7.6681365348830479e-04, -1.2037758114175129e-03, 3.1547725670266574e-05,
+            -1.2630183530614810e-03, -1.7863067743220608e-03, 4.5997532952314775e-04, 3.2716936532409155e-04,
+            -5.2644177116152754e-04, 1.7385569813462844e-03, 1.9889763081328412e-03, -1.0568777171727037e-04,
+            1.0085738914257093e-03, 1.3166081526795959e-03, -1.6828106527494776e-03, -1.3954395354213642e-03,
+            3.6314731240927499e-06, -2.3580287405187803e-03, -2.0329727875177984e-03, 1.0570699668543437e-03,
+            -1.2914364939980619e-04, -3.8546902662939887e-04, 3.1026282496662044e-03, 2.0891652801290394e-03,
+            -1.7040978539860152e-04, 2.2345403662638666e-03, 1.1662141454746484e-03, -2.7739626598314152e-03,
+            -9.8117447601674384e-04, -4.4741116462223640e-04, -4.0970300710684790e-03, -1.8325183286848025e-03,
+            1.3776445217444490e-03, -1.3211583879184985e-03, 3.7867414252479948e-04, 4.7380839079786659e-03,
+            1.6152763281382203e-03, 5.0172009801508800e-04, 4.1276888849617836e-03, 3.2171309686397854e-04,
+            -3.5444229001001413e-03, 5.9320034125439428e-05, -1.9474610880852858e-03, -6.1508063614239862e-03,
+            -9.9665665297590886e-04, 7.1573500042050489e-04, -3.0500439336000633e-03, 2.2375273611317816e-03,
+            6.0494339632141611e-03, 6.6666900112815589e-04, 2.6644168389563642e-03, 6.2464301815488002e-03,
+            -1.3664646323453468e-03, -3.1859375309960399e-03, 1.3346226939768935e-03, -5.0751244870958813e-03,
+            -7.8491706097835925e-03, 2.0337081693415804e-04, -1.8091340945618182e-03, -4.6875184234183237e-03,
+            5.3652517463266009e-03, 6.1905855566496198e-03, -7.4368051532226921e-05, 7.0575372722313061e-03,
+            7.8206867803311906e-03, -3.4972150936961369e-03, -7.6079548874512096e-04, 1.8835178013748015e-03,
+            -1.0170003906003467e-02, -8.3679423125302028e-03, 7.4577361924604336e-04, -7.1106914021255080e-03,
+            -5.2165564908720000e-03, 9.4292401382520472e-03, 4.2997116416556890e-03, 8.9934836096324411e-04,
+            1.4397066723214469e-02, 7.9962549473134286e-03, -4.8304877652048297e-03, 4.7345958483973353e-03,
+            4.9390510587356005e-05, -1.7446053084899240e-02, -7.0564384166495178e-03, -1.6381246987009848e-03,
+            -1.6536831781652900e-02, -3.3074012030242165e-03, 1.3580158825803681e-02, -4.6367025497966462e-04,
+            6.7704049102291549e-03, 2.6487077400862109e-02, 6.1540352580244520e-03, -2.4533091741271327e-03,
+            1.5497475687230644e-02, -7.7410309481643867e-03, -2.8629194004745218e-02, -3.6522550021604841e-03,
+            -1.3632609634575103e-02, -3.6030712287501945e-02, 3.8924925851573531e-03, 1.6707802872026386e-02,
+            -1.1053287553442563e-02, 3.1002542423973951e-02, 5.7319009934381555e-02, 1.6637598373033171e-03,
+            1.8714840588857272e-02, 5.1616797200589280e-02, -4.8886309433549893e-02, -7.3414476566383474e-02,
+            4.0083352853056056e-03, -1.4044338414188356e-01, -2.4550216720451279e-01, 1.4662066861996509e-01,
+            4.7941126114385940e-01, 1.4662066861996509e-01, -2.4550216720451279e-01, -1.4044338414188356e-01,
+            4.0083352853056056e-03, -7.3414476566383474e-02, -4.8886309433549893e-02, 5.1616797200589280e-02,
+            1.8714840588857272e-02, 1.6637598373033171e-03, 5.7319009934381555e-02, 3.1002542423973951e-02,
+            -1.1053287553442563e-02, 1.6707802872026386e-02, 3.8924925851573531e-03, -3.6030712287501945e-02,
+            -1.3632609634575103e-02, -3.6522550021604841e-03, -2.8629194004745218e-02, -7.7410309481643867e-03,
+            1.5497475687230644e-02, -2.4533091741271327e-03, 6.1540352580244520e-03, 2.6487077400862109e-02,
+            6.7704049102291549e-03, -4.6367025497966462e-04, 1.3580158825803681e-02, -3.3074012030242165e-03,
+            -1.6536831781652900e-02, -1.6381246987009848e-03, -7.0564384166495178e-03, -1.7446053084899240e-02,
+            4.9390510587356005e-05, 4.7345958483973353e-03, -4.8304877652048297e-03, 7.9962549473134286e-03,
+            1.4397066723214469e-02, 8.9934836096324411e-04, 4.2997116416556890e-03, 9.4292401382520472e-03,
+            -5.2165564908720000e-03, -7.1106914021255080e-03, 7.4577361924604336e-04, -8.3679423125302028e-03,
+            -1.0170003906003467e-02, 1.8835178013748015e-03, -7.6079548874512096e-04, -3.4972150936961369e-03,
+            7.8206867803311906e-03, 7.0575372722313061e-03, -7.4368051532226921e-05, 6.1905855566496198e-03,
+            5.3652517463266009e-03, -4.6875184234183237e-03, -1.8091340945618182e-03, 2.0337081693415804e-04,
+            -7.8491706097835925e-03, -5.0751244870958813e-03, 1.3346226939768935e-03, -3.1859375309960399e-03,
+            -1.3664646323453468e-03, 6.2464301815488002e-03, 2.6644168389563642e-03, 6.6666900112815589e-04,
+            6.0494339632141611e-03, 2.2375273611317816e-03, -3.0500439336000633e-03, 7.1573500042050489e-04,
+            -9.9665665297590886e-04, -6.1508063614239862e-03, -1.9474610880852858e-03, 5.9320034125439428e-05,
+            -3.5444229001001413e-03, 3.2171309686397854e-04, 4.1276888849617836e-03, 5.0172009801508800e-04,
+            1.6152763281382203e-03, 4.7380839079786659e-03, 3.7867414252479948e-04, -1.3211583879184985e-03,
+            1.3776445217444490e-03, -1.8325183286848025e-03, -4.0970300710684790e-03, -4.4741116462223640e-04,
+            -9.8117447601674384e-04, -2.7739626598314152e-03, 1.1662141454746484e-03, 2.2345403662638666e-03,
+            -1.7040978539860152e-04, 2.0891652801290394e-03, 3.1026282496662044e-03, -3.8546902662939887e-04,
+            -1.2914364939980619e-04, 1.0570699668543437e-03, -2.0329727875177984e-03, -2.3580287405187803e-03,
+            3.6314731240927499e-06, -1.3954395354213642e-03, -1.6828106527494776e-03, 1.3166081526795959e-03,
+            1.0085738914257093e-03, -1.0568777171727037e-04, 1.9889763081328412e-03, 1.7385569813462844e-03,
+            -5.2644177116152754e-04, 3.2716936532409155e-04, 4.5997532952314775e-04, -1.7863067743220608e-03,
+            -1.2630183530614810e-03, 3.1547725670266574e-05, -1.2037758114175129e-03, -7.6681365348830479e-04,
+            1.1904732453105013e-03, 5.4715012534279738e-04, 1.0310266272463235e-04, 1.5065160936261314e-03,
+            8.6714439266190248e-04, -6.0349375063082288e-04, 6.7313359750941992e-05, -1.9995228246965813e-05,
+            -1.4124933569042541e-03, -8.1833969244558271e-04, 2.6535857915570944e-04, -3.1826848647111390e-04,
+            -7.0870338859324122e-05, 1.2580375981368801e-03, 8.6902448327532778e-04, -4.3910892627884660e-04,
+            -4.7274160329724543e-04};
+
+    private static final ConcurrentHashMap<Integer, double[]> blackmanWindows = new ConcurrentHashMap<Integer, double[]>();
+
+    private static final Map<KernelKey, double[][]> spectra = Collections.synchronizedMap(new LinkedHashMap<KernelKey, double[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<KernelKey, double[][]> eldest) {
+            return size() > SPECTRUM_CACHE_SIZE;
+        }
+    });
+
     /**
      * Standard implementation of the Blackman filter
      * <p>
@@ -41,6 +128,15 @@ public class Filter {
      * @return Filter vector
      */
     public static double[] blackman(int window_l) {
+        double[] cached = blackmanWindows.get(window_l);
+        if (cached == null) {
+            cached = computeBlackman(window_l);
+            blackmanWindows.putIfAbsent(window_l, cached);
+        }
+        return cached.clone();
+    }
+
+    private static double[] computeBlackman(int window_l) {
         double[] result = new double[window_l];
         int M = (int) Math.floor((window_l + 1) / 2);
 
@@ -66,76 +162,25 @@ public class Filter {
      * @return Filter vector
      */
     public static double[] firls(double fl, double[] f, double[] a, double[] w) {
-        //Hardcoded to the specifications of the Autosense ECG sensor.  Determined from the Matlab code
-
-        double[] result = {
-                -4.7274160329724543e-04, -4.3910892627884660e-04, 8.6902448327532778e-04, 1.2580375981368801e-03,
-                -7.0870338859324122e-05, -3.1826848647111390e-04, 2.6535857915570944e-04, -8.1833969244558271e-04,
-                -1.4124933569042541e-03, -1.9995228246965813e-05, 6.7313359750941992e-05, -6.0349375063082288e-04,
-                8.6714439266190248e-04, 1.5065160936261314e-03, 1.0310266272463235e-04, 5.4715012534279738e-04,
-                1.1904732453105013e-03, -7.6681365348830479e-04, -1.2037758114175129e-03, 3.1547725670266574e-05,
-                -1.2630183530614810e-03, -1.7863067743220608e-03, 4.5997532952314775e-04, 3.2716936532409155e-04,
-                -5.2644177116152754e-04, 1.7385569813462844e-03, 1.9889763081328412e-03, -1.0568777171727037e-04,
-                1.0085738914257093e-03, 1.3166081526795959e-03, -1.6828106527494776e-03, -1.3954395354213642e-03,
-                3.6314731240927499e-06, -2.3580287405187803e-03, -2.0329727875177984e-03, 1.0570699668543437e-03,
-                -1.2914364939980619e-04, -3.8546902662939887e-04, 3.1026282496662044e-03, 2.0891652801290394e-03,
-                -1.7040978539860152e-04, 2.2345403662638666e-03, 1.1662141454746484e-03, -2.7739626598314152e-03,
-                -9.8117447601674384e-04, -4.4741116462223640e-04, -4.0970300710684790e-03, -1.8325183286848025e-03,
-                1.3776445217444490e-03, -1.3211583879184985e-03, 3.7867414252479948e-04, 4.7380839079786659e-03,
-                1.6152763281382203e-03, 5.0172009801508800e-04, 4.1276888849617836e-03, 3.2171309686397854e-04,
-                -3.5444229001001413e-03, 5.9320034125439428e-05, -1.9474610880852858e-03, -6.1508063614239862e-03,
-                -9.9665665297590886e-04, 7.1573500042050489e-04, -3.0500439336000633e-03, 2.2375273611317816e-03,
-                6.0494339632141611e-03, 6.6666900112815589e-04, 2.6644168389563642e-03, 6.2464301815488002e-03,
-                -1.3664646323453468e-03, -3.1859375309960399e-03, 1.3346226939768935e-03, -5.0751244870958813e-03,
-                -7.8491706097835925e-03, 2.0337081693415804e-04, -1.8091340945618182e-03, -4.6875184234183237e-03,
-                5.3652517463266009e-03, 6.1905855566496198e-03, -7.4368051532226921e-05, 7.0575372722313061e-03,
-                7.8206867803311906e-03, -3.4972150936961369e-03, -7.6079548874512096e-04, 1.8835178013748015e-03,
-                -1.0170003906003467e-02, -8.3679423125302028e-03, 7.4577361924604336e-04, -7.1106914021255080e-03,
-                -5.2165564908720000e-03, 9.4292401382520472e-03, 4.2997116416556890e-03, 8.9934836096324411e-04,
-                1.4397066723214469e-02, 7.9962549473134286e-03, -4.8304877652048297e-03, 4.7345958483973353e-03,
-                4.9390510587356005e-05, -1.7446053084899240e-02, -7.0564384166495178e-03, -1.6381246987009848e-03,
-                -1.6536831781652900e-02, -3.3074012030242165e-03, 1.3580158825803681e-02, -4.6367025497966462e-04,
-                6.7704049102291549e-03, 2.6487077400862109e-02, 6.1540352580244520e-03, -2.4533091741271327e-03,
-                1.5497475687230644e-02, -7.7410309481643867e-03, -2.8629194004745218e-02, -3.6522550021604841e-03,
-                -1.3632609634575103e-02, -3.6030712287501945e-02, 3.8924925851573531e-03, 1.6707802872026386e-02,
-                -1.1053287553442563e-02, 3.1002542423973951e-02, 5.7319009934381555e-02, 1.6637598373033171e-03,
-                1.8714840588857272e-02, 5.1616797200589280e-02, -4.8886309433549893e-02, -7.3414476566383474e-02,
-                4.0083352853056056e-03, -1.4044338414188356e-01, -2.4550216720451279e-01, 1.4662066861996509e-01,
-                4.7941126114385940e-01, 1.4662066861996509e-01, -2.4550216720451279e-01, -1.4044338414188356e-01,
-                4.0083352853056056e-03, -7.3414476566383474e-02, -4.8886309433549893e-02, 5.1616797200589280e-02,
-                1.8714840588857272e-02, 1.6637598373033171e-03, 5.7319009934381555e-02, 3.1002542423973951e-02,
-                -1.1053287553442563e-02, 1.6707802872026386e-02, 3.8924925851573531e-03, -3.6030712287501945e-02,
-                -1.3632609634575103e-02, -3.6522550021604841e-03, -2.8629194004745218e-02, -7.7410309481643867e-03,
-                1.5497475687230644e-02, -2.4533091741271327e-03, 6.1540352580244520e-03, 2.6487077400862109e-02,
-                6.7704049102291549e-03, -4.6367025497966462e-04, 1.3580158825803681e-02, -3.3074012030242165e-03,
-                -1.6536831781652900e-02, -1.6381246987009848e-03, -7.0564384166495178e-03, -1.7446053084899240e-02,
-                4.9390510587356005e-05, 4.7345958483973353e-03, -4.8304877652048297e-03, 7.9962549473134286e-03,
-                1.4397066723214469e-02, 8.9934836096324411e-04, 4.2997116416556890e-03, 9.4292401382520472e-03,
-                -5.2165564908720000e-03, -7.1106914021255080e-03, 7.4577361924604336e-04, -8.3679423125302028e-03,
-                -1.0170003906003467e-02, 1.8835178013748015e-03, -7.6079548874512096e-04, -3.4972150936961369e-03,
-                7.8206867803311906e-03, 7.0575372722313061e-03, -7.4368051532226921e-05, 6.1905855566496198e-03,
-                5.3652517463266009e-03, -4.6875184234183237e-03, -1.8091340945618182e-03, 2.0337081693415804e-04,
-                -7.8491706097835925e-03, -5.0751244870958813e-03, 1.3346226939768935e-03, -3.1859375309960399e-03,
-                -1.3664646323453468e-03, 6.2464301815488002e-03, 2.6644168389563642e-03, 6.6666900112815589e-04,
-                6.0494339632141611e-03, 2.2375273611317816e-03, -3.0500439336000633e-03, 7.1573500042050489e-04,
-                -9.9665665297590886e-04, -6.1508063614239862e-03, -1.9474610880852858e-03, 5.9320034125439428e-05,
-                -3.5444229001001413e-03, 3.2171309686397854e-04, 4.1276888849617836e-03, 5.0172009801508800e-04,
-                1.6152763281382203e-03, 4.7380839079786659e-03, 3.7867414252479948e-04, -1.3211583879184985e-03,
-                1.3776445217444490e-03, -1.8325183286848025e-03, -4.0970300710684790e-03, -4.4741116462223640e-04,
-                -9.8117447601674384e-04, -2.7739626598314152e-03, 1.1662141454746484e-03, 2.2345403662638666e-03,
-                -1.7040978539860152e-04, 2.0891652801290394e-03, 3.1026282496662044e-03, -3.8546902662939887e-04,
-                -1.2914364939980619e-04, 1.0570699668543437e-03, -2.0329727875177984e-03, -2.3580287405187803e-03,
-                3.6314731240927499e-06, -1.3954395354213642e-03, -1.6828106527494776e-03, 1.3166081526795959e-03,
-                1.0085738914257093e-03, -1.0568777171727037e-04, 1.9889763081328412e-03, 1.7385569813462844e-03,
-                -5.2644177116152754e-04, 3.2716936532409155e-04, 4.5997532952314775e-04, -1.7863067743220608e-03,
-                -1.2630183530614810e-03, 3.1547725670266574e-05, -1.2037758114175129e-03, -7.6681365348830479e-04,
-                1.1904732453105013e-03, 5.4715012534279738e-04, 1.0310266272463235e-04, 1.5065160936261314e-03,
-                8.6714439266190248e-04, -6.0349375063082288e-04, 6.7313359750941992e-05, -1.9995228246965813e-05,
-                -1.4124933569042541e-03, -8.1833969244558271e-04, 2.6535857915570944e-04, -3.1826848647111390e-04,
-                -7.0870338859324122e-05, 1.2580375981368801e-03, 8.6902448327532778e-04, -4.3910892627884660e-04,
-                -4.7274160329724543e-04};
+        return FIRLS_COEFFICIENTS.clone();
+    }
 
-        return result;
+    /**
+     * Convolution producing the "same" size filter output
+     * <p>
+     * Long kernels are applied with FFT overlap-save (see convFFT), short kernels with the direct sum (see
+     * convDirect).
+     * </p>
+     *
+     * @param signal Input data array
+     * @param kernel Filter kernel
+     * @return Filtered signal array that is the same size as the input array
+     */
+    public static double[] conv(double[] signal, double[] kernel) {
+        if (kernel.length >= FFT_KERNEL_THRESHOLD && signal.length >= kernel.length) {
+            return convFFT(signal, kernel);
+        }
+        return convDirect(signal, kernel);
     }
 
     /**
@@ -148,7 +193,7 @@ public class Filter {
      * @param kernel Filter kernel
      * @return Filtered signal array that is the same size as the input array
      */
-    public static double[] conv(double[] signal, double[] kernel) {
+    public static double[] convDirect(double[] signal, double[] kernel) {
         double[] result = new double[Math.max(Math.max(signal.length + kernel.length, signal.length), kernel.length)];
 
         double[] tempsignal = new double[signal.length + kernel.length];
@@ -165,4 +210,105 @@ public class Filter {
         System.arraycopy(result, 0, shortresult, 0, signal.length); //Remove excess array size
         return shortresult;
     }
+
+    /**
+     * FFT overlap-save implementation of convDirect
+     * <p>
+     * The signal is cut into blocks of N - K + 1 samples with K - 1 samples of overlap and two real blocks are
+     * transformed at a time as the real and imaginary part of one complex FFT.  Kernel spectra are cached so repeated
+     * calls with the same kernel only transform the signal.  Results match convDirect to floating point rounding.
+     * </p>
+     *
+     * @param signal Input data array
+     * @param kernel Filter kernel
+     * @return Filtered signal array that is the same size as the input array
+     */
+    public static double[] convFFT(double[] signal, double[] kernel) {
+        int K = kernel.length;
+        int N = FFT.nextPowerOfTwo(2 * K);
+        int M = N - K + 1;
+        int offset = K - 1 - K / 2; //convDirect is centered on the kernel
+        FFT fft = FFT.getInstance(N);
+        double[][] H = kernelSpectrum(kernel, N);
+
+        double[] result = new double[signal.length];
+        double[] re = new double[N];
+        double[] im = new double[N];
+
+        for (int first = 0; first < signal.length; first += 2 * M) {
+            int second = first + M;
+            fillBlock(re, signal, first + offset - K + 1);
+            fillBlock(im, signal, second + offset - K + 1);
+
+            fft.forward(re, im);
+            for (int k = 0; k < N; k++) {
+                double r = re[k] * H[0][k] - im[k] * H[1][k];
+                double i = re[k] * H[1][k] + im[k] * H[0][k];
+                re[k] = r;
+                im[k] = i;
+            }
+            fft.inverse(re, im);
+
+            //The first K - 1 outputs of each block are circular wrap-around and discarded
+            for (int j = 0; j < M && first + j < signal.length; j++) {
+                result[first + j] = re[K - 1 + j];
+            }
+            for (int j = 0; j < M && second + j < signal.length; j++) {
+                result[second + j] = im[K - 1 + j];
+            }
+        }
+
+        return result;
+    }
+
+
+    private static void fillBlock(double[] block, double[] signal, int start) {
+        for (int i = 0; i < block.length; i++) {
+            int index = start + i;
+            block[i] = (index >= 0 && index < signal.length) ? signal[index] : 0.0;
+        }
+    }
+
+    /**
+     * Spectrum of the reversed kernel zero padded to N, cached by kernel contents
+     */
+    private static double[][] kernelSpectrum(double[] kernel, int N) {
+        KernelKey key = new KernelKey(kernel, N);
+        double[][] H = spectra.get(key);
+        if (H == null) {
+            H = new double[2][N];
+            for (int i = 0; i < kernel.length; i++) {
+                H[0][i] = kernel[kernel.length - 1 - i];
+            }
+            FFT.getInstance(N).forward(H[0], H[1]);
+            spectra.put(new KernelKey(kernel.clone(), N), H);
+        }
+        return H;
+    }
+
+    private static class KernelKey {
+        private final double[] kernel;
+        private final int size;
+        private final int hash;
+
+        KernelKey(double[] kernel, int size) {
+            this.kernel = kernel;
+            this.size = size;
+            this.hash = 31 * Arrays.hashCode(kernel) + size;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof KernelKey)) {
+                return false;
+            }
+            KernelKey other = (KernelKey) o;
+            return size == other.size && hash == other.hash && Arrays.equals(kernel, other.kernel);
+        }
+    }
 }
@@ -0,0 +1,201 @@
+package md2k.mCerebrum.cStress.library.signalprocessing;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Stateful finite impulse response filter
+ * <p>
+ * Applies the same centered filter as Filter.conv, but keeps a delay line between calls so consecutive chunks of a
+ * signal are filtered as one continuous signal instead of being zero padded at every chunk boundary.  Each output
+ * sample is produced once the delay() samples that follow it have been seen, so the outputs of a chunk lag its inputs
+ * by delay() samples.
+ * </p>
+ */
+public class FirFilter {
+
+    private final double[] kernel;
+    private final int delay;
+
+    //Each sample is written twice, K apart, so the last K samples are always contiguous
+    private final double[] line;
+    private final long[] times;
+    private int position;
+    private int count;
+
+    private long timestamp;
+    private double value;
+
+
+    /**
+     * Constructor
+     *
+     * @param kernel Filter kernel, in the orientation used by Filter.conv
+     */
+    public FirFilter(double[] kernel) {
+        this.kernel = kernel.clone();
+        this.delay = kernel.length - 1 - kernel.length / 2;
+        this.line = new double[2 * kernel.length];
+        this.times = new long[kernel.length];
+        reset();
+    }
+
+
+    /**
+     * Clear the delay line, the next sample is treated as the start of a new signal
+     */
+    public void reset() {
+        for (int i = 0; i < line.length; i++) {
+            line[i] = 0.0;
+        }
+        position = 0;
+        count = 0;
+    }
+
+    /**
+     * @return Number of samples an output lags behind its input
+     */
+    public int getDelay() {
+        return delay;
+    }
+
+    /**
+     * @return Length of the filter kernel
+     */
+    public int getLength() {
+        return kernel.length;
+    }
+
+    /**
+     * Push one sample through the filter
+     *
+     * @param t Timestamp of the input sample
+     * @param x Input sample
+     * @return True if an output sample is available through getTimestamp() and getValue()
+     */
+    public boolean push(long t, double x) {
+        int K = kernel.length;
+        position++;
+        if (position == K) {
+            position = 0;
+        }
+        line[position] = x;
+        line[position + K] = x;
+        times[position] = t;
+        count++;
+        if (count <= delay) {
+            return false;
+        }
+
+        //line[position + 1 .. position + K] holds the last K samples, oldest first
+        double sum = 0.0;
+        int offset = position + 1;
+        for (int j = 0; j < K; j++) {
+            sum += line[offset + j] * kernel[j];
+        }
+        value = sum;
+        int slot = position - delay;
+        timestamp = times[slot < 0 ? slot + K : slot];
+        return true;
+    }
+
+    /**
+     * @return Timestamp of the most recent output sample
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return Most recent output sample
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Filter a chunk of samples in place
+     *
+     * @param timestamps Input timestamps, overwritten with the output timestamps
+     * @param values     Input samples, overwritten with the output samples
+     * @param length     Number of samples in the chunk
+     * @return Number of output samples written to the start of the arrays
+     */
+    public int process(long[] timestamps, double[] values, int length) {
+        int outputs = 0;
+        for (int i = 0; i < length; i++) {
+            if (push(timestamps[i], values[i])) {
+                timestamps[outputs] = timestamp;
+                values[outputs] = value;
+                outputs++;
+            }
+        }
+        return outputs;
+    }
+
+    /**
+     * Filter a chunk of samples in place
+     *
+     * @param values Input samples, overwritten with the output samples
+     * @param length Number of samples in the chunk
+     * @return Number of output samples written to the start of the array
+     */
+    public int process(double[] values, int length) {
+        int outputs = 0;
+        for (int i = 0; i < length; i++) {
+            if (push(0, values[i])) {
+                values[outputs] = value;
+                outputs++;
+            }
+        }
+        return outputs;
+    }
+
+    /**
+     * Emit the outputs still held in the delay line as if the signal were followed by zeros, matching the trailing
+     * edge of Filter.conv, and reset the filter
+     *
+     * @param timestamps Output timestamps, at least getDelay() long
+     * @param values     Output samples, at least getDelay() long
+     * @return Number of output samples written
+     */
+    public int flush(long[] timestamps, double[] values) {
+        int pending = Math.min(count, delay);
+        int outputs = 0;
+        long last = times[position];
+        for (int i = 0; i < delay; i++) {
+            //Padding timestamps are never reported, the outputs carry the timestamps of the held samples
+            if (push(last, 0.0) && outputs < pending) {
+                timestamps[outputs] = timestamp;
+                values[outputs] = value;
+                outputs++;
+            }
+        }
+        reset();
+        return outputs;
+    }
+}
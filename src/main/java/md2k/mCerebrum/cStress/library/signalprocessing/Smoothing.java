@@ -1,7 +1,6 @@
 package md2k.mCerebrum.cStress.library.signalprocessing;
 
 import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
-import md2k.mCerebrum.cStress.library.structs.DataPoint;
 
 /*
  * Copyright (c) 2015, The University of Memphis, MD2K Center
@@ -44,8 +43,10 @@ public class Smoothing {
      * @param output Output datastream object
      */
     public static void normalize(DataPointStream output, DataPointStream input) {
-        for (DataPoint dp : input.data) {
-            output.add(new DataPoint(dp.timestamp, (dp.value - input.getMean()) / input.getStandardDeviation()));
+        double mean = input.getMean();
+        double standardDeviation = input.getStandardDeviation();
+        for (int i = 0; i < input.data.size(); i++) {
+            output.add(input.data.getTimestamp(i), (input.data.getValue(i) - mean) / standardDeviation);
         }
     }
 
@@ -60,29 +61,55 @@ public class Smoothing {
      * @param n      Windows size
      */
     public static void smooth(DataPointStream output, DataPointStream input, int n) {
+        double[] result = smooth(input.data.getValues(), n);
+        for (int i = 0; i < result.length; i++) {
+            output.add(input.data.getTimestamp(i), result[i]);
+        }
+    }
+
+    /**
+     * Reimplementation of Matlab's smooth function on a primitive array
+     * <p>
+     * Centered moving average of n samples (n + 1 if n is even).  The window grows from a single sample at the start
+     * and shrinks again towards the end of the input, as in smooth.m.  Window sums are taken from a prefix sum array so
+     * the cost does not depend on n.
+     * </p>
+     * <p>
+     * Every call averages its input on its own.  rip_mac and the wrist gyro averages depend on the shrinking windows at
+     * the end of each processing window, so there is no incremental variant that carries samples into the next call.
+     * </p>
+     *
+     * @param input Input samples
+     * @param n     Windows size
+     * @return Smoothed samples
+     */
+    public static double[] smooth(double[] input, int n) {
+        int size = input.length;
+        double[] prefix = new double[size + 1];
+        for (int i = 0; i < size; i++) {
+            prefix[i + 1] = prefix[i] + input[i];
+        }
+
+        double[] result = new double[size];
         int windowSize = 1;
-        double sum;
-        for (int i = 0; i < input.data.size(); i++) {
-            sum = 0.0;
+        for (int i = 0; i < size; i++) {
             int startingPoint;
-            if ((input.data.size() - i + 1) < n) {
-                startingPoint = input.data.size() - windowSize;
+            if ((size - i + 1) < n) {
+                startingPoint = size - windowSize;
             } else {
-                startingPoint = (int) Math.max(Math.floor(i - n / 2), 0);
+                startingPoint = Math.max(i - n / 2, 0);
             }
-            for (int j = startingPoint; j < startingPoint + windowSize; j++) {
-                sum += input.data.get(j).value;
-            }
-            sum /= (double) windowSize;
-
-            output.add(new DataPoint(input.data.get(i).timestamp, sum));
+            //For the last samples the window can shrink to zero or fewer samples, which averages an empty sum
+            double sum = windowSize > 0 ? prefix[startingPoint + windowSize] - prefix[startingPoint] : 0.0;
+            result[i] = sum / (double) windowSize;
 
-            if (windowSize < n && (input.data.size() - i) > n) { //Increase windowSize until n
+            if (windowSize < n && (size - i) > n) { //Increase windowSize until n
                 windowSize += 2;
-            } else if ((input.data.size() - i + 1) < n) {
+            } else if ((size - i + 1) < n) {
                 windowSize -= 2;
             }
         }
+        return result;
     }
 
 
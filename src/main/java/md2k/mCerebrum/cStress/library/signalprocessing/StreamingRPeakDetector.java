@@ -0,0 +1,326 @@
+package md2k.mCerebrum.cStress.library.signalprocessing;
+
+import md2k.mCerebrum.cStress.autosense.AUTOSENSE;
+import md2k.mCerebrum.cStress.library.PSquared;
+import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
+import md2k.mCerebrum.cStress.library.structs.DataPoint;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Sample-at-a-time ECG R-peak detector
+ * <p>
+ * Runs the same chain as ECGFeatures (least-squares band-pass, derivative, square, Blackman smoothing, each followed
+ * by normalization against a running 90th percentile) on one sample at a time with delay lines, then applies the
+ * Pan-Tompkins style signal/noise thresholding with search-back.  QRS candidates closer than the physiological
+ * refractory period (AUTOSENSE.RPEAK_REFRACTORY_SECS, 200 ms) are merged into the larger one, which leaves heart
+ * rates up to 300 bpm detectable.  The filter and threshold state is kept between processing windows, so R-peaks are
+ * emitted with a fixed latency (the combined filter delay plus the refractory period) instead of once per window.
+ * </p>
+ */
+public class StreamingRPeakDetector {
+
+    private static final double NORMALIZE_PERCENTILE = 0.9;
+    private static final double SEARCHBACK_FACTOR = 1.66;
+    private static final int SEARCHBACK_LIMIT = 256;
+
+    private final double frequency;
+    private final long refractory;
+
+    private final ECGFilterChain filters;
+    private PSquared bandpassNorm;
+    private PSquared squareNorm;
+    private PSquared smoothingNorm;
+
+    //Last five smoothed samples for peak identification
+    private final long[] peakTimestamps = new long[5];
+    private final double[] peakValues = new double[5];
+    private int peakCount;
+
+    private double thr1;
+    private double thr2;
+    private double sig_lev;
+    private double noise_lev;
+
+    private final long[] rrIntervals = new long[AUTOSENSE.PEAK_INTERVAL_MINIMUM_SIZE];
+    private int rrCount;
+    private double rr_ave;
+    private long lastCandidate;
+    private boolean hasCandidate;
+    private final ArrayDeque<DataPoint> searchback = new ArrayDeque<DataPoint>();
+
+    private DataPoint pending;
+    private DataPoint lastRPeak;
+    private double rrInterval;
+
+
+    /**
+     * Constructor
+     *
+     * @param frequency Sampling frequency of the ECG signal
+     */
+    public StreamingRPeakDetector(double frequency) {
+        this.frequency = frequency;
+        this.refractory = (long) Math.ceil(1000.0 * AUTOSENSE.RPEAK_REFRACTORY_SECS);
+        this.filters = new ECGFilterChain(frequency);
+
+        reset();
+    }
+
+
+    /**
+     * Clear all filter and threshold state, e.g. after a gap in the signal
+     */
+    public void reset() {
+        filters.reset();
+        bandpassNorm = new PSquared(NORMALIZE_PERCENTILE);
+        squareNorm = new PSquared(NORMALIZE_PERCENTILE);
+        smoothingNorm = new PSquared(NORMALIZE_PERCENTILE);
+
+        peakCount = 0;
+
+        thr1 = AUTOSENSE.THR1_INIT;
+        thr2 = 0.5 * thr1;
+        sig_lev = AUTOSENSE.SIG_LEV_FACTOR * thr1;
+        noise_lev = AUTOSENSE.NOISE_LEV_FACTOR * sig_lev;
+
+        rrCount = 0;
+        rr_ave = 0.0;
+        hasCandidate = false;
+        searchback.clear();
+
+        pending = null;
+        lastRPeak = null;
+        rrInterval = Double.NaN;
+    }
+
+    /**
+     * Process the next ECG sample
+     *
+     * @param dp        Raw ECG sample
+     * @param rpeaks    Output datastream receiving each R-peak once it is confirmed
+     * @param heartrate Output datastream receiving the instantaneous heart rate at each confirmed R-peak
+     */
+    public void add(DataPoint dp, DataPointStream rpeaks, DataPointStream heartrate) {
+        add(dp.timestamp, dp.value, rpeaks, heartrate);
+    }
+
+    /**
+     * Process the next ECG sample without requiring a DataPoint
+     *
+     * @param timestamp Time of the raw ECG sample
+     * @param value     Raw ECG value
+     * @param rpeaks    Output datastream receiving each R-peak once it is confirmed
+     * @param heartrate Output datastream receiving the instantaneous heart rate at each confirmed R-peak
+     */
+    public void add(long timestamp, double value, DataPointStream rpeaks, DataPointStream heartrate) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        if (!filters.bandpass.push(timestamp, value)) {
+            return;
+        }
+        double y2 = normalize(filters.bandpass.getValue(), bandpassNorm);
+
+        if (!filters.derivative.push(filters.bandpass.getTimestamp(), y2)) {
+            return;
+        }
+        double y3 = filters.derivative.getValue();
+        double y4 = normalize(y3 * y3, squareNorm);
+
+        if (!filters.smoothing.push(filters.derivative.getTimestamp(), y4)) {
+            return;
+        }
+        long smoothed = filters.smoothing.getTimestamp();
+        double y5 = normalize(filters.smoothing.getValue(), smoothingNorm);
+
+        if (pending != null && smoothed - pending.timestamp >= refractory) {
+            emit(rpeaks, heartrate);
+        }
+
+        DataPoint peak = findPeak(smoothed, y5);
+        if (peak != null) {
+            classifyPeak(peak, rpeaks, heartrate);
+        }
+    }
+
+    /**
+     * @return Most recently emitted R-peak or null
+     */
+    public DataPoint getLastRPeak() {
+        return lastRPeak;
+    }
+
+    /**
+     * @return Most recent RR-interval in seconds, NaN until two R-peaks have been emitted
+     */
+    public double getRRInterval() {
+        return rrInterval;
+    }
+
+    /**
+     * @return Instantaneous heart rate in beats per minute, NaN until two R-peaks have been emitted
+     */
+    public double getHeartRate() {
+        return 60.0 / rrInterval;
+    }
+
+    /**
+     * @return Number of samples between an input sample and the corresponding smoothed sample
+     */
+    public int getFilterDelay() {
+        return filters.getDelay();
+    }
+
+    /**
+     * @return Sampling frequency of the ECG signal
+     */
+    public double getFrequency() {
+        return frequency;
+    }
+
+
+    private double normalize(double value, PSquared percentile) {
+        double p = percentile.accept(value);
+        if (p == 0.0) {
+            return 0.0;
+        }
+        return value / p;
+    }
+
+    /**
+     * Five sample peak pattern, matching ECGFeatures.findpeaks
+     */
+    private DataPoint findPeak(long timestamp, double value) {
+        System.arraycopy(peakTimestamps, 1, peakTimestamps, 0, 4);
+        System.arraycopy(peakValues, 1, peakValues, 0, 4);
+        peakTimestamps[4] = timestamp;
+        peakValues[4] = value;
+        if (peakCount < 5) {
+            peakCount++;
+            if (peakCount < 5) {
+                return null;
+            }
+        }
+
+        if (peakValues[0] < peakValues[1] &&
+                peakValues[1] < peakValues[2] &&
+                peakValues[2] >= peakValues[3] &&
+                peakValues[3] > peakValues[4]) {
+            return new DataPoint(peakTimestamps[2], peakValues[2]);
+        }
+        return null;
+    }
+
+    /**
+     * Signal/noise thresholding with search-back, matching ECGFeatures.filterPeaks
+     */
+    private void classifyPeak(DataPoint peak, DataPointStream rpeaks, DataPointStream heartrate) {
+        if (hasCandidate && rr_ave > 0 && (peak.timestamp - lastCandidate) > SEARCHBACK_FACTOR * rr_ave) {
+            DataPoint best = null;
+            for (DataPoint dp : searchback) {
+                if (dp.value < 3.0 * sig_lev && dp.value > thr2 && (best == null || dp.value > best.value)) {
+                    best = dp;
+                }
+            }
+            if (best != null) {
+                for (Iterator<DataPoint> it = searchback.iterator(); it.hasNext(); ) {
+                    DataPoint dp = it.next();
+                    it.remove();
+                    if (dp == best) {
+                        break;
+                    }
+                }
+                accept(best, rpeaks, heartrate);
+            }
+        }
+
+        if (peak.value >= thr1 && peak.value < 3.0 * sig_lev) {
+            accept(peak, rpeaks, heartrate);
+            searchback.clear();
+        } else {
+            if (peak.value < thr1 && peak.value > thr2) {
+                noise_lev = Smoothing.ewma(peak.value, noise_lev, AUTOSENSE.EWMA_ALPHA);
+            }
+            if (hasCandidate) {
+                if (searchback.size() == SEARCHBACK_LIMIT) {
+                    searchback.removeFirst();
+                }
+                searchback.addLast(peak);
+            }
+        }
+
+        thr1 = noise_lev + 0.25 * (sig_lev - noise_lev);
+        thr2 = 0.5 * thr1;
+    }
+
+    /**
+     * Accept a QRS candidate and merge it with the pending candidate if they fall within the refractory period
+     */
+    private void accept(DataPoint candidate, DataPointStream rpeaks, DataPointStream heartrate) {
+        sig_lev = Smoothing.ewma(candidate.value, sig_lev, AUTOSENSE.EWMA_ALPHA);
+
+        if (hasCandidate) {
+            rrIntervals[rrCount % rrIntervals.length] = candidate.timestamp - lastCandidate;
+            rrCount++;
+            int n = Math.min(rrCount, rrIntervals.length);
+            double sum = 0.0;
+            for (int i = 0; i < n; i++) {
+                sum += rrIntervals[i];
+            }
+            rr_ave = sum / n;
+        }
+        lastCandidate = candidate.timestamp;
+        hasCandidate = true;
+
+        if (pending != null) {
+            if (candidate.timestamp - pending.timestamp < refractory) {
+                if (candidate.value > pending.value) {
+                    pending = candidate;
+                }
+                return;
+            }
+            emit(rpeaks, heartrate);
+        }
+        pending = candidate;
+    }
+
+    private void emit(DataPointStream rpeaks, DataPointStream heartrate) {
+        DataPoint rpeak = pending;
+        pending = null;
+        rpeaks.add(new DataPoint(rpeak));
+        if (lastRPeak != null) {
+            rrInterval = (rpeak.timestamp - lastRPeak.timestamp) / 1000.0;
+            heartrate.add(rpeak.timestamp, 60.0 / rrInterval);
+        }
+        lastRPeak = rpeak;
+    }
+}
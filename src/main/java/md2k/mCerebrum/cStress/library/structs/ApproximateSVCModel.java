@@ -0,0 +1,353 @@
+package md2k.mCerebrum.cStress.library.structs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Approximate scoring engine for RBF SVC models with a small kernel width gamma
+ * <p>
+ * Writing exp(-gamma ||x - s||^2) = exp(-gamma ||x||^2) exp(-gamma ||s||^2) exp(2 gamma x.s) and expanding the last
+ * factor to second order collapses the support vectors into one constant, one linear and one quadratic term:
+ * <code>f(x) ~ exp(-gamma ||x||^2) (c + w.x + x'Qx) + intercept</code>.  The expansion converges slowly for support
+ * vectors far outside the normalized feature space, so those with a norm above FAR_RADIUS sqrt(d) are kept and
+ * evaluated exactly.  On the cStress model this scores 19 of 309 support vectors exactly and replaces the rest with
+ * O(d^2) work per feature vector.
+ * </p>
+ * <p>
+ * With u = 2 gamma x.s the truncation error is sum beta_s (u^3/6 + u^4/24 + R5) over the expanded support vectors,
+ * with |R5| at most |u|^5/120 exp(|u|).  The third order sum dominates and is bounded per feature vector by
+ * sqrt(x'Cx) ||x||^2, where C = sum beta_s beta_t (s.t)^2 s t' is precomputed; the fourth order sum is bounded with the
+ * Frobenius norm of sum beta_s s^4 and the rest term by absolute values.  Through the slope of the probability sigmoid
+ * (at most |probA|/4) this bounds the probability error.  Feature vectors whose bound exceeds the tolerance are scored
+ * with the exact model.
+ * </p>
+ */
+public class ApproximateSVCModel
+{
+    /**
+     * Support vectors with a norm above FAR_RADIUS sqrt(d) are evaluated exactly, normalized features have norm
+     * around sqrt(d)
+     */
+    private static final double FAR_RADIUS = 1.5;
+    private static final int CALIBRATION_SIZE = 1000;
+    private static final long CALIBRATION_SEED = 1234;
+
+    private final CompiledSVCModel exact;
+    private final int dimension;
+    private final double gamma;
+    private final double tolerance;
+
+    private final double constant;
+    private final double [] linear;
+    private final double [] quadratic; //Upper triangle, row-major, off-diagonal terms doubled
+    private final double [] farSupportVectors;
+    private final double [] farDualCoefs;
+
+    //Error bound terms: C as quadratic, ||sum beta_s s^4||_F, sum |beta_s| ||s||^5 and max ||s|| of the expansion
+    private final double [] cubic;
+    private final double fourthOrderNorm;
+    private final double fifthOrderWeight;
+    private final double maxSupportNorm;
+
+    private final double empiricalError;
+    private final double empiricalCoverage;
+
+
+    /**
+     * Build the approximation
+     *
+     * @param exact     Compiled exact model, must use an RBF kernel
+     * @param tolerance Largest acceptable probability error per feature vector
+     */
+    public ApproximateSVCModel(CompiledSVCModel exact, double tolerance)
+    {
+        if (!(exact.getKernel() instanceof CompiledSVCModel.RbfKernel))
+            throw new IllegalArgumentException("Approximate scoring requires an rbf kernel");
+
+        this.exact = exact;
+        this.dimension = exact.getDimension();
+        this.gamma = ((CompiledSVCModel.RbfKernel) exact.getKernel()).gamma;
+        this.tolerance = tolerance;
+
+        double [] sv = exact.getSupportVectors();
+        double [] alpha = exact.getDualCoefs();
+        double radius = FAR_RADIUS * Math.sqrt(dimension);
+
+        //Split the support vectors into those that are expanded and those that are evaluated exactly
+        List<Integer> near = new ArrayList<Integer>();
+        List<Integer> far = new ArrayList<Integer>();
+        double [] norms = new double[alpha.length];
+        for (int s = 0; s < alpha.length; s++)
+        {
+            double normsq = 0;
+            for (int i = 0; i < dimension; i++)
+                normsq += sv[s * dimension + i] * sv[s * dimension + i];
+            norms[s] = Math.sqrt(normsq);
+            if (norms[s] > radius)
+                far.add(s);
+            else
+                near.add(s);
+        }
+
+        this.farSupportVectors = new double[far.size() * dimension];
+        this.farDualCoefs = new double[far.size()];
+        for (int f = 0; f < far.size(); f++)
+        {
+            System.arraycopy(sv, far.get(f) * dimension, farSupportVectors, f * dimension, dimension);
+            farDualCoefs[f] = alpha[far.get(f)];
+        }
+
+        int m = near.size();
+        double [] nearVectors = new double[m * dimension];
+        double [] beta = new double[m];
+        double c = 0;
+        double [] w = new double[dimension];
+        double [] q = new double[dimension * (dimension + 1) / 2];
+        double fifth = 0;
+        double maxNorm = 0;
+        for (int s = 0; s < m; s++)
+        {
+            int offset = s * dimension;
+            System.arraycopy(sv, near.get(s) * dimension, nearVectors, offset, dimension);
+            double norm = norms[near.get(s)];
+            beta[s] = alpha[near.get(s)] * Math.exp(-gamma * norm * norm);
+
+            c += beta[s];
+            int k = 0;
+            for (int i = 0; i < dimension; i++)
+            {
+                w[i] += 2 * gamma * beta[s] * nearVectors[offset + i];
+                for (int j = i; j < dimension; j++)
+                {
+                    double term = 2 * gamma * gamma * beta[s] * nearVectors[offset + i] * nearVectors[offset + j];
+                    q[k++] += (i == j) ? term : 2 * term;
+                }
+            }
+
+            fifth += Math.abs(beta[s]) * Math.pow(norm, 5);
+            maxNorm = Math.max(maxNorm, norm);
+        }
+
+        //C = S' B P B S with P_st = (s.t)^2, and ||sum beta_s s^4||_F^2 = sum_s sum_t beta_s beta_t (s.t)^4
+        double [] weighted = new double[m * dimension];
+        double fourth = 0;
+        for (int s = 0; s < m; s++)
+        {
+            for (int t = 0; t < m; t++)
+            {
+                double dot = 0;
+                for (int i = 0; i < dimension; i++)
+                    dot += nearVectors[s * dimension + i] * nearVectors[t * dimension + i];
+                double dot2 = dot * dot;
+                fourth += beta[s] * beta[t] * dot2 * dot2;
+                for (int i = 0; i < dimension; i++)
+                    weighted[s * dimension + i] += dot2 * beta[t] * nearVectors[t * dimension + i];
+            }
+        }
+        double [] cub = new double[dimension * (dimension + 1) / 2];
+        for (int s = 0; s < m; s++)
+        {
+            int k = 0;
+            for (int i = 0; i < dimension; i++)
+            {
+                double left = beta[s] * nearVectors[s * dimension + i];
+                for (int j = i; j < dimension; j++)
+                {
+                    double term = left * weighted[s * dimension + j];
+                    cub[k++] += (i == j) ? term : 2 * term;
+                }
+            }
+        }
+
+        this.constant = c;
+        this.linear = w;
+        this.quadratic = q;
+        this.cubic = cub;
+        this.fourthOrderNorm = Math.sqrt(Math.abs(fourth));
+        this.fifthOrderWeight = fifth;
+        this.maxSupportNorm = maxNorm;
+
+        //Measure coverage and actual probability error on unit variance normalized feature vectors
+        Random random = new Random(CALIBRATION_SEED);
+        double [] x = new double[dimension];
+        double [] bound = new double[1];
+        double worst = 0;
+        int approximated = 0;
+        for (int n = 0; n < CALIBRATION_SIZE; n++)
+        {
+            for (int i = 0; i < dimension; i++)
+                x[i] = random.nextGaussian();
+            double value = approximate(x, 0, bound);
+            if (bound[0] <= tolerance)
+            {
+                double reference = exact.probability(exact.decisionValue(x, 0));
+                worst = Math.max(worst, Math.abs(exact.probability(value) - reference));
+                approximated++;
+            }
+        }
+        this.empiricalError = worst;
+        this.empiricalCoverage = (double) approximated / CALIBRATION_SIZE;
+    }
+
+
+    public double getBias()
+    {
+        return exact.getBias();
+    }
+
+    public double getTolerance()
+    {
+        return tolerance;
+    }
+
+    /**
+     * @return Number of support vectors that are evaluated exactly instead of expanded
+     */
+    public int getExactSupportVectorCount()
+    {
+        return farDualCoefs.length;
+    }
+
+    /**
+     * @return Largest probability error measured on unit variance normalized feature vectors within the tolerance
+     */
+    public double getEmpiricalError()
+    {
+        return empiricalError;
+    }
+
+    /**
+     * @return Fraction of unit variance normalized feature vectors that are scored with the approximation at this
+     * tolerance
+     */
+    public double getEmpiricalCoverage()
+    {
+        return empiricalCoverage;
+    }
+
+    /**
+     * Upper bound on the probability error of the approximation for one feature vector
+     *
+     * @param ap Raw (not normalized) feature vector
+     * @return Bound on |approximate - exact| probability
+     */
+    public double getErrorBound(DataPointArray ap)
+    {
+        double [] x = new double[dimension];
+        double [] bound = new double[1];
+        exact.normalize(ap, x, 0);
+        approximate(x, 0, bound);
+        return bound[0];
+    }
+
+    /**
+     * Score a single feature vector, falling back to the exact model when the error bound exceeds the tolerance
+     *
+     * @param ap Raw (not normalized) feature vector
+     * @return Stress probability
+     */
+    public double computeProbability(DataPointArray ap)
+    {
+        double [] x = new double[dimension];
+        double [] bound = new double[1];
+        exact.normalize(ap, x, 0);
+        double value = approximate(x, 0, bound);
+        if (bound[0] > tolerance)
+            return exact.probability(exact.decisionValue(x, 0));
+        return exact.probability(value);
+    }
+
+    /**
+     * Score a batch of feature vectors, falling back to the exact model for those whose error bound exceeds the
+     * tolerance
+     *
+     * @param aps  Raw (not normalized) feature vectors
+     * @param pool Pool used for the exact fallback, or null to score on the calling thread
+     * @return Stress probabilities in the order of aps
+     */
+    public double [] computeProbabilities(List<DataPointArray> aps, ForkJoinPool pool)
+    {
+        double [] result = new double[aps.size()];
+        double [] x = new double[dimension];
+        double [] bound = new double[1];
+        List<DataPointArray> fallback = new ArrayList<DataPointArray>();
+        List<Integer> fallbackIndex = new ArrayList<Integer>();
+        for (int i = 0; i < aps.size(); i++)
+        {
+            exact.normalize(aps.get(i), x, 0);
+            double value = approximate(x, 0, bound);
+            if (bound[0] > tolerance)
+            {
+                fallback.add(aps.get(i));
+                fallbackIndex.add(i);
+            }
+            else
+            {
+                result[i] = exact.probability(value);
+            }
+        }
+
+        if (fallback.size() > 0)
+        {
+            double [] exactResult = exact.computeProbabilities(fallback, pool);
+            for (int i = 0; i < exactResult.length; i++)
+                result[fallbackIndex.get(i)] = exactResult[i];
+        }
+        return result;
+    }
+
+
+    /**
+     * Expanded decision value for one normalized feature vector, which is only used when the bound stored in
+     * bound[0] is within the tolerance.  The quadratic and error bound forms share one pass over x.
+     *
+     * @param x      Normalized feature vectors
+     * @param offset Offset of the feature vector in x
+     * @param bound  Receives the bound on the probability error
+     * @return Approximate decision value
+     */
+    private double approximate(double [] x, int offset, double [] bound)
+    {
+        double normsq = 0;
+        double lin = 0;
+        double quad = 0;
+        double cub = 0;
+        int k = 0;
+        for (int i = 0; i < dimension; i++)
+        {
+            double xi = x[offset + i];
+            normsq += xi * xi;
+            lin += linear[i] * xi;
+            double row = 0;
+            double cubicRow = 0;
+            for (int j = i; j < dimension; j++)
+            {
+                double xj = x[offset + j];
+                row += quadratic[k] * xj;
+                cubicRow += cubic[k] * xj;
+                k++;
+            }
+            quad += xi * row;
+            cub += xi * cubicRow;
+        }
+        double weight = Math.exp(-gamma * normsq);
+
+        double scale = 2 * gamma;
+        double scale3 = scale * scale * scale;
+        double radius = scale * Math.sqrt(normsq);
+        double decisionError = scale3 / 6.0 * Math.sqrt(Math.max(cub, 0.0)) * normsq
+                + scale3 * scale / 24.0 * fourthOrderNorm * normsq * normsq
+                + Math.pow(radius, 5) / 120.0 * fifthOrderWeight * Math.exp(radius * maxSupportNorm);
+        bound[0] = Math.abs(exact.getProbA()) / 4.0 * weight * decisionError;
+        if (bound[0] > tolerance)
+            return Double.NaN;
+
+        double far = 0;
+        for (int s = 0; s < farDualCoefs.length; s++)
+            far += exact.getKernel().evaluate(x, offset, farSupportVectors, s * dimension, dimension) * farDualCoefs[s];
+
+        return weight * (constant + lin + quad) + far + exact.getIntercept();
+    }
+}
@@ -0,0 +1,270 @@
+package md2k.mCerebrum.cStress.library.structs;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scoring engine for an SVCModel
+ * <p>
+ * Support vectors are flattened into a single row-major array, the kernel is resolved once, and feature vectors can be
+ * scored in batches, optionally split across a ForkJoinPool.  Results are identical to SVCModel.computeProbability.
+ * </p>
+ */
+public class CompiledSVCModel
+{
+    private static final int BATCH_BLOCK = 8;
+    private static final int PARALLEL_GRAIN = 32;
+
+    private final int dimension;
+    private final int count;
+    private final double [] supportVectors;
+    private final double [] dualCoefs;
+    private final double [] means;
+    private final double [] stds;
+    private final KernelFunction kernel;
+    private final double intercept;
+    private final double probA;
+    private final double probB;
+    private final double bias;
+
+
+    CompiledSVCModel(double [] supportVectors, double [] dualCoefs, double [] means, double [] stds, KernelFunction kernel,
+                     double intercept, double probA, double probB, double bias)
+    {
+        this.dimension = means.length;
+        this.count = dualCoefs.length;
+        this.supportVectors = supportVectors;
+        this.dualCoefs = dualCoefs;
+        this.means = means;
+        this.stds = stds;
+        this.kernel = kernel;
+        this.intercept = intercept;
+        this.probA = probA;
+        this.probB = probB;
+        this.bias = bias;
+    }
+
+
+    public double getBias()
+    {
+        return bias;
+    }
+
+    public int getDimension()
+    {
+        return dimension;
+    }
+
+    public int getSupportVectorCount()
+    {
+        return count;
+    }
+
+    /**
+     * Score a single feature vector
+     *
+     * @param ap Raw (not normalized) feature vector
+     * @return Stress probability
+     */
+    public double computeProbability(DataPointArray ap)
+    {
+        double [] batch = new double[dimension];
+        normalize(ap, batch, 0);
+        double [] result = new double[1];
+        score(batch, 0, 1, result);
+        return result[0];
+    }
+
+    /**
+     * Score a batch of feature vectors
+     *
+     * @param aps  Raw (not normalized) feature vectors
+     * @param pool Pool to split the batch across, or null to score on the calling thread
+     * @return Stress probabilities in the order of aps
+     */
+    public double [] computeProbabilities(List<DataPointArray> aps, ForkJoinPool pool)
+    {
+        int n = aps.size();
+        double [] batch = new double[n * dimension];
+        for (int i = 0; i < n; i++)
+            normalize(aps.get(i), batch, i * dimension);
+
+        double [] result = new double[n];
+        if (pool == null || n < 2 * PARALLEL_GRAIN)
+            score(batch, 0, n, result);
+        else
+            pool.invoke(new ScoreTask(batch, 0, n, result));
+        return result;
+    }
+
+
+    /**
+     * Kernel expansion plus intercept for one normalized feature vector
+     */
+    double decisionValue(double [] x, int offset)
+    {
+        double outputvalue = 0;
+        for (int s = 0; s < count; s++)
+            outputvalue += kernel.evaluate(x, offset, supportVectors, s * dimension, dimension) * dualCoefs[s];
+        return outputvalue + intercept;
+    }
+
+    double probability(double outputvalue)
+    {
+        return 1.0 / (1.0 + Math.exp(probA * outputvalue + probB));
+    }
+
+    double [] getSupportVectors()
+    {
+        return supportVectors;
+    }
+
+    double [] getDualCoefs()
+    {
+        return dualCoefs;
+    }
+
+    KernelFunction getKernel()
+    {
+        return kernel;
+    }
+
+    double getIntercept()
+    {
+        return intercept;
+    }
+
+    double getProbA()
+    {
+        return probA;
+    }
+
+    void normalize(DataPointArray ap, double [] batch, int offset)
+    {
+        if (ap.value.size() != dimension)
+            throw new IllegalArgumentException("Feature vector has " + ap.value.size() + " values, model expects " + dimension);
+        for (int i = 0; i < dimension; i++)
+            batch[offset + i] = (ap.value.get(i) - means[i]) / stds[i];
+    }
+
+    /**
+     * Score rows [from, to) of a normalized batch.  Rows are processed in small blocks so every support vector is
+     * loaded once per block; each row still accumulates over the support vectors in model order.
+     */
+    private void score(double [] batch, int from, int to, double [] result)
+    {
+        double [] sums = new double[BATCH_BLOCK];
+        for (int start = from; start < to; start += BATCH_BLOCK)
+        {
+            int rows = Math.min(BATCH_BLOCK, to - start);
+            for (int r = 0; r < rows; r++)
+                sums[r] = 0;
+
+            for (int s = 0; s < count; s++)
+            {
+                int svOffset = s * dimension;
+                for (int r = 0; r < rows; r++)
+                    sums[r] += kernel.evaluate(batch, (start + r) * dimension, supportVectors, svOffset, dimension) * dualCoefs[s];
+            }
+
+            for (int r = 0; r < rows; r++)
+            {
+                result[start + r] = probability(sums[r] + intercept);
+            }
+        }
+    }
+
+    private class ScoreTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final double [] batch;
+        private final int from;
+        private final int to;
+        private final double [] result;
+
+        ScoreTask(double [] batch, int from, int to, double [] result)
+        {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (to - from <= PARALLEL_GRAIN)
+            {
+                score(batch, from, to, result);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ScoreTask(batch, from, middle, result), new ScoreTask(batch, middle, to, result));
+        }
+    }
+
+
+    /**
+     * Kernel resolved when the model is compiled
+     */
+    static abstract class KernelFunction
+    {
+        abstract double evaluate(double [] x, int xOffset, double [] sv, int svOffset, int dimension);
+    }
+
+    static class RbfKernel extends KernelFunction
+    {
+        final double gamma;
+
+        RbfKernel(double gamma)
+        {
+            this.gamma = gamma;
+        }
+
+        @Override
+        double evaluate(double [] x, int xOffset, double [] sv, int svOffset, int dimension)
+        {
+            double norm = 0;
+            for (int i = 0; i < dimension; i++)
+            {
+                double temp = x[xOffset + i] - sv[svOffset + i];
+                norm += temp * temp;
+            }
+            return Math.exp(-gamma * norm);
+        }
+    }
+
+    static class PolyKernel extends KernelFunction
+    {
+        private final int degree;
+
+        PolyKernel(int degree)
+        {
+            this.degree = degree;
+        }
+
+        @Override
+        double evaluate(double [] x, int xOffset, double [] sv, int svOffset, int dimension)
+        {
+            double dotvalue = 0;
+            for (int i = 0; i < dimension; i++)
+                dotvalue += x[xOffset + i] * sv[svOffset + i];
+            //Scaled by the dimension, as in SVCModel
+            return Math.pow(dotvalue / dimension, degree);
+        }
+    }
+
+    static class LinearKernel extends KernelFunction
+    {
+        @Override
+        double evaluate(double [] x, int xOffset, double [] sv, int svOffset, int dimension)
+        {
+            double dotvalue = 0;
+            for (int i = 0; i < dimension; i++)
+                dotvalue += x[xOffset + i] * sv[svOffset + i];
+            return dotvalue;
+        }
+    }
+}
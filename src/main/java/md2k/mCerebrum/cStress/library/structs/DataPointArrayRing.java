@@ -0,0 +1,102 @@
+package md2k.mCerebrum.cStress.library.structs;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Bounded, time indexed history of DataPointArrays
+ */
+public class DataPointArrayRing extends TimeIndexedRing {
+
+    private DataPointArray[] items;
+
+
+    /**
+     * Constructor
+     *
+     * @param maxAge   Retention horizon in milliseconds
+     * @param maxCount Maximum number of DataPointArrays to retain
+     */
+    public DataPointArrayRing(long maxAge, int maxCount) {
+        super(maxAge, maxCount);
+        items = new DataPointArray[timestamps.length];
+    }
+
+    /**
+     * Constructor using the default retention policy
+     */
+    public DataPointArrayRing() {
+        this(DEFAULT_MAX_AGE, DEFAULT_MAX_COUNT);
+    }
+
+    /**
+     * Copy Constructor
+     *
+     * @param other DataPointArrayRing to copy
+     */
+    public DataPointArrayRing(DataPointArrayRing other) {
+        super(other);
+        items = other.items.clone();
+    }
+
+
+    /**
+     * Append an entry, evicting anything outside of the retention policy
+     *
+     * @param dpa DataPointArray to retain
+     */
+    public void add(DataPointArray dpa) {
+        int s = reserve(dpa.timestamp);
+        items[s] = dpa;
+    }
+
+    /**
+     * Retrieve an entry
+     *
+     * @param index Position from the oldest retained entry
+     * @return Stored DataPointArray
+     */
+    public DataPointArray get(int index) {
+        checkIndex(index);
+        return items[slot(index)];
+    }
+
+
+    @Override
+    protected void resizePayload(int capacity) {
+        DataPointArray[] temp = new DataPointArray[capacity];
+        for (int i = 0; i < size; i++) {
+            temp[i] = items[slot(i)];
+        }
+        items = temp;
+    }
+
+    @Override
+    protected void releasePayload(int slot) {
+        items[slot] = null;
+    }
+}
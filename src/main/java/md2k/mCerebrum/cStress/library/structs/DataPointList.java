@@ -0,0 +1,395 @@
+package md2k.mCerebrum.cStress.library.structs;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Columnar list of DataPoints
+ * <p>
+ * Timestamps and values are kept in parallel primitive arrays with amortized growth so that a stream of samples does
+ * not cost an object per sample.  The List interface is provided for compatibility and materializes a new DataPoint on
+ * every get(); hot loops should use the index-based accessors instead.
+ * </p>
+ */
+public class DataPointList extends AbstractList<DataPoint> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+    private boolean ordered;
+
+    private double[] prefixSums;
+    private double[] prefixSquares;
+    private double prefixShift;
+    private int prefixValid;
+    private int edits;
+
+
+    /**
+     * Constructor
+     */
+    public DataPointList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param capacity Initial number of DataPoints that can be stored without growing
+     */
+    public DataPointList(int capacity) {
+        timestamps = new long[Math.max(capacity, 1)];
+        values = new double[Math.max(capacity, 1)];
+        size = 0;
+        ordered = true;
+    }
+
+    /**
+     * Copy Constructor
+     *
+     * @param other Collection of DataPoints to copy
+     */
+    public DataPointList(Collection<DataPoint> other) {
+        this(other.size());
+        addAll(other);
+    }
+
+    /**
+     * Copy Constructor
+     *
+     * @param other DataPointList to copy
+     */
+    public DataPointList(DataPointList other) {
+        timestamps = Arrays.copyOf(other.timestamps, Math.max(other.size, 1));
+        values = Arrays.copyOf(other.values, Math.max(other.size, 1));
+        size = other.size;
+        ordered = other.ordered;
+    }
+
+
+    /**
+     * Timestamp of the DataPoint at an index
+     *
+     * @param index Position in the list
+     * @return Time in milliseconds since Jan 1st, 1970
+     */
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    /**
+     * Value of the DataPoint at an index
+     *
+     * @param index Position in the list
+     * @return Floating point value
+     */
+    public double getValue(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * Replace the timestamp of the DataPoint at an index
+     *
+     * @param index     Position in the list
+     * @param timestamp Time in milliseconds since Jan 1st, 1970
+     */
+    public void setTimestamp(int index, long timestamp) {
+        checkIndex(index);
+        timestamps[index] = timestamp;
+        checkOrder(index);
+    }
+
+    /**
+     * Replace the value of the DataPoint at an index
+     *
+     * @param index Position in the list
+     * @param value Floating point value
+     */
+    public void setValue(int index, double value) {
+        checkIndex(index);
+        values[index] = value;
+        invalidatePrefixSums(index);
+    }
+
+    /**
+     * Append a sample without creating a DataPoint
+     *
+     * @param timestamp Time in milliseconds since Jan 1st, 1970
+     * @param value     Floating point value
+     */
+    public void add(long timestamp, double value) {
+        if (size > 0 && timestamp < timestamps[size - 1]) {
+            ordered = false;
+        }
+        ensureCapacity(size + 1);
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+        modCount++;
+    }
+
+    /**
+     * @return True if the timestamps are known to be in non-decreasing order.  Becomes false when an entry is added or
+     * changed out of order, and true again after clear()
+     */
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Binary search for the first entry newer than a given time.  Only meaningful when isOrdered() is true.
+     *
+     * @param starttime Time in milliseconds since Jan 1st, 1970
+     * @return Index of the first entry with a timestamp strictly greater than starttime, or size() if there is none
+     */
+    public int firstIndexAfter(long starttime) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] > starttime) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Binary search for the first entry at or after a given time.  Only meaningful when isOrdered() is true.
+     *
+     * @param time Time in milliseconds since Jan 1st, 1970
+     * @return Index of the first entry with a timestamp greater than or equal to time, or size() if there is none
+     */
+    public int firstIndexAtOrAfter(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] >= time) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Read-only view of a contiguous run of this list.  No DataPoints are copied; the view reads the list directly and
+     * must not be used after the list is modified at or before toIndex.
+     *
+     * @param fromIndex First index of the view, inclusive
+     * @param toIndex   Last index of the view, exclusive
+     * @return View over [fromIndex, toIndex)
+     */
+    public DataPointRange range(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size);
+        }
+        return new DataPointRange(this, fromIndex, toIndex);
+    }
+
+    /**
+     * Sum of values over [fromIndex, toIndex), shifted by getPrefixShift() to limit cancellation
+     */
+    double shiftedSum(int fromIndex, int toIndex) {
+        updatePrefixSums();
+        return prefixSums[toIndex] - prefixSums[fromIndex];
+    }
+
+    /**
+     * Sum of squared values over [fromIndex, toIndex), shifted by getPrefixShift() to limit cancellation
+     */
+    double shiftedSquares(int fromIndex, int toIndex) {
+        updatePrefixSums();
+        return prefixSquares[toIndex] - prefixSquares[fromIndex];
+    }
+
+    double getPrefixShift() {
+        updatePrefixSums();
+        return prefixShift;
+    }
+
+    double[] getValuesRef() {
+        return values;
+    }
+
+    /**
+     * Count of changes to existing entries, so views can tell when copies they hold are out of date.  Appends are not
+     * counted since they leave every existing entry in place.
+     */
+    int getEdits() {
+        return edits;
+    }
+
+    /**
+     * Extend the prefix sums over entries appended or changed since they were last used.  Nothing is allocated until a
+     * range statistic is first requested.
+     */
+    private void updatePrefixSums() {
+        if (prefixValid == size && prefixSums != null) {
+            return;
+        }
+        if (prefixSums == null || prefixSums.length < size + 1) {
+            int capacity = Math.max(size + 1, timestamps.length + 1);
+            prefixSums = prefixSums == null ? new double[capacity] : Arrays.copyOf(prefixSums, capacity);
+            prefixSquares = prefixSquares == null ? new double[capacity] : Arrays.copyOf(prefixSquares, capacity);
+        }
+        if (prefixValid == 0) {
+            prefixShift = size > 0 ? values[0] : 0.0;
+        }
+        for (int i = prefixValid; i < size; i++) {
+            double shifted = values[i] - prefixShift;
+            prefixSums[i + 1] = prefixSums[i] + shifted;
+            prefixSquares[i + 1] = prefixSquares[i] + shifted * shifted;
+        }
+        prefixValid = size;
+    }
+
+    private void invalidatePrefixSums(int index) {
+        edits++;
+        if (index < prefixValid) {
+            prefixValid = index;
+        }
+    }
+
+    /**
+     * Copy values into a primitive array
+     *
+     * @return Array of values in list order
+     */
+    public double[] getValues() {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Copy timestamps into a primitive array
+     *
+     * @return Array of timestamps in list order
+     */
+    public long[] getTimestamps() {
+        return Arrays.copyOf(timestamps, size);
+    }
+
+
+    @Override
+    public DataPoint get(int index) {
+        checkIndex(index);
+        return new DataPoint(timestamps[index], values[index]);
+    }
+
+    @Override
+    public DataPoint set(int index, DataPoint dp) {
+        DataPoint previous = get(index);
+        timestamps[index] = dp.timestamp;
+        values[index] = dp.value;
+        checkOrder(index);
+        invalidatePrefixSums(index);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, DataPoint dp) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        ensureCapacity(size + 1);
+        System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        timestamps[index] = dp.timestamp;
+        values[index] = dp.value;
+        size++;
+        modCount++;
+        checkOrder(index);
+        invalidatePrefixSums(index);
+    }
+
+    @Override
+    public DataPoint remove(int index) {
+        DataPoint previous = get(index);
+        System.arraycopy(timestamps, index + 1, timestamps, index, size - index - 1);
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        modCount++;
+        invalidatePrefixSums(index);
+        return previous;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        System.arraycopy(timestamps, toIndex, timestamps, fromIndex, size - toIndex);
+        System.arraycopy(values, toIndex, values, fromIndex, size - toIndex);
+        size -= toIndex - fromIndex;
+        modCount++;
+        invalidatePrefixSums(fromIndex);
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        ordered = true;
+        modCount++;
+        invalidatePrefixSums(0);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > timestamps.length) {
+            int newCapacity = Math.max(capacity, timestamps.length + (timestamps.length >> 1));
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+    }
+
+    private void checkOrder(int index) {
+        if ((index > 0 && timestamps[index - 1] > timestamps[index])
+                || (index < size - 1 && timestamps[index] > timestamps[index + 1])) {
+            ordered = false;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
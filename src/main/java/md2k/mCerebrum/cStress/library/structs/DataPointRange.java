@@ -0,0 +1,155 @@
+package md2k.mCerebrum.cStress.library.structs;
+
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+
+import java.util.Arrays;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Read-only view of a contiguous run of a DataPointList
+ * <p>
+ * Mean and standard deviation come from prefix sums kept by the underlying list, so each is constant time regardless
+ * of the length of the run.  Percentiles copy the values of the run on first use, and again after the list is
+ * edited in place.
+ * </p>
+ */
+public class DataPointRange {
+
+    private final DataPointList list;
+    private final int fromIndex;
+    private final int toIndex;
+    private Percentile percentile;
+    private int percentileEdits;
+
+
+    /**
+     * Constructor
+     *
+     * @param list      Underlying list
+     * @param fromIndex First index of the view, inclusive
+     * @param toIndex   Last index of the view, exclusive
+     */
+    DataPointRange(DataPointList list, int fromIndex, int toIndex) {
+        this.list = list;
+        this.fromIndex = fromIndex;
+        this.toIndex = toIndex;
+    }
+
+
+    /**
+     * @return Number of DataPoints in the view
+     */
+    public int size() {
+        return toIndex - fromIndex;
+    }
+
+    /**
+     * Timestamp of the DataPoint at an index
+     *
+     * @param index Position in the view
+     * @return Time in milliseconds since Jan 1st, 1970
+     */
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return list.getTimestamp(fromIndex + index);
+    }
+
+    /**
+     * Value of the DataPoint at an index
+     *
+     * @param index Position in the view
+     * @return Floating point value
+     */
+    public double getValue(int index) {
+        checkIndex(index);
+        return list.getValue(fromIndex + index);
+    }
+
+    /**
+     * Copy values into a primitive array
+     *
+     * @return Array of values in view order
+     */
+    public double[] getValues() {
+        return Arrays.copyOfRange(list.getValuesRef(), fromIndex, toIndex);
+    }
+
+    /**
+     * @return Mean of the values in the view, NaN if it is empty
+     */
+    public double getMean() {
+        int n = size();
+        if (n == 0) {
+            return Double.NaN;
+        }
+        return list.getPrefixShift() + list.shiftedSum(fromIndex, toIndex) / n;
+    }
+
+    /**
+     * @return Sample variance of the values in the view, NaN if it has fewer than two values (as DataPointStream)
+     */
+    public double getVariance() {
+        int n = size();
+        if (n < 2) {
+            return Double.NaN;
+        }
+        double sum = list.shiftedSum(fromIndex, toIndex);
+        double variance = (list.shiftedSquares(fromIndex, toIndex) - sum * sum / n) / (n - 1);
+        return Math.max(variance, 0.0);
+    }
+
+    /**
+     * @return Sample standard deviation of the values in the view, NaN if it has fewer than two values
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Exact percentile computation, same estimator as DataPointStream.getPercentile
+     *
+     * @param p The percentile to retrieve
+     * @return Computed percentile, NaN if the view is empty
+     */
+    public double getPercentile(double p) {
+        if (percentile == null || percentileEdits != list.getEdits()) {
+            percentile = new Percentile();
+            percentile.setData(list.getValuesRef(), fromIndex, size());
+            percentileEdits = list.getEdits();
+        }
+        return percentile.evaluate(p);
+    }
+
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package md2k.mCerebrum.cStress.library.structs;
+
+import java.util.Arrays;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Bounded, time indexed history of DataPoints stored in primitive arrays
+ */
+public class DataPointRing extends TimeIndexedRing {
+
+    private double[] values;
+
+
+    /**
+     * Constructor
+     *
+     * @param maxAge   Retention horizon in milliseconds
+     * @param maxCount Maximum number of DataPoints to retain
+     */
+    public DataPointRing(long maxAge, int maxCount) {
+        super(maxAge, maxCount);
+        values = new double[timestamps.length];
+    }
+
+    /**
+     * Constructor using the default retention policy
+     */
+    public DataPointRing() {
+        this(DEFAULT_MAX_AGE, DEFAULT_MAX_COUNT);
+    }
+
+    /**
+     * Copy Constructor
+     *
+     * @param other DataPointRing to copy
+     */
+    public DataPointRing(DataPointRing other) {
+        super(other);
+        values = Arrays.copyOf(other.values, other.values.length);
+    }
+
+
+    /**
+     * Append a sample, evicting anything outside of the retention policy
+     *
+     * @param timestamp Time in milliseconds since Jan 1st, 1970
+     * @param value     Floating point value
+     */
+    public void add(long timestamp, double value) {
+        int s = reserve(timestamp);
+        values[s] = value;
+    }
+
+    /**
+     * Value of an entry
+     *
+     * @param index Position from the oldest retained entry
+     * @return Floating point value
+     */
+    public double getValue(int index) {
+        checkIndex(index);
+        return values[slot(index)];
+    }
+
+    /**
+     * Materialize an entry
+     *
+     * @param index Position from the oldest retained entry
+     * @return New DataPoint
+     */
+    public DataPoint get(int index) {
+        checkIndex(index);
+        int s = slot(index);
+        return new DataPoint(timestamps[s], values[s]);
+    }
+
+
+    @Override
+    protected void resizePayload(int capacity) {
+        double[] temp = new double[capacity];
+        for (int i = 0; i < size; i++) {
+            temp[i] = values[slot(i)];
+        }
+        values = temp;
+    }
+
+    @Override
+    protected void releasePayload(int slot) {
+        //Nothing to release for primitive values
+    }
+}
@@ -3,6 +3,9 @@ package md2k.mCerebrum.cStress.library.structs;
 import org.apache.commons.math3.linear.ArrayRealVector;
 import org.apache.commons.math3.linear.RealVector;
 
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Created by karenhovsepian on 12/15/15.
  */
@@ -61,6 +64,7 @@ public class SVCModel extends Model{
 
 
     private NormParam [] normparams;
+    private transient CompiledSVCModel compiled;
     class NormParam
     {
         double mean;
@@ -93,53 +97,74 @@ public class SVCModel extends Model{
     }
 
 
-    public double computeProbability(DataPointArray ap)
+    /**
+     * Compile the model into its scoring engine.  The engine is built once and shared by later calls.
+     *
+     * @return Compiled scoring engine
+     */
+    public synchronized CompiledSVCModel compile()
     {
-        double outputvalue = 0;
-        double [] vals = new double[ap.value.size()];
-
-        for(int i=0;i<vals.length;i++)
+        if (compiled == null)
         {
-            vals[i] = (ap.value.get(i)-normparams[i].mean)/normparams[i].std;
-        }
-        if(kernel.type.equals("rbf"))
-        {
-            for(Support supportvector: support) {
-                double norm = 0;
-                //computing second norm
-                for (int i = 0; i < ap.value.size(); i++) {
-                    double temp = (vals[i] - supportvector.supportVector[i]);
-                    norm += temp * temp;
-                }
-                outputvalue += Math.exp(-kernel.parameters[0].value * norm)* supportvector.dualCoef;
+            int dimension = normparams.length;
+            double [] supportVectors = new double[support.length * dimension];
+            double [] dualCoefs = new double[support.length];
+            for (int s = 0; s < support.length; s++)
+            {
+                System.arraycopy(support[s].supportVector, 0, supportVectors, s * dimension, dimension);
+                dualCoefs[s] = support[s].dualCoef;
             }
-            outputvalue += intercept;
-        }
-        else if(kernel.type.equals("poly"))
-        {
-            for(Support supportvector: support) {
-                double dotvalue  = 0;
-                //computing dot product
-                for (int i = 0; i < ap.value.size(); i++)
-                    dotvalue += vals[i]*supportvector.supportVector[i];
 
-                outputvalue += Math.pow(dotvalue/ap.value.size(),(int)kernel.parameters[0].value)*supportvector.dualCoef;
+            double [] means = new double[dimension];
+            double [] stds = new double[dimension];
+            for (int i = 0; i < dimension; i++)
+            {
+                means[i] = normparams[i].mean;
+                stds[i] = normparams[i].std;
             }
-            outputvalue += intercept;
-        }
-        else //linear
-        {
-            for(Support supportvector: support) {
-                double dotvalue  = 0;
-                //computing dot product
-                for (int i = 0; i < ap.value.size(); i++)
-                    dotvalue += vals[i]*supportvector.supportVector[i];
 
-                outputvalue += dotvalue*supportvector.dualCoef;
-            }
-            outputvalue += intercept;
+            CompiledSVCModel.KernelFunction function;
+            if (kernel.type.equals("rbf"))
+                function = new CompiledSVCModel.RbfKernel(kernel.parameters[0].value);
+            else if (kernel.type.equals("poly"))
+                function = new CompiledSVCModel.PolyKernel((int) kernel.parameters[0].value);
+            else //linear
+                function = new CompiledSVCModel.LinearKernel();
+
+            compiled = new CompiledSVCModel(supportVectors, dualCoefs, means, stds, function, intercept, probA, probB, bias);
         }
-        return 1.0/(1.0+Math.exp(probA*outputvalue+probB));
+        return compiled;
     }
-}
 
+
+    public double computeProbability(DataPointArray ap)
+    {
+        return compile().computeProbability(ap);
+    }
+
+
+    /**
+     * Score a batch of feature vectors
+     *
+     * @param aps  Feature vectors
+     * @param pool Pool to split the batch across, or null to score on the calling thread
+     * @return Stress probabilities in the order of aps
+     */
+    public double [] computeProbabilities(List<DataPointArray> aps, ForkJoinPool pool)
+    {
+        return compile().computeProbabilities(aps, pool);
+    }
+
+    /**
+     * Build an approximate scoring engine for this model
+     *
+     * @param tolerance Largest acceptable probability error per feature vector
+     * @return Approximate engine, or null if the model does not use an rbf kernel
+     */
+    public ApproximateSVCModel approximate(double tolerance)
+    {
+        if (!kernel.type.equals("rbf"))
+            return null;
+        return new ApproximateSVCModel(compile(), tolerance);
+    }
+}
@@ -0,0 +1,248 @@
+package md2k.mCerebrum.cStress.library.structs;
+
+import java.util.Arrays;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+/**
+ * Bounded ring of time stamped entries
+ * <p>
+ * Entries are kept in arrival order in a circular buffer.  The oldest entries are evicted when they fall outside of
+ * the retention horizon (relative to the newest timestamp) or when the entry limit is reached.  While timestamps
+ * arrive in non-decreasing order the ring can be binary searched by time.
+ * </p>
+ */
+public abstract class TimeIndexedRing {
+
+    public static final long DEFAULT_MAX_AGE = 60 * 60 * 1000L; //One hour of history
+    public static final int DEFAULT_MAX_COUNT = Integer.MAX_VALUE;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    protected long[] timestamps;
+    protected int head;
+    protected int size;
+
+    private long maxAge;
+    private int maxCount;
+    private boolean ordered;
+
+
+    /**
+     * Constructor
+     *
+     * @param maxAge   Retention horizon in milliseconds
+     * @param maxCount Maximum number of entries to retain
+     */
+    protected TimeIndexedRing(long maxAge, int maxCount) {
+        this.timestamps = new long[DEFAULT_CAPACITY];
+        this.head = 0;
+        this.size = 0;
+        this.maxAge = maxAge;
+        this.maxCount = Math.max(maxCount, 1);
+        this.ordered = true;
+    }
+
+    /**
+     * Copy Constructor
+     *
+     * @param other TimeIndexedRing to copy
+     */
+    protected TimeIndexedRing(TimeIndexedRing other) {
+        this.timestamps = Arrays.copyOf(other.timestamps, other.timestamps.length);
+        this.head = other.head;
+        this.size = other.size;
+        this.maxAge = other.maxAge;
+        this.maxCount = other.maxCount;
+        this.ordered = other.ordered;
+    }
+
+
+    /**
+     * Change the retention policy and evict any entries that no longer satisfy it
+     *
+     * @param maxAge   Retention horizon in milliseconds, relative to the newest entry
+     * @param maxCount Maximum number of entries to retain
+     */
+    public void setRetention(long maxAge, int maxCount) {
+        this.maxAge = maxAge;
+        this.maxCount = Math.max(maxCount, 1);
+        if (size > 0) {
+            evict(getTimestamp(size - 1), 0);
+        }
+    }
+
+    /**
+     * @return Retention horizon in milliseconds
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * @return Maximum number of entries retained
+     */
+    public int getMaxCount() {
+        return maxCount;
+    }
+
+    /**
+     * @return Number of entries currently retained
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return True if every entry was inserted in non-decreasing time order
+     */
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Timestamp of an entry
+     *
+     * @param index Position from the oldest retained entry
+     * @return Time in milliseconds since Jan 1st, 1970
+     */
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        return timestamps[slot(index)];
+    }
+
+    /**
+     * Binary search for the first entry newer than a given time.  Only meaningful when isOrdered() is true.
+     *
+     * @param starttime Time in milliseconds since Jan 1st, 1970
+     * @return Index of the first entry with a timestamp strictly greater than starttime, or size() if there is none
+     */
+    public int firstIndexAfter(long starttime) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[slot(mid)] > starttime) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        while (size > 0) {
+            removeOldest();
+        }
+        head = 0;
+        ordered = true;
+    }
+
+
+    /**
+     * Evict expired entries and claim a slot for a new entry
+     *
+     * @param timestamp Time of the new entry
+     * @return Physical slot in which the subclass stores its payload
+     */
+    protected int reserve(long timestamp) {
+        evict(timestamp, 1);
+        if (size == timestamps.length) {
+            grow(timestamps.length * 2);
+        }
+        if (size > 0 && timestamp < timestamps[slot(size - 1)]) {
+            ordered = false;
+        }
+        int s = slot(size);
+        timestamps[s] = timestamp;
+        size++;
+        return s;
+    }
+
+    /**
+     * Map a logical index onto a physical slot
+     *
+     * @param index Position from the oldest retained entry
+     * @return Physical slot
+     */
+    protected int slot(int index) {
+        int s = head + index;
+        return s < timestamps.length ? s : s - timestamps.length;
+    }
+
+    protected void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Copy the payload into a new array of the given capacity, oldest entry first
+     *
+     * @param capacity New physical capacity
+     */
+    protected abstract void resizePayload(int capacity);
+
+    /**
+     * Drop any reference held by a physical slot
+     *
+     * @param slot Physical slot
+     */
+    protected abstract void releasePayload(int slot);
+
+
+    private void evict(long newest, int incoming) {
+        while (size > 0 && (size + incoming > maxCount || timestamps[head] < newest - maxAge)) {
+            removeOldest();
+        }
+        if (size == 0) {
+            head = 0;
+            ordered = true;
+        }
+    }
+
+    private void removeOldest() {
+        releasePayload(head);
+        head = slot(1);
+        size--;
+    }
+
+    private void grow(int capacity) {
+        resizePayload(capacity);
+        long[] temp = new long[capacity];
+        for (int i = 0; i < size; i++) {
+            temp[i] = timestamps[slot(i)];
+        }
+        timestamps = temp;
+        head = 0;
+    }
+}
@@ -0,0 +1,227 @@
+package md2k.mCerebrum.cStress.tests;
+
+import md2k.mCerebrum.cStress.library.datastream.BinaryStreamReader;
+import md2k.mCerebrum.cStress.library.datastream.BinaryStreamWriter;
+import md2k.mCerebrum.cStress.library.structs.DataPointArray;
+import md2k.mCerebrum.cStress.library.structs.DataPointList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class BinaryStreamTest {
+
+    private static final double[] SPECIAL_VALUES = {Double.NaN, 0.0, -0.0, 1.5, 1.5, 1.5, -1.5,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+            Double.NaN, Double.NaN, -0.0, 0.0, 1e-300, 1e300};
+
+    private static final long[] SPECIAL_GAPS = {0, 1, 0, 1000000000000L, 1, 40, Integer.MAX_VALUE + 1L, -5, 1L << 50,
+            0, 0, 31, -1000000000000L, 1};
+
+    private Random random;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(1234);
+        file = File.createTempFile("cstress", BinaryStreamWriter.EXTENSION);
+        if (!file.delete()) {
+            throw new IOException("Could not clear " + file);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Test
+    public void dataPointsRoundTripSpecialValues() throws IOException {
+        DataPointList expected = new DataPointList();
+        long timestamp = 1447000000000L;
+        for (int i = 0; i < SPECIAL_VALUES.length; i++) {
+            timestamp += SPECIAL_GAPS[i % SPECIAL_GAPS.length];
+            expected.add(timestamp, SPECIAL_VALUES[i]);
+        }
+
+        //One chunk per window, with the writer reopened in between to append to the existing file
+        BinaryStreamWriter writer = new BinaryStreamWriter(file.getPath(), BinaryStreamWriter.KIND_DATAPOINT);
+        DataPointList window = new DataPointList();
+        for (int i = 0; i < expected.size(); i++) {
+            window.add(expected.getTimestamp(i), expected.getValue(i));
+            if (i == 4) {
+                writer.write(window);
+            } else if (i == 11) {
+                writer.write(window, 5);
+                writer.close();
+                writer = new BinaryStreamWriter(file.getPath(), BinaryStreamWriter.KIND_DATAPOINT);
+            }
+        }
+        writer.write(window, 12);
+        writer.close();
+
+        BinaryStreamReader reader = new BinaryStreamReader(file.getPath());
+        try {
+            assertEquals(BinaryStreamWriter.KIND_DATAPOINT, reader.getKind());
+            assertEquals(3, reader.getChunkCount());
+            assertEquals(5, reader.getCount(0));
+            assertDataPointsEqual(expected, reader.readDataPoints(Long.MIN_VALUE, Long.MAX_VALUE));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void dataPointsRoundTripRandomWindows() throws IOException {
+        DataPointList expected = new DataPointList();
+        BinaryStreamWriter writer = new BinaryStreamWriter(file.getPath(), BinaryStreamWriter.KIND_DATAPOINT);
+        try {
+            long timestamp = 1447000000000L;
+            for (int chunk = 0; chunk < 50; chunk++) {
+                int start = expected.size();
+                int size = random.nextInt(300);
+                for (int i = 0; i < size; i++) {
+                    timestamp += randomGap();
+                    expected.add(timestamp, randomValue(expected));
+                }
+                writer.write(expected, start);
+            }
+        } finally {
+            writer.close();
+        }
+
+        BinaryStreamReader reader = new BinaryStreamReader(file.getPath());
+        try {
+            assertDataPointsEqual(expected, reader.readDataPoints(Long.MIN_VALUE, Long.MAX_VALUE));
+
+            for (int trial = 0; trial < 100; trial++) {
+                long starttime = expected.getTimestamp(random.nextInt(expected.size()));
+                long endtime = starttime + random.nextInt(100000);
+                DataPointList inRange = new DataPointList();
+                for (int i = 0; i < expected.size(); i++) {
+                    if (expected.getTimestamp(i) >= starttime && expected.getTimestamp(i) < endtime) {
+                        inRange.add(expected.getTimestamp(i), expected.getValue(i));
+                    }
+                }
+                assertDataPointsEqual(inRange, reader.readDataPoints(starttime, endtime));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void dataPointArraysRoundTrip() throws IOException {
+        List<DataPointArray> expected = new ArrayList<DataPointArray>();
+        BinaryStreamWriter writer = new BinaryStreamWriter(file.getPath(), BinaryStreamWriter.KIND_DATAPOINTARRAY);
+        try {
+            long timestamp = 1447000000000L;
+            int special = 0;
+            for (int chunk = 0; chunk < 20; chunk++) {
+                List<DataPointArray> window = new ArrayList<DataPointArray>();
+                int size = random.nextInt(40);
+                for (int i = 0; i < size; i++) {
+                    timestamp += SPECIAL_GAPS[random.nextInt(SPECIAL_GAPS.length)];
+                    int length = random.nextInt(5) == 0 ? 0 : 1 + random.nextInt(40);
+                    List<Double> values = new ArrayList<Double>(length);
+                    for (int j = 0; j < length; j++) {
+                        if (random.nextBoolean()) {
+                            values.add(SPECIAL_VALUES[special++ % SPECIAL_VALUES.length]);
+                        } else {
+                            values.add(Math.rint(random.nextGaussian() * 4.0));
+                        }
+                    }
+                    window.add(new DataPointArray(timestamp, values));
+                }
+                writer.write(window);
+                expected.addAll(window);
+            }
+        } finally {
+            writer.close();
+        }
+
+        BinaryStreamReader reader = new BinaryStreamReader(file.getPath());
+        try {
+            assertEquals(BinaryStreamWriter.KIND_DATAPOINTARRAY, reader.getKind());
+            List<DataPointArray> actual = reader.readDataPointArrays(Long.MIN_VALUE, Long.MAX_VALUE);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).timestamp, actual.get(i).timestamp);
+                assertEquals(expected.get(i).value.size(), actual.get(i).value.size());
+                for (int j = 0; j < expected.get(i).value.size(); j++) {
+                    assertEquals(Double.doubleToLongBits(expected.get(i).value.get(j)),
+                            Double.doubleToLongBits(actual.get(i).value.get(j)));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+
+    private long randomGap() {
+        if (random.nextInt(20) == 0) {
+            return SPECIAL_GAPS[random.nextInt(SPECIAL_GAPS.length)];
+        }
+        return random.nextInt(40);
+    }
+
+    /**
+     * Mix of repeats of the previous value, special values and sensor-like samples, which exercises every branch of
+     * the XOR value encoding
+     */
+    private double randomValue(DataPointList previous) {
+        int choice = random.nextInt(10);
+        if (choice == 0 && previous.size() > 0) {
+            return previous.getValue(previous.size() - 1);
+        } else if (choice == 1) {
+            return SPECIAL_VALUES[random.nextInt(SPECIAL_VALUES.length)];
+        } else if (choice < 5) {
+            return 2000 + random.nextInt(100);
+        }
+        return random.nextGaussian() * 1000.0;
+    }
+
+    private static void assertDataPointsEqual(DataPointList expected, DataPointList actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getTimestamp(i), actual.getTimestamp(i));
+            assertEquals(Double.doubleToLongBits(expected.getValue(i)), Double.doubleToLongBits(actual.getValue(i)));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package md2k.mCerebrum.cStress.tests;
+
+import md2k.mCerebrum.CSVDataPoint;
+import md2k.mCerebrum.CSVParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+@SuppressWarnings("deprecation")
+public class CSVParserTest {
+
+    private Random random;
+    private List<File> files;
+
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(1234);
+        files = new ArrayList<File>();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (File f : files) {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void sortEmptyParser() {
+        CSVParser parser = new CSVParser();
+        parser.sort();
+
+        assertEquals(0, parser.size());
+        assertFalse(parser.iterator().hasNext());
+    }
+
+    @Test
+    public void sortMergesImportedFilesStably() throws IOException {
+        for (int trial = 0; trial < 50; trial++) {
+            CSVParser parser = new CSVParser();
+            List<CSVDataPoint> expected = new ArrayList<CSVDataPoint>();
+            int fileCount = 1 + random.nextInt(5);
+            for (int channel = 0; channel < fileCount; channel++) {
+                File file = File.createTempFile("csvparser", ".txt");
+                files.add(file);
+                FileWriter writer = new FileWriter(file);
+                long timestamp = random.nextInt(100);
+                int size = random.nextInt(trial < 10 ? 2 : 3000);
+                for (int i = 0; i < size; i++) {
+                    timestamp += random.nextInt(20);
+                    int value = random.nextInt(4096);
+                    writer.write(value + " " + timestamp + "\n");
+                    expected.add(new CSVDataPoint(channel, timestamp, value));
+                }
+                writer.close();
+                parser.importData(file.getAbsolutePath(), channel);
+            }
+
+            Collections.sort(expected, new Comparator<CSVDataPoint>() {
+                @Override
+                public int compare(CSVDataPoint a, CSVDataPoint b) {
+                    return a.timestamp < b.timestamp ? -1 : (a.timestamp == b.timestamp ? 0 : 1);
+                }
+            });
+            parser.sort();
+
+            assertEquals(expected.size(), parser.size());
+            int i = 0;
+            for (CSVDataPoint dp : parser) {
+                assertEquals(expected.get(i).timestamp, dp.timestamp);
+                assertEquals(expected.get(i).channel, dp.channel);
+                assertEquals(expected.get(i).value, dp.value, 0.0);
+                i++;
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package md2k.mCerebrum.cStress.tests;
+
+import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
+import md2k.mCerebrum.cStress.library.structs.DataPoint;
+import md2k.mCerebrum.cStress.library.structs.DataPointList;
+import md2k.mCerebrum.cStress.library.structs.DataPointRange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class DataPointRangeTest {
+
+    private static final double[] PERCENTILES = {1, 25, 50, 75, 99};
+
+    private Random random;
+
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(1234);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+    }
+
+    @Test
+    public void rangeMatchesStreamOverSubList() {
+        for (int trial = 0; trial < 200; trial++) {
+            DataPointList list = randomList(random.nextInt(300));
+            int fromIndex = random.nextInt(list.size() + 1);
+            int toIndex = fromIndex + random.nextInt(list.size() - fromIndex + 1);
+
+            assertRangeEquals(list, fromIndex, toIndex, list.range(fromIndex, toIndex));
+        }
+    }
+
+    @Test
+    public void rangeFollowsAppends() {
+        for (int trial = 0; trial < 100; trial++) {
+            DataPointList list = randomList(1 + random.nextInt(100));
+            DataPointRange whole = list.range(0, list.size());
+            assertRangeEquals(list, 0, list.size(), whole);
+
+            //Appends past the view may grow the prefix sum arrays, but must leave the view unchanged
+            int size = list.size();
+            for (int i = 0; i < 500; i++) {
+                list.add(list.getTimestamp(list.size() - 1) + 20, randomValue());
+            }
+            assertRangeEquals(list, 0, size, whole);
+
+            int fromIndex = random.nextInt(list.size());
+            int toIndex = fromIndex + 1 + random.nextInt(list.size() - fromIndex);
+            assertRangeEquals(list, fromIndex, toIndex, list.range(fromIndex, toIndex));
+        }
+    }
+
+    @Test
+    public void rangeFollowsInPlaceEdits() {
+        for (int trial = 0; trial < 100; trial++) {
+            DataPointList list = randomList(2 + random.nextInt(200));
+            int fromIndex = random.nextInt(list.size() / 2);
+            int toIndex = list.size() / 2 + 1 + random.nextInt(list.size() - list.size() / 2);
+            DataPointRange range = list.range(fromIndex, toIndex);
+            assertRangeEquals(list, fromIndex, toIndex, range);
+
+            //Edits inside the view, before it and through set(), all of which rewind the prefix sums
+            list.setValue(fromIndex + random.nextInt(toIndex - fromIndex), randomValue());
+            assertRangeEquals(list, fromIndex, toIndex, range);
+            list.setValue(random.nextInt(fromIndex + 1), randomValue());
+            assertRangeEquals(list, fromIndex, toIndex, range);
+            int index = fromIndex + random.nextInt(toIndex - fromIndex);
+            list.set(index, new DataPoint(list.getTimestamp(index), randomValue()));
+            assertRangeEquals(list, fromIndex, toIndex, range);
+
+            //Inserting and removing shift the entries under the view, so only new views are compared
+            index = random.nextInt(list.size());
+            list.add(index, new DataPoint(list.getTimestamp(index), randomValue()));
+            assertRangeEquals(list, fromIndex, toIndex, list.range(fromIndex, toIndex));
+            list.remove(random.nextInt(list.size()));
+            assertRangeEquals(list, fromIndex, toIndex - 1, list.range(fromIndex, toIndex - 1));
+        }
+    }
+
+
+    private DataPointList randomList(int size) {
+        DataPointList list = new DataPointList();
+        long timestamp = 1447000000000L;
+        for (int i = 0; i < size; i++) {
+            timestamp += 1 + random.nextInt(40);
+            list.add(timestamp, randomValue());
+        }
+        return list;
+    }
+
+    /**
+     * Values sit on a large offset with frequent repeats, which is where a plain sum of squares would cancel badly
+     */
+    private double randomValue() {
+        if (random.nextInt(10) == 0) {
+            return 1000.0;
+        }
+        return 1000.0 + random.nextGaussian() * 5.0;
+    }
+
+    private static void assertRangeEquals(DataPointList list, int fromIndex, int toIndex, DataPointRange range) {
+        DataPointStream expected = new DataPointStream("expected", list.subList(fromIndex, toIndex));
+
+        assertEquals(toIndex - fromIndex, range.size());
+        assertEquals(expected.getMean(), range.getMean(), 1e-9);
+        assertEquals(expected.getStandardDeviation(), range.getStandardDeviation(), 1e-7);
+        for (double p : PERCENTILES) {
+            assertEquals(expected.getPercentile((int) p), range.getPercentile(p), 0.0);
+        }
+    }
+}
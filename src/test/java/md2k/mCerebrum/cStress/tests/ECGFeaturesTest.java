@@ -1,7 +1,25 @@
 package md2k.mCerebrum.cStress.tests;
 
+import md2k.mCerebrum.cStress.autosense.AUTOSENSE;
+import md2k.mCerebrum.cStress.features.ECGFeatures;
+import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
+import md2k.mCerebrum.cStress.library.datastream.DataStreams;
+import md2k.mCerebrum.cStress.library.signalprocessing.ECG;
+import md2k.mCerebrum.cStress.library.signalprocessing.StreamingRPeakDetector;
+import md2k.mCerebrum.cStress.library.structs.DataPoint;
+import md2k.mCerebrum.cStress.library.structs.Lomb;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /*
  * Copyright (c) 2015, The University of Memphis, MD2K Center
@@ -31,13 +49,409 @@ import org.junit.Before;
  */
 public class ECGFeaturesTest {
 
+    private static final double FREQUENCY = 64.0;
+    private static final double LOMB_BAND_TOLERANCE = 1e-3;
+    private static final long RPEAK_WARMUP_MILLIS = 15000;
+    private static final int RPEAK_MISMATCH_LIMIT = 2;
+
+    private Random random;
+
     @Before
     public void setUp() throws Exception {
-
+        random = new Random(1234);
     }
 
     @After
     public void tearDown() throws Exception {
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void filterPeaksTemp2MatchesFixedPointIteration() {
+        for (int trial = 0; trial < 200; trial++) {
+            DataPointStream temp1 = new DataPointStream("temp1");
+            long timestamp = 0;
+            int size = random.nextInt(200);
+            for (int i = 0; i < size; i++) {
+                timestamp += random.nextInt(60);
+                double value = random.nextInt(50) == 0 ? -999999 : random.nextInt(20);
+                temp1.add(timestamp, value);
+            }
+
+            DataPointStream expected = new DataPointStream("expected");
+            referenceFilterPeaksTemp2(expected, temp1, FREQUENCY);
+            DataPointStream actual = new DataPointStream("actual");
+            ECGFeatures.filterPeaksTemp2(actual, temp1, FREQUENCY);
+
+            assertStreamEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void filterRpeaksMatchesWindowScan() {
+        for (int trial = 0; trial < 200; trial++) {
+            DataPointStream peaks = new DataPointStream("peaks");
+            DataPointStream temp2 = new DataPointStream("temp2");
+            long timestamp = 0;
+            int size = random.nextInt(200);
+            for (int i = 0; i < size; i++) {
+                timestamp += random.nextInt(12);
+                peaks.add(timestamp, random.nextInt(100));
+                if (random.nextInt(4) == 0) {
+                    temp2.add(timestamp, peaks.data.getValue(i));
+                }
+            }
+            if (trial % 4 == 0 && temp2.data.size() > 2) {
+                //Out of order candidates and peaks take the fallback paths
+                temp2.data.setTimestamp(temp2.data.size() / 2, 0);
+                peaks.data.setTimestamp(peaks.data.size() / 2, timestamp + 100);
+            }
+
+            DataPointStream expected = new DataPointStream("expected");
+            referenceFilterRpeaks(expected, temp2, peaks, FREQUENCY);
+            DataPointStream actual = new DataPointStream("actual");
+            ECGFeatures.filterRpeaks(actual, temp2, peaks, FREQUENCY);
+
+            assertStreamEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void validRRintervalMatchesTimestampSearch() {
+        for (int trial = 0; trial < 200; trial++) {
+            DataPointStream rr = new DataPointStream("rr");
+            long timestamp = 0;
+            int size = 1 + random.nextInt(150);
+            for (int i = 0; i < size; i++) {
+                if (random.nextInt(10) != 0) {
+                    timestamp += 300 + random.nextInt(900);
+                }
+                double value = random.nextInt(20) == 0 ? 0.1 + 3.0 * random.nextDouble() : 0.7 + 0.3 * random.nextDouble();
+                rr.add(timestamp, value);
+            }
+            if (trial % 4 == 0) {
+                rr.data.setTimestamp(rr.data.size() / 2, 0);
+            }
+
+            DataPointStream expectedOutlier = new DataPointStream("expected.outlier");
+            DataPointStream expectedValid = new DataPointStream("expected.valid");
+            DataPointStream expectedDiff = new DataPointStream("expected.diff");
+            referenceValidRRinterval(expectedOutlier, expectedValid, expectedDiff, rr);
+
+            DataPointStream actualOutlier = new DataPointStream("actual.outlier");
+            DataPointStream actualValid = new DataPointStream("actual.valid");
+            DataPointStream actualDiff = new DataPointStream("actual.diff");
+            ECGFeatures.validRRinterval(actualOutlier, actualValid, actualDiff, rr);
+
+            assertStreamEquals(expectedOutlier, actualOutlier);
+            assertStreamEquals(expectedValid, actualValid);
+            assertStreamEquals(expectedDiff, actualDiff);
+        }
+    }
+
+    /**
+     * fastLomb against the direct periodogram on the LF/HF ratio and band powers taken by ECGFeatures, with RR intervals
+     * indexed by beat as there.  The extirpolation error is largest in the high frequency band, up to about 3e-4
+     * relative on these inputs, so each band is checked to LOMB_BAND_TOLERANCE relative.
+     */
+    @Test
+    public void fastLombMatchesLombOnBandPowers() {
+        for (int trial = 0; trial < 500; trial++) {
+            int size = 10 + random.nextInt(300);
+            double phase = 2.0 * Math.PI * random.nextDouble();
+            double[] rrTimes = new double[size];
+            double[] rrValues = new double[size];
+            DataPoint[] dp = new DataPoint[size];
+            for (int i = 0; i < size; i++) {
+                rrTimes[i] = i;
+                rrValues[i] = 0.8 + 0.05 * Math.sin(2.0 * Math.PI * 0.25 * i + phase)
+                        + 0.03 * Math.sin(2.0 * Math.PI * 0.1 * i) + 0.02 * random.nextGaussian();
+                dp[i] = new DataPoint(i, rrValues[i]);
+            }
+
+            Lomb expected = ECG.lomb(dp);
+            Lomb actual = ECG.fastLomb(rrTimes, rrValues, size);
+
+            assertArrayEquals(expected.f, actual.f, 0.0);
+            assertRelativeEquals(ECG.heartRateLFHF(expected.P, expected.f, 0.09, 0.15),
+                    ECG.heartRateLFHF(actual.P, actual.f, 0.09, 0.15));
+            assertRelativeEquals(ECG.heartRatePower(expected.P, expected.f, 0.1, 0.2),
+                    ECG.heartRatePower(actual.P, actual.f, 0.1, 0.2));
+            assertRelativeEquals(ECG.heartRatePower(expected.P, expected.f, 0.2, 0.3),
+                    ECG.heartRatePower(actual.P, actual.f, 0.2, 0.3));
+            assertRelativeEquals(ECG.heartRatePower(expected.P, expected.f, 0.3, 0.4),
+                    ECG.heartRatePower(actual.P, actual.f, 0.3, 0.4));
+        }
+    }
+
+    /**
+     * StreamingRPeakDetector fed one sample at a time against the batch R-peaks of ECGFeatures on a synthetic ECG whose
+     * heart rate ramps from 130 to 180 bpm.  Both are compared after RPEAK_WARMUP_MILLIS, while the batch thresholds
+     * settle, and up to the streaming latency (filter delay plus refractory period) before the end of the window.
+     * Peaks must line up to one sample, with RPEAK_MISMATCH_LIMIT allowed for the batch thresholding on noise.
+     */
+    @Test
+    public void streamingRPeaksMatchBatchAboveOneHundredTwentyBpm() {
+        long starttime = 1000000;
+        List<Long> beats = new ArrayList<Long>();
+        double beat = 0.5;
+        while (beat < 61.0) {
+            beats.add(starttime + Math.round(1000.0 * beat));
+            double bpm = 130.0 + 50.0 * beat / 60.0;
+            beat += 60.0 / bpm * (1.0 + 0.03 * random.nextGaussian());
+        }
+
+        DataStreams datastreams = new DataStreams();
+        DataPointStream ecg = datastreams.getDataPointStream("org.md2k.cstress.data.ecg");
+        ecg.metadata.put("frequency", FREQUENCY);
+        datastreams.getDataPointStream("org.md2k.cstress.data.accel.activity").add(starttime, 1.0);
+
+        StreamingRPeakDetector detector = new StreamingRPeakDetector(FREQUENCY);
+        DataPointStream streaming = new DataPointStream("streaming");
+        DataPointStream heartrate = new DataPointStream("heartrate");
+        for (int i = 0; i < 60 * FREQUENCY; i++) {
+            long timestamp = starttime + Math.round(1000.0 * i / FREQUENCY);
+            double value = 2000.0 + 500.0 * (syntheticBeats(timestamp, beats)
+                    + 0.1 * Math.sin(2.0 * Math.PI * 0.3 * i / FREQUENCY) + 0.03 * random.nextGaussian());
+            ecg.add(timestamp, value);
+            detector.add(timestamp, value, streaming, heartrate);
+        }
+
+        new ECGFeatures(datastreams, false);
+        DataPointStream batch = datastreams.getDataPointStream("org.md2k.cstress.data.ecg.peaks.rpeaks");
+
+        long from = starttime + RPEAK_WARMUP_MILLIS;
+        long to = ecg.data.getTimestamp(ecg.data.size() - 1) - Math.round(1000.0 * detector.getFilterDelay() / FREQUENCY)
+                - Math.round(1000.0 * AUTOSENSE.RPEAK_REFRACTORY_SECS);
+        long sample = (long) Math.ceil(1000.0 / FREQUENCY);
+
+        int mismatches = countUnmatched(batch, streaming, from, to, sample)
+                + countUnmatched(streaming, batch, from, to, sample);
+        assertTrue("mismatched R-peaks: " + mismatches, mismatches <= RPEAK_MISMATCH_LIMIT);
+
+        int expected = 0;
+        for (long b : beats) {
+            if (b >= from && b <= to) {
+                expected++;
+            }
+        }
+        assertEquals(expected, countInRange(streaming, from, to), 1);
+    }
+
+    private static double syntheticBeats(long timestamp, List<Long> beats) {
+        double value = 0.0;
+        for (long b : beats) {
+            double d = (timestamp - b) / 1000.0;
+            if (Math.abs(d) < 0.6) {
+                value += 0.15 * gaussian(d + 0.2, 0.025) - 0.1 * gaussian(d + 0.03, 0.01) + gaussian(d, 0.012)
+                        - 0.25 * gaussian(d - 0.03, 0.01) + 0.05 * gaussian(d - 0.22, 0.04);
+            }
+        }
+        return value;
+    }
+
+    private static double gaussian(double d, double width) {
+        return Math.exp(-d * d / (2.0 * width * width));
+    }
+
+    private static int countUnmatched(DataPointStream peaks, DataPointStream reference, long from, long to, long tolerance) {
+        int unmatched = 0;
+        for (int i = 0; i < peaks.data.size(); i++) {
+            long timestamp = peaks.data.getTimestamp(i);
+            if (timestamp < from || timestamp > to) {
+                continue;
+            }
+            boolean matched = false;
+            for (int j = 0; j < reference.data.size() && !matched; j++) {
+                matched = Math.abs(reference.data.getTimestamp(j) - timestamp) <= tolerance;
+            }
+            if (!matched) {
+                unmatched++;
+            }
+        }
+        return unmatched;
+    }
+
+    private static int countInRange(DataPointStream peaks, long from, long to) {
+        int count = 0;
+        for (int i = 0; i < peaks.data.size(); i++) {
+            if (peaks.data.getTimestamp(i) >= from && peaks.data.getTimestamp(i) <= to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void assertRelativeEquals(double expected, double actual) {
+        assertEquals(expected, actual, LOMB_BAND_TOLERANCE * Math.abs(expected));
+    }
+
+    private static void assertStreamEquals(DataPointStream expected, DataPointStream actual) {
+        assertArrayEquals(expected.data.getTimestamps(), actual.data.getTimestamps());
+        assertArrayEquals(expected.data.getValues(), actual.data.getValues(), 0.0);
+    }
+
+    //Reference implementations the linear-time versions in ECGFeatures must reproduce
+
+    private static void referenceValidRRinterval(DataPointStream outlierresult, DataPointStream valid_rr_interval, DataPointStream rr_value_diff, DataPointStream ds) {
+        List<Integer> outlier = new ArrayList<Integer>();
+
+        for (int i1 = 0; i1 < ds.data.size(); i1++) {
+            if (ds.data.getValue(i1) > 0.3 && ds.data.getValue(i1) < 2.0) {
+                valid_rr_interval.add(ds.data.get(i1));
+            }
+        }
+
+        for (int i1 = 1; i1 < valid_rr_interval.data.size(); i1++) {
+            rr_value_diff.add(valid_rr_interval.data.getTimestamp(i1), Math.abs(valid_rr_interval.data.getValue(i1) - valid_rr_interval.data.getValue(i1 - 1)));
+        }
+
+        double MED = AUTOSENSE.MED_CONSTANT * 0.5 * (rr_value_diff.getPercentile(75) - rr_value_diff.getPercentile(25));
+        double MAD = (valid_rr_interval.getPercentile(50) - AUTOSENSE.MAD_CONSTANT * 0.5 * (rr_value_diff.getPercentile(75) - rr_value_diff.getPercentile(25))) / 3.0;
+        double CBD = (MED + MAD) / 2.0;
+        if (CBD < AUTOSENSE.CBD_THRESHOLD) {
+            CBD = AUTOSENSE.CBD_THRESHOLD;
+        }
+
+        for (DataPoint aSample : ds.data) {
+            outlier.add(AUTOSENSE.QUALITY_BAD);
+        }
+        outlier.set(0, AUTOSENSE.QUALITY_GOOD);
+
+        double standard_rrInterval;
+        if (valid_rr_interval.data.size() > 0) {
+            standard_rrInterval = valid_rr_interval.data.getValue(0);
+        } else {
+            standard_rrInterval = valid_rr_interval.getMean();
+        }
+        boolean prev_beat_bad = false;
+
+        for (int i1 = 1; i1 < valid_rr_interval.data.size() - 1; i1++) {
+            double ref = valid_rr_interval.data.getValue(i1);
+            if (ref > AUTOSENSE.REF_MINIMUM && ref < AUTOSENSE.REF_MAXIMUM) {
+                double beat_diff_prevGood = Math.abs(standard_rrInterval - valid_rr_interval.data.getValue(i1));
+                double beat_diff_pre = Math.abs(valid_rr_interval.data.getValue(i1 - 1) - valid_rr_interval.data.getValue(i1));
+                double beat_diff_post = Math.abs(valid_rr_interval.data.getValue(i1) - valid_rr_interval.data.getValue(i1 + 1));
+
+                if ((prev_beat_bad && beat_diff_prevGood < CBD) || (prev_beat_bad && beat_diff_prevGood > CBD && beat_diff_pre <= CBD && beat_diff_post <= CBD)) {
+                    for (int j = 0; j < ds.data.size(); j++) {
+                        if (ds.data.getTimestamp(j) == valid_rr_interval.data.getTimestamp(i1)) {
+                            outlier.set(j, AUTOSENSE.QUALITY_GOOD);
+                        }
+                    }
+                    prev_beat_bad = false;
+                    standard_rrInterval = valid_rr_interval.data.getValue(i1);
+                } else if (prev_beat_bad && beat_diff_prevGood > CBD && (beat_diff_pre > CBD || beat_diff_post > CBD)) {
+                    prev_beat_bad = true;
+                } else if (!prev_beat_bad && beat_diff_pre <= CBD) {
+                    for (int j = 0; j < ds.data.size(); j++) {
+                        if (ds.data.getTimestamp(j) == valid_rr_interval.data.getTimestamp(i1)) {
+                            outlier.set(j, AUTOSENSE.QUALITY_GOOD);
+                        }
+                    }
+                    prev_beat_bad = false;
+                    standard_rrInterval = valid_rr_interval.data.getValue(i1);
+                } else if (!prev_beat_bad && beat_diff_pre > CBD) {
+                    prev_beat_bad = true;
+                }
+
+            }
+        }
+
+
+        for (int i1 = 0; i1 < outlier.size(); i1++) {
+            outlierresult.add(ds.data.getTimestamp(i1), outlier.get(i1));
+        }
+    }
+
+    private static void referenceFilterRpeaks(DataPointStream Rpeaks, DataPointStream Rpeak_temp2, DataPointStream peaks, double frequency) {
+        List<DataPoint> Rpeak_temp3 = new ArrayList<DataPoint>();
+        if (Rpeak_temp2.data.size() > 0) {
+            Rpeak_temp3.add(Rpeak_temp2.data.get(0));
+
+
+            for (int k = 1; k < Rpeak_temp2.data.size() - 1; k++) {
+                double maxValue = -1e9;
+
+
+                double peaktime = Rpeak_temp2.data.getTimestamp(k);
+                int windowStart = 0;
+                int windowStop = peaks.data.size();
+                for (int i1 = 0; i1 < peaks.data.size(); i1++) {
+                    if (peaks.data.getTimestamp(i1) < (peaktime - (int) Math.ceil(frequency / AUTOSENSE.RPEAK_BIN_FACTOR))) {
+                        windowStart = i1;
+                    }
+                    if (peaks.data.getTimestamp(i1) > (peaktime + (int) Math.ceil(frequency / AUTOSENSE.RPEAK_BIN_FACTOR))) {
+                        windowStop = i1;
+                        break;
+                    }
+                }
+
+                DataPoint maxDP = new DataPoint(0, 0.0);
+                try {
+                    for (int j = windowStart + 1; j < windowStop; j++) {
+                        if (peaks.data.getValue(j) > maxValue) {
+                            maxValue = peaks.data.getValue(j);
+                            maxDP = new DataPoint(peaks.data.get(j));
+                        }
+                    }
+                } catch (Exception e) {
+                    //Do nothing here
+                } finally {
+                    Rpeak_temp3.add(maxDP);
+                }
+            }
+        }
+
+        for (DataPoint dp : Rpeak_temp3) {
+            Rpeaks.add(new DataPoint(dp));
+        }
+    }
+
+    private static void referenceFilterPeaksTemp2(DataPointStream Rpeak_temp2, DataPointStream Rpeak_temp1, double frequency) {
+        Rpeak_temp2.data.addAll(Rpeak_temp1.data);
+
+        boolean difference = false;
+
+        while (!difference) {
+            int length_Rpeak_temp2 = Rpeak_temp2.data.size();
+            List<DataPoint> diffRpeak = new ArrayList<DataPoint>();
+            for (int j = 1; j < Rpeak_temp2.data.size(); j++) {
+                diffRpeak.add(new DataPoint(Rpeak_temp2.data.getTimestamp(j) - Rpeak_temp2.data.getTimestamp(j - 1), Rpeak_temp2.data.getValue(j) - Rpeak_temp2.data.getValue(j - 1)));
+            }
+
+            List<DataPoint> comp1 = new ArrayList<DataPoint>();
+            List<DataPoint> comp2 = new ArrayList<DataPoint>();
+            List<Integer> eli_index = new ArrayList<Integer>();
+
+            for (int j = 0; j < diffRpeak.size(); j++) {
+                if (diffRpeak.get(j).timestamp < (AUTOSENSE.RPEAK_INTERPEAK_MULTIPLIER * frequency)) {
+                    comp1.add(Rpeak_temp2.data.get(j));
+                    comp2.add(Rpeak_temp2.data.get(j + 1));
+                    if (comp1.get(comp1.size() - 1).value < comp2.get(comp2.size() - 1).value) {
+                        eli_index.add(0);
+                    } else {
+                        eli_index.add(1);
+                    }
+                } else {
+                    eli_index.add(-999999);
+                }
+            }
+
+            for (int j = 0; j < diffRpeak.size(); j++) {
+                if (diffRpeak.get(j).timestamp < (AUTOSENSE.RPEAK_INTERPEAK_MULTIPLIER * frequency)) {
+                    Rpeak_temp2.data.set(j + eli_index.get(j), new DataPoint(0, -999999));
+                }
+            }
+
+            for (Iterator<DataPoint> it = Rpeak_temp2.data.iterator(); it.hasNext(); ) {
+                if (it.next().value == -999999) {
+                    it.remove();
+                }
+            }
+
+            difference = (length_Rpeak_temp2 == Rpeak_temp2.data.size());
+
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package md2k.mCerebrum.cStress.tests;
+
+import md2k.mCerebrum.cStress.autosense.AUTOSENSE;
+import md2k.mCerebrum.cStress.library.signalprocessing.Filter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class FilterTest {
+
+    private static final double CONV_TOLERANCE = 1e-12;
+
+    private Random random;
+
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(1234);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+    }
+
+    @Test
+    public void convFFTMatchesConvDirect() {
+        for (int trial = 0; trial < 200; trial++) {
+            int K = 64 + random.nextInt(600);
+            double[] kernel = randomArray(K);
+            double[] signal = randomArray(K + random.nextInt(5000));
+
+            assertConvEquals(Filter.convDirect(signal, kernel), Filter.convFFT(signal, kernel), signal, kernel);
+        }
+    }
+
+    @Test
+    public void convFFTMatchesConvDirectWithCachedKernel() {
+        double[] kernel = randomArray(AUTOSENSE.FL_INIT + 1);
+        for (int trial = 0; trial < 50; trial++) {
+            double[] signal = randomArray(kernel.length + random.nextInt(4000));
+
+            assertConvEquals(Filter.convDirect(signal, kernel), Filter.convFFT(signal, kernel), signal, kernel);
+        }
+    }
+
+    @Test
+    public void convMatchesConvDirectOnEcgBandpass() {
+        double f = 2.0 / 64.0;
+        double[] F = {0.0, 4.5 * f, 5.0 * f, 20.0 * f, 20.5 * f, 1};
+        double[] A = {0, 0, 1, 1, 0, 0};
+        double[] w = {500.0 / 0.02, 1.0 / 0.02, 500 / 0.02};
+        double[] kernel = Filter.firls(AUTOSENSE.FL_INIT, F, A, w);
+
+        double[] signal = new double[60 * 64];
+        for (int i = 0; i < signal.length; i++) {
+            signal[i] = 2000.0 + 300.0 * Math.sin(2.0 * Math.PI * i / 48.0) + 30.0 * random.nextGaussian();
+        }
+
+        assertConvEquals(Filter.convDirect(signal, kernel), Filter.conv(signal, kernel), signal, kernel);
+    }
+
+    private double[] randomArray(int length) {
+        double[] result = new double[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = random.nextGaussian();
+        }
+        return result;
+    }
+
+    /**
+     * Each output must match to CONV_TOLERANCE relative to the largest possible magnitude of an output sample
+     */
+    private static void assertConvEquals(double[] expected, double[] actual, double[] signal, double[] kernel) {
+        double scale = 0.0;
+        for (double k : kernel) {
+            scale += Math.abs(k);
+        }
+        double peak = 0.0;
+        for (double s : signal) {
+            peak = Math.max(peak, Math.abs(s));
+        }
+
+        assertEquals(expected.length, actual.length);
+        assertArrayEquals(expected, actual, CONV_TOLERANCE * scale * peak);
+    }
+}
@@ -0,0 +1,144 @@
+package md2k.mCerebrum.cStress.tests;
+
+import md2k.mCerebrum.cStress.autosense.AUTOSENSE;
+import md2k.mCerebrum.cStress.library.datastream.DataPointStream;
+import md2k.mCerebrum.cStress.library.signalprocessing.AutoSense;
+import md2k.mCerebrum.cStress.library.signalprocessing.Filter;
+import md2k.mCerebrum.cStress.library.signalprocessing.FirFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class FirFilterTest {
+
+    private static final double FREQUENCY = 64.0;
+    private static final int WINDOW_SIZE = 60 * 64;
+    private static final int WINDOWS = 4;
+    private static final double FILTER_TOLERANCE = 1e-12;
+
+    private Random random;
+
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(1234);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+    }
+
+    @Test
+    public void bandpassMatchesBatchFilterAcrossWindows() {
+        double f = 2.0 / FREQUENCY;
+        double[] F = {0.0, 4.5 * f, 5.0 * f, 20.0 * f, 20.5 * f, 1};
+        double[] A = {0, 0, 1, 1, 0, 0};
+        double[] w = {500.0 / 0.02, 1.0 / 0.02, 500 / 0.02};
+        assertMatchesBatchFilter(Filter.firls(AUTOSENSE.FL_INIT, F, A, w));
+    }
+
+    @Test
+    public void derivativeMatchesBatchFilterAcrossWindows() {
+        assertMatchesBatchFilter(new double[]{-1.0 / 8.0, -2.0 / 8.0, 0.0 / 8.0, 2.0 / 8.0, -1.0 / 8.0});
+    }
+
+    @Test
+    public void smoothingMatchesBatchFilterAcrossWindows() {
+        assertMatchesBatchFilter(Filter.blackman((int) Math.ceil(FREQUENCY / 5.0)));
+    }
+
+    @Test
+    public void evenLengthKernelMatchesBatchFilterAcrossWindows() {
+        double[] kernel = new double[64];
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] = random.nextGaussian();
+        }
+        assertMatchesBatchFilter(kernel);
+    }
+
+    /**
+     * Filter consecutive windows with one FirFilter through AutoSense.applyFilterNormalize and compare against the
+     * batch applyFilterNormalize of the whole signal.  Each window's output starts with the last getDelay() samples of
+     * the previous window, so after shifting by the delay the concatenated outputs must equal the batch output, and
+     * flush() must then produce the batch output's zero padded tail.
+     */
+    private void assertMatchesBatchFilter(double[] kernel) {
+        DataPointStream signal = new DataPointStream("signal");
+        long timestamp = 1450000000000L;
+        for (int i = 0; i < WINDOWS * WINDOW_SIZE; i++) {
+            timestamp += 15 + random.nextInt(3);
+            signal.add(timestamp, 2000.0 + 300.0 * Math.sin(2.0 * Math.PI * i / 48.0) + 30.0 * random.nextGaussian());
+        }
+
+        DataPointStream expected = new DataPointStream("expected");
+        AutoSense.applyFilterNormalize(signal, expected, new DataPointStream("expected.normalized"), kernel, 90);
+
+        double scale = 0.0;
+        for (double k : kernel) {
+            scale += Math.abs(k);
+        }
+        double tolerance = FILTER_TOLERANCE * scale * 2500.0;
+
+        FirFilter filter = new FirFilter(kernel);
+        int delay = filter.getDelay();
+        int index = 0;
+        for (int window = 0; window < WINDOWS; window++) {
+            DataPointStream input = new DataPointStream("input");
+            for (int i = window * WINDOW_SIZE; i < (window + 1) * WINDOW_SIZE; i++) {
+                input.add(signal.data.get(i));
+            }
+            DataPointStream output = new DataPointStream("output");
+            DataPointStream normalized = new DataPointStream("normalized");
+            AutoSense.applyFilterNormalize(input, output, normalized, filter, 90);
+
+            assertEquals(window == 0 ? WINDOW_SIZE - delay : WINDOW_SIZE, output.data.size());
+            double percentile = output.getPercentile(90);
+            for (int i = 0; i < output.data.size(); i++) {
+                assertEquals(expected.data.getTimestamp(index), output.data.getTimestamp(i));
+                assertEquals(expected.data.getValue(index), output.data.getValue(i), tolerance);
+                assertEquals(output.data.getValue(i) / percentile, normalized.data.getValue(i), 0.0);
+                index++;
+            }
+        }
+
+        long[] timestamps = new long[delay];
+        double[] values = new double[delay];
+        assertEquals(delay, filter.flush(timestamps, values));
+        for (int i = 0; i < delay; i++) {
+            assertEquals(expected.data.getTimestamp(index), timestamps[i]);
+            assertEquals(expected.data.getValue(index), values[i], tolerance);
+            index++;
+        }
+        assertEquals(expected.data.size(), index);
+    }
+}
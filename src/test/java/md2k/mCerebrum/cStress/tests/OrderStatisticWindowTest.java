@@ -0,0 +1,162 @@
+package md2k.mCerebrum.cStress.tests;
+
+import md2k.mCerebrum.cStress.library.OrderStatisticWindow;
+import org.apache.commons.math3.stat.descriptive.rank.Percentile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class OrderStatisticWindowTest {
+
+    private static final int[] WINDOW_SIZES = {1, 2, 3, 7, 64, 65, 200, 1000};
+    private static final double[] PERCENTILES = {0.1, 1, 5, 25, 50, 75, 95, 99, 100};
+
+    private Random random;
+
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(1234);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+    }
+
+    /**
+     * Every window size is fed several times its length so that eviction wraps around the arrival ring many times.
+     * Both sides use the legacy estimation on the same values, so the results must agree exactly.
+     */
+    @Test
+    public void percentileMatchesCommonsMathOverSlidingWindow() {
+        for (int windowSize : WINDOW_SIZES) {
+            OrderStatisticWindow window = new OrderStatisticWindow(windowSize);
+            ArrayDeque<Double> reference = new ArrayDeque<Double>();
+            Percentile percentile = new Percentile();
+
+            for (int i = 0; i < windowSize * 5 + 50; i++) {
+                double value = randomValue();
+                window.add(value);
+                reference.addLast(value);
+                if (reference.size() > windowSize) {
+                    reference.removeFirst();
+                }
+                assertEquals(reference.size(), window.size());
+
+                if (windowSize > 100 && random.nextInt(10) != 0) {
+                    continue;
+                }
+                double[] values = toArray(reference);
+                percentile.setData(values);
+                for (double p : PERCENTILES) {
+                    assertEquals("window " + windowSize + ", sample " + i + ", p " + p,
+                            percentile.evaluate(p), window.getPercentile(p), 0.0);
+                }
+                double p = 100.0 * (1.0 - random.nextDouble());
+                assertEquals(percentile.evaluate(p), window.getPercentile(p), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void selectMatchesSortedWindow() {
+        for (int windowSize : WINDOW_SIZES) {
+            OrderStatisticWindow window = new OrderStatisticWindow(windowSize);
+            ArrayDeque<Double> reference = new ArrayDeque<Double>();
+
+            for (int i = 0; i < windowSize * 3 + 20; i++) {
+                double value = randomValue();
+                window.add(value);
+                reference.addLast(value);
+                if (reference.size() > windowSize) {
+                    reference.removeFirst();
+                }
+
+                double[] sorted = toArray(reference);
+                Arrays.sort(sorted);
+                int k = random.nextInt(sorted.length);
+                assertEquals(sorted[k], window.select(k), 0.0);
+                assertEquals(sorted[0], window.select(0), 0.0);
+                assertEquals(sorted[sorted.length - 1], window.select(sorted.length - 1), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void clearStartsAnEmptyWindow() {
+        OrderStatisticWindow window = new OrderStatisticWindow(50);
+        for (int i = 0; i < 500; i++) {
+            window.add(randomValue());
+        }
+        window.clear();
+        assertEquals(0, window.size());
+        assertEquals(Double.NaN, window.getPercentile(50), 0.0);
+
+        Percentile percentile = new Percentile();
+        double[] values = new double[30];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = randomValue();
+            window.add(values[i]);
+        }
+        percentile.setData(values);
+        for (double p : PERCENTILES) {
+            assertEquals(percentile.evaluate(p), window.getPercentile(p), 0.0);
+        }
+    }
+
+
+    /**
+     * Mostly small integers so that long runs of duplicates enter and leave the window, mixed with signed zeros and
+     * continuous values
+     */
+    private double randomValue() {
+        int choice = random.nextInt(10);
+        if (choice < 6) {
+            return random.nextInt(5);
+        } else if (choice == 6) {
+            return random.nextBoolean() ? 0.0 : -0.0;
+        }
+        return random.nextGaussian() * 10.0;
+    }
+
+    private static double[] toArray(ArrayDeque<Double> deque) {
+        double[] result = new double[deque.size()];
+        int i = 0;
+        for (Double d : deque) {
+            result[i++] = d;
+        }
+        return result;
+    }
+}
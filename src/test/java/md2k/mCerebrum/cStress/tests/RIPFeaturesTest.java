@@ -1,7 +1,14 @@
 package md2k.mCerebrum.cStress.tests;
 
+import md2k.mCerebrum.cStress.library.signalprocessing.Smoothing;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /*
  * Copyright (c) 2015, The University of Memphis, MD2K Center
@@ -31,9 +38,13 @@ import org.junit.Before;
  */
 public class RIPFeaturesTest {
 
+    private static final int[] WINDOW_SIZES = {1, 3, 4, 5, 8, 13, 17, 131, 170};
+
+    private Random random;
+
     @Before
     public void setUp() throws Exception {
-
+        random = new Random(1234);
     }
 
     @After
@@ -41,4 +52,99 @@ public class RIPFeaturesTest {
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Integer samples keep every prefix sum exact, so the growing and shrinking edge windows must reproduce the direct
+     * sums bit for bit, including the NaN (0 / 0) and -0.0 (0 / negative) outputs of the empty end windows.
+     */
+    @Test
+    public void smoothMatchesDirectSumsExactlyOnIntegerSamples() {
+        for (int size = 0; size < 60; size++) {
+            for (int n : WINDOW_SIZES) {
+                double[] input = new double[size];
+                for (int i = 0; i < size; i++) {
+                    input[i] = random.nextInt(2001) - 1000;
+                }
+
+                double[] expected = referenceSmooth(input, n);
+                double[] actual = Smoothing.smooth(input, n);
+
+                assertEquals(expected.length, actual.length);
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals("size " + size + ", n " + n + ", sample " + i,
+                            Double.doubleToLongBits(expected[i]), Double.doubleToLongBits(actual[i]));
+                }
+            }
+        }
+    }
+
+    /**
+     * On real valued samples the prefix sums round differently from the direct sums.  The difference is bounded by a
+     * few ulps of the running total, so the tolerance is 1e-12 of the summed magnitudes divided by the window size.
+     */
+    @Test
+    public void smoothMatchesDirectSumsOnRealSamples() {
+        for (int trial = 0; trial < 100; trial++) {
+            int size = random.nextInt(2000);
+            double offset = random.nextGaussian() * 1000.0;
+            double[] input = new double[size];
+            double magnitude = 0.0;
+            for (int i = 0; i < size; i++) {
+                input[i] = offset + random.nextGaussian() * 100.0;
+                magnitude += Math.abs(input[i]);
+            }
+
+            for (int n : WINDOW_SIZES) {
+                int windowSize = 1;
+                double[] expected = referenceSmooth(input, n);
+                double[] actual = Smoothing.smooth(input, n);
+
+                assertEquals(expected.length, actual.length);
+                for (int i = 0; i < expected.length; i++) {
+                    if (Double.isNaN(expected[i])) {
+                        assertTrue(Double.isNaN(actual[i]));
+                    } else {
+                        assertEquals(expected[i], actual[i], 1e-12 * magnitude / Math.max(windowSize, 1));
+                    }
+
+                    if (windowSize < n && (size - i) > n) {
+                        windowSize += 2;
+                    } else if ((size - i + 1) < n) {
+                        windowSize -= 2;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Smoothing.smooth as it was before the prefix sums, re-adding every window sample for each output
+     */
+    private static double[] referenceSmooth(double[] input, int n) {
+        double[] result = new double[input.length];
+        int windowSize = 1;
+        double sum;
+        for (int i = 0; i < input.length; i++) {
+            sum = 0.0;
+            int startingPoint;
+            if ((input.length - i + 1) < n) {
+                startingPoint = input.length - windowSize;
+            } else {
+                startingPoint = (int) Math.max(Math.floor(i - n / 2), 0);
+            }
+            for (int j = startingPoint; j < startingPoint + windowSize; j++) {
+                sum += input[j];
+            }
+            sum /= (double) windowSize;
+
+            result[i] = sum;
+
+            if (windowSize < n && (input.length - i) > n) { //Increase windowSize until n
+                windowSize += 2;
+            } else if ((input.length - i + 1) < n) {
+                windowSize -= 2;
+            }
+        }
+        return result;
+    }
+
+}
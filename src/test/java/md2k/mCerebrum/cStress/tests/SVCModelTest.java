@@ -0,0 +1,271 @@
+package md2k.mCerebrum.cStress.tests;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import md2k.mCerebrum.cStress.library.structs.ApproximateSVCModel;
+import md2k.mCerebrum.cStress.library.structs.CompiledSVCModel;
+import md2k.mCerebrum.cStress.library.structs.DataPointArray;
+import md2k.mCerebrum.cStress.library.structs.SVCModel;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (c) 2015, The University of Memphis, MD2K Center
+ * - Timothy Hnat <twhnat@memphis.edu>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ * list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+public class SVCModelTest {
+
+    private static final String MODEL_PATH = "model.json";
+    private static final int VECTORS = 2000;
+    private static final double REFERENCE_TOLERANCE = 0.0;
+
+    private Random random;
+    private SVCModel model;
+    private double[] means;
+    private double[] stds;
+
+    @Before
+    public void setUp() throws Exception {
+        random = new Random(1234);
+        String json = FileUtils.readFileToString(new File(MODEL_PATH));
+        model = new Gson().fromJson(json, SVCModel.class);
+
+        JsonArray normparams = new JsonParser().parse(json).getAsJsonObject().getAsJsonArray("normparams");
+        means = new double[normparams.size()];
+        stds = new double[normparams.size()];
+        for (int i = 0; i < normparams.size(); i++) {
+            JsonObject param = normparams.get(i).getAsJsonObject();
+            means[i] = param.get("mean").getAsDouble();
+            stds[i] = param.get("std").getAsDouble();
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+
+    }
+
+    /**
+     * At a tolerance of 0.01 nearly every unit variance feature vector is scored with the expansion, each within its
+     * error bound, and the probabilities match the exact engine to the tolerance
+     */
+    @Test
+    public void approximateMatchesCompiledWithinTolerance() {
+        double tolerance = 0.01;
+        CompiledSVCModel exact = model.compile();
+        ApproximateSVCModel approximate = model.approximate(tolerance);
+        List<DataPointArray> vectors = randomFeatureVectors(VECTORS);
+
+        double[] expected = exact.computeProbabilities(vectors, null);
+        double[] actual = approximate.computeProbabilities(vectors, null);
+
+        int covered = 0;
+        for (int i = 0; i < vectors.size(); i++) {
+            double bound = approximate.getErrorBound(vectors.get(i));
+            double error = Math.abs(expected[i] - actual[i]);
+            if (bound <= tolerance) {
+                covered++;
+                assertTrue("error " + error + " above bound " + bound, error <= bound);
+            } else {
+                assertEquals(expected[i], actual[i], 0.0);
+            }
+            assertEquals(approximate.computeProbability(vectors.get(i)), actual[i], 0.0);
+        }
+
+        assertTrue("coverage " + covered, covered >= 0.95 * VECTORS);
+        assertTrue(approximate.getEmpiricalCoverage() >= 0.95);
+        assertTrue(approximate.getEmpiricalError() <= tolerance);
+    }
+
+    /**
+     * A tighter tolerance sends more feature vectors to the exact engine, but never lets an error above it through
+     */
+    @Test
+    public void approximateFallsBackAboveTolerance() {
+        CompiledSVCModel exact = model.compile();
+        List<DataPointArray> vectors = randomFeatureVectors(VECTORS);
+        double[] expected = exact.computeProbabilities(vectors, null);
+
+        double previousCoverage = -1;
+        for (double tolerance : new double[]{1e-4, 1e-3, 3e-3, 1e-2}) {
+            ApproximateSVCModel approximate = model.approximate(tolerance);
+            double[] actual = approximate.computeProbabilities(vectors, null);
+            for (int i = 0; i < vectors.size(); i++) {
+                assertEquals(expected[i], actual[i], tolerance);
+            }
+            assertTrue(approximate.getEmpiricalCoverage() >= previousCoverage);
+            assertTrue(approximate.getEmpiricalError() <= tolerance);
+            previousCoverage = approximate.getEmpiricalCoverage();
+        }
+        assertTrue(previousCoverage > 0.5);
+    }
+
+    /**
+     * The compiled engine against a copy of the original SVCModel.computeProbability on the cStress model and on the
+     * same support vectors with polynomial and linear kernels, scored one at a time and in batches with and without
+     * a pool
+     */
+    @Test
+    public void compiledMatchesReferenceModel() throws Exception {
+        String json = FileUtils.readFileToString(new File(MODEL_PATH));
+        JsonObject poly = new JsonParser().parse(json).getAsJsonObject();
+        poly.getAsJsonObject("kernel").addProperty("type", "poly");
+        poly.getAsJsonObject("kernel").getAsJsonArray("parameters").get(0).getAsJsonObject().addProperty("value", 3);
+        JsonObject linear = new JsonParser().parse(json).getAsJsonObject();
+        linear.getAsJsonObject("kernel").addProperty("type", "linear");
+        //The linear decision values are large enough to saturate the sigmoid, scale them back into its range
+        linear.addProperty("probA", 1e-3 * linear.get("probA").getAsDouble());
+
+        List<DataPointArray> vectors = randomFeatureVectors(VECTORS);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String variant : new String[]{json, poly.toString(), linear.toString()}) {
+                Gson gson = new Gson();
+                CompiledSVCModel compiled = gson.fromJson(variant, SVCModel.class).compile();
+                ReferenceSVCModel reference = gson.fromJson(variant, ReferenceSVCModel.class);
+
+                double[] sequential = compiled.computeProbabilities(vectors, null);
+                double[] parallel = compiled.computeProbabilities(vectors, pool);
+                for (int i = 0; i < vectors.size(); i++) {
+                    double expected = reference.computeProbability(vectors.get(i));
+                    assertEquals(expected, compiled.computeProbability(vectors.get(i)), REFERENCE_TOLERANCE);
+                    assertEquals(expected, sequential[i], REFERENCE_TOLERANCE);
+                    assertEquals(expected, parallel[i], REFERENCE_TOLERANCE);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Raw feature vectors that normalize to unit variance under the model's normalization parameters
+     */
+    private List<DataPointArray> randomFeatureVectors(int count) {
+        List<DataPointArray> result = new ArrayList<DataPointArray>();
+        for (int n = 0; n < count; n++) {
+            List<Double> values = new ArrayList<Double>(means.length);
+            for (int i = 0; i < means.length; i++) {
+                values.add(means[i] + stds[i] * random.nextGaussian());
+            }
+            result.add(new DataPointArray(n, values));
+        }
+        return result;
+    }
+
+    /**
+     * Copy of SVCModel before it was compiled into CompiledSVCModel, read from the same JSON
+     */
+    private static class ReferenceSVCModel {
+        private double intercept;
+        private double probA;
+        private double probB;
+        private Kernel kernel;
+        private Support[] support;
+        private NormParam[] normparams;
+
+        private static class Kernel {
+            String type;
+            KernelParameter[] parameters;
+        }
+
+        private static class KernelParameter {
+            String name;
+            double value;
+        }
+
+        private static class Support {
+            double dualCoef;
+            double[] supportVector;
+        }
+
+        private static class NormParam {
+            double mean;
+            double std;
+        }
+
+        public double computeProbability(DataPointArray ap)
+        {
+            double outputvalue = 0;
+            double [] vals = new double[ap.value.size()];
+
+            for(int i=0;i<vals.length;i++)
+            {
+                vals[i] = (ap.value.get(i)-normparams[i].mean)/normparams[i].std;
+            }
+            if(kernel.type.equals("rbf"))
+            {
+                for(Support supportvector: support) {
+                    double norm = 0;
+                    //computing second norm
+                    for (int i = 0; i < ap.value.size(); i++) {
+                        double temp = (vals[i] - supportvector.supportVector[i]);
+                        norm += temp * temp;
+                    }
+                    outputvalue += Math.exp(-kernel.parameters[0].value * norm)* supportvector.dualCoef;
+                }
+                outputvalue += intercept;
+            }
+            else if(kernel.type.equals("poly"))
+            {
+                for(Support supportvector: support) {
+                    double dotvalue  = 0;
+                    //computing dot product
+                    for (int i = 0; i < ap.value.size(); i++)
+                        dotvalue += vals[i]*supportvector.supportVector[i];
+
+                    outputvalue += Math.pow(dotvalue/ap.value.size(),(int)kernel.parameters[0].value)*supportvector.dualCoef;
+                }
+                outputvalue += intercept;
+            }
+            else //linear
+            {
+                for(Support supportvector: support) {
+                    double dotvalue  = 0;
+                    //computing dot product
+                    for (int i = 0; i < ap.value.size(); i++)
+                        dotvalue += vals[i]*supportvector.supportVector[i];
+
+                    outputvalue += dotvalue*supportvector.dualCoef;
+                }
+                outputvalue += intercept;
+            }
+            return 1.0/(1.0+Math.exp(probA*outputvalue+probB));
+        }
+    }
+}